@@ -1,11 +1,28 @@
 package fr.jatchwork;
 
 import java.awt.Color;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Objects;
+import java.util.concurrent.ThreadLocalRandom;
 
+import fr.jatchwork.ai.Bot;
+import fr.jatchwork.ai.Evaluation;
+import fr.jatchwork.ai.OpeningBook;
 import fr.jatchwork.control.ControlConsole;
 import fr.jatchwork.control.ControlWindow;
+import fr.jatchwork.io.GameStore;
+import fr.jatchwork.io.MoveLog;
+import fr.jatchwork.io.Replayer;
 import fr.jatchwork.model.Game;
+import fr.jatchwork.model.PatchBuilder;
+import fr.jatchwork.sim.BookBuilder;
+import fr.jatchwork.sim.SelfPlay;
+import fr.jatchwork.sim.Sprt;
+import fr.jatchwork.sim.Tournament;
+import fr.jatchwork.sim.WeightTuner;
 import fr.jatchwork.view.ViewConsole;
 import fr.jatchwork.view.ViewWindow;
 import fr.umlv.zen5.Application;
@@ -17,45 +34,327 @@ import fr.umlv.zen5.ApplicationContext;
 public final class Main {
   /**
    * The function called when starting the program.
-   * @param args List of command line arguments. Not used.
+   * Without arguments, a game is played in the console or in a window.
+   * With "selfplay games [bot1] [bot2] [version] [threads] [seed]", games are played between bots
+   * without any display or input, and their statistics are printed.
+   * With "book file games [plies] [bot] [version] [threads] [seed]", an opening book is computed.
+   * With "tune file games [bot] [version] [threads] [seed]", the weights of the evaluation are tuned.
+   * With "tournament pairs format [sprt] [version:N] [seed:N] bot1 bot2 [bots]", bots are rated
+   * against each other.
+   * With "replay [file] [game] [ply] [patches]", a state of an archived game is displayed.
+   * With "store dir games [bot1] [bot2] [version] [threads] [seed]", games between bots are added
+   * to a game store, and "query dir [patch] [time]" prints statistics of a game store.
+   * @param args List of command line arguments
+   * @throws InterruptedException If interrupted while waiting for the games between bots
+   * @throws IOException If an opening book or the weights can't be read or written
    */
-  public static void main(String[] args) {
+  public static void main(String[] args) throws InterruptedException, IOException {
+    if (args.length > 0) {
+      switch (args[0]) {
+      case "selfplay" -> selfPlay(args);
+      case "book" -> buildBook(args);
+      case "tune" -> tune(args);
+      case "tournament" -> tournament(args);
+      case "replay" -> replay(args);
+      case "store" -> store(args);
+      case "query" -> query(args);
+      default -> usage();
+      }
+      return;
+    }
+
     // Choose game version
     int version = ControlConsole.initVersion();
+    final Game game = ControlConsole.initGame(version);
+    final Bot bot = ControlConsole.initBot();
 
     switch (version) {
     case 1, 2 -> {
       // Console version
-      ViewConsole.displayGame();
-      ViewConsole.displayMenu();
+      ViewConsole.displayGame(game);
+      ViewConsole.displayMenu(game);
 
       // Main game loop
-      while (!Game.instance().finished()) {
-        ControlConsole.manageInput();
+      while (!game.finished()) {
+        if (bot != null && game.playing() == game.player(ControlConsole.BOT_PLAYER)) {
+          ControlConsole.playBot(game, bot);
+        } else {
+          ControlConsole.manageInput(game);
+        }
       }
       
-      ViewConsole.displayGame();
-      ViewConsole.displayScores();
+      ViewConsole.displayGame(game);
+      ViewConsole.displayScores(game);
+      ControlConsole.archiveGame(game);
+      if (bot != null) bot.close();
     }
     case 3, 4 -> {
       // Graphical version
-      Application.run(Color.BLACK, Main::run);
+      ControlWindow.setGame(game);
+      if (bot != null) ControlWindow.setBot(bot, ControlConsole.BOT_PLAYER);
+      Application.run(Color.BLACK, context -> run(context, game));
     }
     default ->
       throw new IllegalArgumentException("Unexpected value: " + version);
     }
   }
   
+  /**
+   * Play games between bots on every core, then print their statistics.
+   * @param args Command line arguments : "selfplay games [bot1] [bot2] [version] [threads] [seed]",
+   *             bots being described as in {@link SelfPlay#policy(String)}
+   * @throws InterruptedException If interrupted while waiting for the games
+   * @throws IOException If an opening book can't be read
+   */
+  private static void selfPlay(String[] args) throws InterruptedException, IOException {
+    if (args.length < 2 || args.length > 7) usage();
+    final int games = Integer.parseInt(args[1]);
+    final String first = args.length > 2 ? args[2] : "heuristic";
+    final String second = args.length > 3 ? args[3] : "heuristic";
+    final int version = args.length > 4 ? Integer.parseInt(args[4]) : 2;
+    final int threads = args.length > 5
+        ? Integer.parseInt(args[5])
+        : Runtime.getRuntime().availableProcessors();
+    final long seed = args.length > 6 ? Long.parseLong(args[6]) : ThreadLocalRandom.current().nextLong();
+
+    System.out.printf("%s against %s, %d games of version %d on %d threads, seed %d\n",
+        first, second, games, version, threads, seed);
+    final var selfPlay = new SelfPlay(SelfPlay.policy(first), SelfPlay.policy(second), version, threads);
+    System.out.println(selfPlay.run(games, seed));
+  }
+
+  /**
+   * Compute an opening book on every core, then write it.
+   * @param args Command line arguments : "book file games [plies] [bot] [version] [threads] [seed]",
+   *             the bot being described as in {@link SelfPlay#policy(String)}
+   * @throws InterruptedException If interrupted while waiting for the games
+   * @throws IOException If the book can't be written
+   */
+  private static void buildBook(String[] args) throws InterruptedException, IOException {
+    if (args.length < 3 || args.length > 8) usage();
+    final Path path = Path.of(args[1]);
+    final int games = Integer.parseInt(args[2]);
+    final int plies = args.length > 3 ? Integer.parseInt(args[3]) : 4;
+    final String bot = args.length > 4 ? args[4] : "alphabeta:500";
+    final int version = args.length > 5 ? Integer.parseInt(args[5]) : 2;
+    final int threads = args.length > 6
+        ? Integer.parseInt(args[6])
+        : Runtime.getRuntime().availableProcessors();
+    final long seed = args.length > 7 ? Long.parseLong(args[7]) : ThreadLocalRandom.current().nextLong();
+
+    System.out.printf("%s on the first %d moves of %d games of version %d on %d threads, seed %d\n",
+        bot, plies, games, version, threads, seed);
+    final long start = System.nanoTime();
+    final var moves = BookBuilder.build(SelfPlay.policy(bot), version, games, plies, OpeningBook.WINDOW,
+        threads, seed);
+    OpeningBook.write(path, OpeningBook.WINDOW, moves);
+    System.out.printf("%d states written to %s in %.1f s\n", moves.size(), path, (System.nanoTime() - start) / 1e9);
+  }
+
+  /**
+   * Tune the weights of the evaluation on the outcomes of games on every core, then write them.
+   * @param args Command line arguments : "tune file games [bot] [version] [threads] [seed]",
+   *             the bot being described as in {@link SelfPlay#policy(String)}
+   * @throws InterruptedException If interrupted while waiting for the games
+   * @throws IOException If the weights can't be written
+   */
+  private static void tune(String[] args) throws InterruptedException, IOException {
+    if (args.length < 3 || args.length > 7) usage();
+    final Path path = Path.of(args[1]);
+    final int games = Integer.parseInt(args[2]);
+    final String bot = args.length > 3 ? args[3] : "heuristic";
+    final int version = args.length > 4 ? Integer.parseInt(args[4]) : 2;
+    final int threads = args.length > 5
+        ? Integer.parseInt(args[5])
+        : Runtime.getRuntime().availableProcessors();
+    final long seed = args.length > 6 ? Long.parseLong(args[6]) : ThreadLocalRandom.current().nextLong();
+
+    System.out.printf("%d games of %s against itself, version %d on %d threads, seed %d\n",
+        games, bot, version, threads, seed);
+    final long start = System.nanoTime();
+    final var samples = WeightTuner.collect(SelfPlay.policy(bot), version, games, threads, seed);
+    final var evaluation = WeightTuner.fit(samples, WeightTuner.EPOCHS, threads);
+    evaluation.save(path);
+    System.out.printf("%d states in %.1f s, loss %.4f with %s, %.4f with %s\n",
+        samples.size(), (System.nanoTime() - start) / 1e9,
+        WeightTuner.loss(samples, Evaluation.DEFAULT), Evaluation.DEFAULT,
+        WeightTuner.loss(samples, evaluation), evaluation);
+    System.out.println("Weights written to " + path);
+  }
+
+  /**
+   * Play a tournament between bots on every core, then print their ratings.
+   * @param args Command line arguments :
+   *             "tournament pairs format [sprt[:elo0:elo1]] [version:N] [seed:N] bot1 bot2 [bots]",
+   *             the format being "roundrobin" or "gauntlet", the version 2 or 3, 2 by default,
+   *             the seed random by default, and the bots being described as in
+   *             {@link SelfPlay#policy(String)}
+   * @throws InterruptedException If interrupted while waiting for the games
+   * @throws IOException If an opening book can't be read
+   */
+  private static void tournament(String[] args) throws InterruptedException, IOException {
+    if (args.length < 5) usage();
+    final int pairs = Integer.parseInt(args[1]);
+    final var format = switch (args[2]) {
+    case "roundrobin" -> Tournament.Format.ROUND_ROBIN;
+    case "gauntlet" -> Tournament.Format.GAUNTLET;
+    default -> throw new IllegalArgumentException("Unknown format: " + args[2]);
+    };
+    int first = 3;
+    Sprt sprt = null;
+    if (args[3].equals("sprt") || args[3].startsWith("sprt:")) {
+      final var bounds = args[3].split(":");
+      sprt = bounds.length == 3
+          ? new Sprt(Double.parseDouble(bounds[1]), Double.parseDouble(bounds[2]), 0.05, 0.05)
+          : new Sprt(0, 20, 0.05, 0.05);
+      first++;
+    }
+    int version = 2;
+    long seed = ThreadLocalRandom.current().nextLong();
+    for (; first < args.length; first++) {
+      if (args[first].startsWith("version:")) {
+        version = Integer.parseInt(args[first].substring("version:".length()));
+      } else if (args[first].startsWith("seed:")) {
+        seed = Long.parseLong(args[first].substring("seed:".length()));
+      } else {
+        break;
+      }
+    }
+    if (args.length - first < 2) usage();
+    final var entrants = new ArrayList<Tournament.Entrant>();
+    for (int i = first; i < args.length; i++) {
+      entrants.add(new Tournament.Entrant(args[i], SelfPlay.policy(args[i])));
+    }
+    final int threads = Runtime.getRuntime().availableProcessors();
+
+    System.out.printf("%d pairs of games per pairing, version %d on %d threads, seed %d%s\n",
+        pairs, version, threads, seed, sprt == null ? "" : ", " + sprt);
+    System.out.println(new Tournament(entrants, format, version, threads).run(pairs, sprt, seed));
+  }
+
+  /**
+   * Display the state of an archived game after some moves.
+   * @param args Command line arguments : "replay [file] [game] [ply] [patches]", the archive being
+   *             the default one, the game and the ply being the last ones by default, and the file
+   *             of patches being needed by the games of the custom version only
+   * @throws IOException If the archive or the file of patches can't be read
+   */
+  private static void replay(String[] args) throws IOException {
+    if (args.length > 5) usage();
+    final Path path = args.length > 1 ? Path.of(args[1]) : MoveLog.ARCHIVE;
+    final var records = MoveLog.readAll(path);
+    if (records.isEmpty()) {
+      System.out.println("There is no game in " + path);
+      return;
+    }
+    final int index = args.length > 2 ? Integer.parseInt(args[2]) : records.size() - 1;
+    final var record = records.get(Objects.checkIndex(index, records.size()));
+    final int ply = args.length > 3 ? Integer.parseInt(args[3]) : record.length();
+    if (record.phase() == 4 && args.length < 5) {
+      System.out.printf("Game %d is of the custom version, give the file of patches it was played with\n", index);
+      return;
+    }
+
+    System.out.printf("Game %d of %d, version %d, seed %d, move %d of %d\n",
+        index, records.size(), record.phase(), record.seed(), ply, record.length());
+    final var replayer = record.phase() == 4
+        ? new Replayer(record, PatchBuilder.fromFile(Path.of(args[4])))
+        : new Replayer(record);
+    final var game = replayer.seek(ply);
+    ViewConsole.displayGame(game);
+    if (game.finished()) ViewConsole.displayScores(game);
+  }
+
+  /**
+   * Play games between bots on every core and add them to a game store.
+   * @param args Command line arguments : "store dir games [bot1] [bot2] [version] [threads] [seed]",
+   *             bots being described as in {@link SelfPlay#policy(String)}
+   * @throws InterruptedException If interrupted while waiting for the games
+   * @throws IOException If the store can't be written or an opening book can't be read
+   */
+  private static void store(String[] args) throws InterruptedException, IOException {
+    if (args.length < 3 || args.length > 8) usage();
+    final Path path = Path.of(args[1]);
+    final int games = Integer.parseInt(args[2]);
+    final String first = args.length > 3 ? args[3] : "heuristic";
+    final String second = args.length > 4 ? args[4] : "heuristic";
+    final int version = args.length > 5 ? Integer.parseInt(args[5]) : 2;
+    final int threads = args.length > 6
+        ? Integer.parseInt(args[6])
+        : Runtime.getRuntime().availableProcessors();
+    final long seed = args.length > 7 ? Long.parseLong(args[7]) : ThreadLocalRandom.current().nextLong();
+
+    System.out.printf("%s against %s, %d games of version %d on %d threads, seed %d\n",
+        first, second, games, version, threads, seed);
+    final var selfPlay = new SelfPlay(SelfPlay.policy(first), SelfPlay.policy(second), version, threads);
+    try (var store = new GameStore(path)) {
+      System.out.println(selfPlay.run(games, seed, record -> {
+        try {
+          store.append(record);
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      }));
+      System.out.printf("%d games in %s\n", store.size(), path);
+    }
+  }
+
+  /**
+   * Print the results of the games of a game store.
+   * @param args Command line arguments : "query dir [patch] [time]", printing also the number of
+   *             games where a patch of the catalog of the store was bought before a time, 20 by default
+   * @throws IOException If the store can't be read
+   */
+  private static void query(String[] args) throws IOException {
+    if (args.length < 2 || args.length > 4) usage();
+    try (var store = new GameStore(Path.of(args[1]))) {
+      final long start = System.nanoTime();
+      final var bonus = new int[Game.PLAYER_COUNT];
+      store.forEach(header -> {
+        if (header.bonusOwner() >= 0) bonus[header.bonusOwner()]++;
+      });
+      System.out.printf("%d games scanned in %.1f ms\n", store.size(), (System.nanoTime() - start) / 1e6);
+      System.out.printf("Won by player 1 : %d, by player 2 : %d, draws : %d\n",
+          store.withResult(0).length, store.withResult(1).length, store.withResult(GameStore.DRAW).length);
+      System.out.printf("7x7 bonus taken by player 1 : %d, by player 2 : %d\n", bonus[0], bonus[1]);
+      if (args.length > 2) {
+        final var patch = store.patches().get(Objects.checkIndex(Integer.parseInt(args[2]), store.patches().size()));
+        final int time = args.length > 3 ? Integer.parseInt(args[3]) : 20;
+        System.out.print(patch);
+        System.out.printf("Bought before time %d in %d games\n", time, store.boughtBefore(patch, time).length);
+      }
+    }
+  }
+
+  /**
+   * Print the usage of the command line arguments, then exit.
+   */
+  private static void usage() {
+    System.err.println("Usage: selfplay games [bot1] [bot2] [version] [threads] [seed]");
+    System.err.println("       book file games [plies] [bot] [version] [threads] [seed]");
+    System.err.println("       tune file games [bot] [version] [threads] [seed]");
+    System.err.println("       tournament pairs roundrobin|gauntlet [sprt[:elo0:elo1]] [version:N] [seed:N]");
+    System.err.println("                  bot1 bot2 [bots]");
+    System.err.println("       replay [file] [game] [ply] [patches]");
+    System.err.println("       store dir games [bot1] [bot2] [version] [threads] [seed]");
+    System.err.println("       query dir [patch] [time]");
+    System.err.println("Bots: random, heuristic, mcts[:ms] or alphabeta[:ms], heuristic by default,");
+    System.err.println("      followed by @file to play the moves of an opening book first");
+    System.exit(1);
+  }
+
   /**
    * Executed to run the application in a window.
    * @param context Window's context
+   * @param game The game to play
    */
-  private static void run(ApplicationContext context) {
+  private static void run(ApplicationContext context, Game game) {
     Objects.requireNonNull(context);
+    Objects.requireNonNull(game);
     ViewWindow.setScreenInfo(context.getScreenInfo());
 
     while (true) {
-      context.renderFrame(ViewWindow::displayAll);
+      context.renderFrame(graphics -> ViewWindow.displayAll(graphics, game));
       ControlWindow.manageInput(context);
     }
   }
@@ -0,0 +1,341 @@
+package fr.jatchwork.ai;
+
+import java.time.Duration;
+import java.util.Objects;
+
+import fr.jatchwork.model.Game;
+import fr.jatchwork.model.GameState;
+import fr.jatchwork.model.Move;
+import fr.jatchwork.model.Orientations;
+import fr.jatchwork.model.Patch;
+import fr.jatchwork.model.Placements;
+
+/**
+ * Computer player using an iterative deepening alpha-beta search, with a hard time limit.
+ * The circle of patches is known by both players, so the game has perfect information.
+ * Only the placements with the most contacts are searched for each patch, and moves are ordered by
+ * the best move of the transposition table, then by the points per time of the patches.
+ * When the time is over, the best move of the last complete iteration is played.
+ * Close to the end of the game, the {@link EndgameSearch} is tried first, within half of the time limit.
+ */
+public final class AlphaBetaBot implements Bot {
+  /** Number of placements searched for each patch. */
+  public static final int PLACEMENTS = 3;
+  /** Maximum depth of the search, in moves. */
+  private static final int MAX_DEPTH = 64;
+  /** Maximum number of moves searched in a position. */
+  private static final int MAX_CANDIDATES = Game.PATCH_AVAILABLE * PLACEMENTS + 1;
+
+  private static final int EXACT = 0;
+  private static final int LOWER = 1;
+  private static final int UPPER = 2;
+
+  /**
+   * Thrown to stop the search when the time is over.
+   */
+  private static final class Timeout extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    private Timeout() {
+      super(null, null, false, false);
+    }
+  }
+
+  private static final Timeout TIMEOUT = new Timeout();
+
+  private final Duration time;
+  private final Evaluation evaluation;
+  private final EndgameSearch endgame;
+
+  // Transposition table, indexed by the low bits of the hash
+  private final int tableMask;
+  private final long[] keys;
+  private final int[] bestMoves;
+  private final float[] values;
+  private final byte[] depths;
+  private final byte[] bounds;
+
+  /** Candidate moves and their ordering score, for each ply. */
+  private final int[][] candidates = new int[MAX_DEPTH + 1][MAX_CANDIDATES];
+  private final double[][] scores = new double[MAX_DEPTH + 1][MAX_CANDIDATES];
+
+  private long deadline;
+  private long nodes;
+  private volatile int lastDepth = 0;
+  private volatile long lastNodes = 0;
+  private volatile boolean lastSolved = false;
+
+  /**
+   * Create a bot thinking 50 milliseconds per move, with a table of 2^20 entries,
+   * using the tuned weights if there are any, and searching the end of the game under the default threshold.
+   */
+  public AlphaBetaBot() {
+    this(Duration.ofMillis(50), 20, Evaluation.loadDefault());
+  }
+
+  /**
+   * Create a new bot, searching the end of the game under the default threshold.
+   * @param time Maximum time per move
+   * @param tableBits Base 2 logarithm of the number of entries in the transposition table
+   * @param evaluation Evaluation of the positions
+   */
+  public AlphaBetaBot(Duration time, int tableBits, Evaluation evaluation) {
+    this(time, tableBits, evaluation, new EndgameSearch());
+  }
+
+  /**
+   * Create a new bot.
+   * @param time Maximum time per move
+   * @param tableBits Base 2 logarithm of the number of entries in the transposition table
+   * @param evaluation Evaluation of the positions
+   * @param endgame Search of the end of the game, or null to always use the iterative search
+   */
+  public AlphaBetaBot(Duration time, int tableBits, Evaluation evaluation, EndgameSearch endgame) {
+    Objects.requireNonNull(time);
+    Objects.requireNonNull(evaluation);
+    if (time.isNegative() || time.isZero()) throw new IllegalArgumentException("time should be > 0.");
+    if (tableBits < 0 || tableBits > 28) throw new IllegalArgumentException("tableBits should be >= 0 and <= 28.");
+    this.time = time;
+    this.evaluation = evaluation;
+    this.endgame = endgame;
+    final int size = 1 << tableBits;
+    tableMask = size - 1;
+    keys = new long[size];
+    bestMoves = new int[size];
+    values = new float[size];
+    depths = new byte[size];
+    bounds = new byte[size];
+  }
+
+  @Override
+  public synchronized int chooseMove(GameState state) {
+    Objects.requireNonNull(state);
+    if (state.finished()) throw new IllegalArgumentException("The game is finished.");
+    // Keep a tenth of the time for the last node and the pauses of the virtual machine
+    final long start = System.nanoTime();
+    deadline = start + time.toNanos() - time.toNanos() / 10;
+    if (endgame != null && endgame.applies(state)) {
+      final int move = endgame.search(state, start + (deadline - start) / 2);
+      lastSolved = move >= 0;
+      // Otherwise the iterative search uses the other half of the time
+      if (lastSolved) return move;
+    } else {
+      lastSolved = false;
+    }
+    nodes = 0;
+
+    final int[] moves = candidates[0];
+    final int count = candidates(state, 0, -1);
+    int best = moves[0];
+    int depth = 0;
+    if (count > 1) {
+      try {
+        while (depth < MAX_DEPTH) {
+          best = searchRoot(state, depth + 1, count, best);
+          depth++;
+        }
+      } catch (Timeout e) {
+        // Keep the best move of the last complete iteration
+      }
+    }
+    lastDepth = depth;
+    lastNodes = nodes;
+    return best;
+  }
+
+  @Override
+  public String report() {
+    if (lastSolved) return endgame.report();
+    return "depth " + lastDepth + ", " + lastNodes + " nodes";
+  }
+
+  /**
+   * Search every move of the root.
+   * @param state Root state
+   * @param depth Depth of the iteration
+   * @param count Number of root moves
+   * @param previous Best move of the previous iteration, searched first
+   * @return Best move
+   */
+  private int searchRoot(GameState state, int depth, int count, int previous) {
+    final int[] moves = candidates[0];
+    moveFirst(moves, count, previous);
+    final boolean maximize = state.playing() == 0;
+    double bestValue = maximize ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY;
+    int best = moves[0];
+    for (int i = 0; i < count; i++) {
+      final double value = maximize
+          ? search(state.apply(moves[i]), depth - 1, 1, bestValue, Double.POSITIVE_INFINITY)
+          : search(state.apply(moves[i]), depth - 1, 1, Double.NEGATIVE_INFINITY, bestValue);
+      if (maximize ? value > bestValue : value < bestValue) {
+        bestValue = value;
+        best = moves[i];
+      }
+    }
+    return best;
+  }
+
+  /**
+   * Alpha-beta search, the value being for the first player, so the table can be kept between moves.
+   * @param state State to evaluate
+   * @param depth Remaining depth
+   * @param ply Distance from the root
+   * @param alpha Lower bound
+   * @param beta Upper bound
+   * @return Value of the state
+   */
+  private double search(GameState state, int depth, int ply, double alpha, double beta) {
+    // Generating the candidates is much slower than reading the clock, so it is read on each node
+    nodes++;
+    if (System.nanoTime() > deadline) throw TIMEOUT;
+    // Finished states are valued by their scores alone, see Evaluation#evaluate
+    if (depth == 0 || state.finished() || ply == MAX_DEPTH) return evaluation.evaluate(state, 0);
+
+    // Look for the state in the table
+    final long key = state.hash();
+    final int slot = (int) key & tableMask;
+    int tableMove = -1;
+    if (keys[slot] == key) {
+      tableMove = bestMoves[slot];
+      if (depths[slot] >= depth) {
+        final double value = values[slot];
+        if (bounds[slot] == EXACT
+            || bounds[slot] == LOWER && value >= beta
+            || bounds[slot] == UPPER && value <= alpha) {
+          return value;
+        }
+      }
+    }
+
+    final boolean maximize = state.playing() == 0;
+    final double alphaStart = alpha;
+    final double betaStart = beta;
+    final int count = candidates(state, ply, tableMove);
+    final int[] moves = candidates[ply];
+    double best = maximize ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY;
+    int bestMove = moves[0];
+    for (int i = 0; i < count && alpha < beta; i++) {
+      final double value = search(state.apply(moves[i]), depth - 1, ply + 1, alpha, beta);
+      if (maximize ? value > best : value < best) {
+        best = value;
+        bestMove = moves[i];
+      }
+      if (maximize) alpha = Math.max(alpha, value);
+      else beta = Math.min(beta, value);
+    }
+
+    // Store the result
+    keys[slot] = key;
+    bestMoves[slot] = bestMove;
+    values[slot] = (float) best;
+    depths[slot] = (byte) depth;
+    bounds[slot] = (byte) (best <= alphaStart ? UPPER : best >= betaStart ? LOWER : EXACT);
+    return best;
+  }
+
+  /**
+   * Fill the candidates of a ply with the moves to search, in the order to search them.
+   * @param state The state
+   * @param ply Distance from the root
+   * @param first Move to search first if it is a candidate, or -1
+   * @return Number of candidates
+   */
+  private int candidates(GameState state, int ply, int first) {
+    final int[] moves = candidates[ply];
+    final double[] order = scores[ply];
+    final int playing = state.playing();
+    int count = 0;
+    if (state.leatherCount(playing) > 0) {
+      count = placements(state, Patch.LEATHER, -1, 0, moves, order, count);
+      if (count == 0) moves[count++] = Move.DISCARD_MOVE;
+    } else {
+      final int available = Math.min(Game.PATCH_AVAILABLE, state.patchCount());
+      final int incomes = state.incomesLeft(playing);
+      for (int index = 0; index < available; index++) {
+        final Patch patch = state.getPatch(index);
+        if (patch.buttonCost() > state.buttonCount(playing)) continue;
+        count = placements(state, patch, index, Playouts.value(patch, incomes), moves, order, count);
+      }
+      // Advancing earns one button per square
+      moves[count] = Move.ADVANCE_MOVE;
+      order[count++] = 1;
+    }
+
+    // Sort by decreasing score, few moves so an insertion sort is enough
+    for (int i = 1; i < count; i++) {
+      final int move = moves[i];
+      final double score = order[i];
+      int j = i - 1;
+      while (j >= 0 && order[j] < score) {
+        moves[j + 1] = moves[j];
+        order[j + 1] = order[j];
+        j--;
+      }
+      moves[j + 1] = move;
+      order[j + 1] = score;
+    }
+    moveFirst(moves, count, first);
+    return count;
+  }
+
+  /**
+   * Add the placements of a patch with the most contacts to the candidates.
+   * @param state The state
+   * @param patch The patch to place
+   * @param index Index of the patch from the neutral pawn, or -1 for a leather patch
+   * @param value Ordering score of the patch
+   * @param moves Candidate moves
+   * @param order Ordering scores of the candidates
+   * @param count Number of candidates
+   * @return New number of candidates
+   */
+  private static int placements(GameState state, Patch patch, int index, double value,
+      int[] moves, double[] order, int count) {
+    final Orientations orientations = patch.orientations();
+    final int playing = state.playing();
+    final int start = count;
+    final var contacts = new int[PLACEMENTS];
+    for (int i = 0; i < orientations.count(); i++) {
+      final Placements placements = orientations.placements(i, state.boardSize());
+      for (int anchor = 0; anchor < placements.count(); anchor++) {
+        if (!state.fit(playing, placements, anchor)) continue;
+        final int contact = state.contact(playing, placements, anchor);
+        int kept = count - start;
+        if (kept == PLACEMENTS && contact <= contacts[kept - 1]) continue;
+        if (kept == PLACEMENTS) kept--;
+        // Insert by decreasing contact
+        int j = kept;
+        while (j > 0 && contacts[j - 1] < contact) {
+          contacts[j] = contacts[j - 1];
+          moves[start + j] = moves[start + j - 1];
+          j--;
+        }
+        contacts[j] = contact;
+        moves[start + j] = index < 0
+            ? Move.leather(placements.x(anchor), placements.y(anchor))
+            : Move.buy(index, orientations.code(i), placements.x(anchor), placements.y(anchor));
+        count = start + kept + 1;
+      }
+    }
+    for (int i = start; i < count; i++) {
+      order[i] = value + contacts[i - start] * 1e-3;
+    }
+    return count;
+  }
+
+  /**
+   * Move a move to the front of the candidates, keeping the order of the others.
+   * @param moves Candidate moves
+   * @param count Number of candidates
+   * @param first Move to put first
+   */
+  private static void moveFirst(int[] moves, int count, int first) {
+    for (int i = 0; i < count; i++) {
+      if (moves[i] == first) {
+        System.arraycopy(moves, 0, moves, 1, i);
+        moves[0] = first;
+        return;
+      }
+    }
+  }
+}
@@ -0,0 +1,59 @@
+package fr.jatchwork.ai;
+
+import java.util.Objects;
+
+import fr.jatchwork.model.GameState;
+
+/**
+ * Computer player playing the moves of an opening book, and letting another bot play
+ * the states which are not in the book.
+ */
+public final class BookBot implements Bot {
+  private final OpeningBook book;
+  private final Bot bot;
+  private volatile boolean lastFromBook = false;
+
+  /**
+   * Create a new bot.
+   * @param book The opening book
+   * @param bot The bot playing the states which are not in the book
+   */
+  public BookBot(OpeningBook book, Bot bot) {
+    this.book = Objects.requireNonNull(book);
+    this.bot = Objects.requireNonNull(bot);
+  }
+
+  @Override
+  public int chooseMove(GameState state) {
+    Objects.requireNonNull(state);
+    if (state.finished()) throw new IllegalArgumentException("The game is finished.");
+    final int move = book.lookup(state);
+    if (move >= 0) {
+      try {
+        // A different state with the same hash is very unlikely, but its move may be illegal
+        state.apply(move);
+        lastFromBook = true;
+        return move;
+      } catch (IllegalArgumentException e) {
+        // Search the state
+      }
+    }
+    lastFromBook = false;
+    return bot.chooseMove(state);
+  }
+
+  @Override
+  public void seed(long seed) {
+    bot.seed(seed);
+  }
+
+  @Override
+  public String report() {
+    return lastFromBook ? "opening book" : bot.report();
+  }
+
+  @Override
+  public void close() {
+    bot.close();
+  }
+}
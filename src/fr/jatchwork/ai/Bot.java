@@ -0,0 +1,54 @@
+package fr.jatchwork.ai;
+
+import java.util.Objects;
+
+import fr.jatchwork.model.Game;
+import fr.jatchwork.model.GameState;
+
+/**
+ * A computer player, choosing the moves of the player who must play.
+ * A bot holding threads releases them when closed, after which it must not be used.
+ */
+public interface Bot extends AutoCloseable {
+  /**
+   * Choose a move for the player who must play.
+   * @param state State of the game, not finished
+   * @return Encoded move (see {@link fr.jatchwork.model.Move}), legal in the state
+   */
+  int chooseMove(GameState state);
+
+  /**
+   * Choose a move for the player who must play in a game.
+   * @param game The game, not finished
+   * @return Encoded move, to play with {@link Game#play(int)}
+   */
+  default int chooseMove(Game game) {
+    Objects.requireNonNull(game);
+    return chooseMove(GameState.of(game));
+  }
+
+  /**
+   * Restart the randomness of the bot, so its next choices only depend on the seed and the states,
+   * for reproducible games. Bots without randomness ignore it.
+   * @param seed Seed of the randomness
+   */
+  default void seed(long seed) {
+    // No randomness
+  }
+
+  /**
+   * Statistics about the last choice, to display.
+   * @return Readable statistics, may be empty
+   */
+  default String report() {
+    return "";
+  }
+
+  /**
+   * Release the resources of the bot, such as its threads. Bots without resources ignore it.
+   */
+  @Override
+  default void close() {
+    // No resources
+  }
+}
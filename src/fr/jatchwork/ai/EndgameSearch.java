@@ -0,0 +1,278 @@
+package fr.jatchwork.ai;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+import fr.jatchwork.model.Game;
+import fr.jatchwork.model.GameState;
+import fr.jatchwork.model.Move;
+import fr.jatchwork.model.Patch;
+import fr.jatchwork.model.PlacementEngine;
+
+/**
+ * Search the end of a game down to the final scores, once few squares of time are left.
+ * The values are final score differences for the first player, memoized with their bounds by the
+ * Zobrist hash of the states, so positions reached by several orders of moves and later moves
+ * are searched only once.
+ * Every purchase and advance is searched, but trying every placement being too expensive, only the
+ * best placements of the {@link PlacementEngine} are searched, plus one completing the 7x7 bonus if
+ * any. The search is therefore pruned, not exact : a placement left out could give a better score.
+ * The last patch of a player only changes its score through the bonus, so a single best placement
+ * is searched for it, unless it takes leather patches which must still fit afterwards.
+ * The search stops at a deadline, so a bot can give it part of its time and search the state
+ * itself with the rest when it is too slow.
+ */
+public final class EndgameSearch {
+  /** Default number of time squares left to both players under which the search is used. */
+  public static final int THRESHOLD = 8;
+  /** Number of placements searched for a patch which is not the last one of its buyer. */
+  private static final int PLACEMENTS = 3;
+  private static final int MAX_CANDIDATES = Game.PATCH_AVAILABLE * (PLACEMENTS + 1) + 1;
+
+  private static final int EXACT = 0;
+  private static final int LOWER = 1;
+  private static final int UPPER = 2;
+
+  /**
+   * Thrown to stop the search when the time is over.
+   */
+  private static final class Timeout extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    private Timeout() {
+      super(null, null, false, false);
+    }
+  }
+
+  private static final Timeout TIMEOUT = new Timeout();
+
+  private final int threshold;
+  // Memoized values, indexed by the low bits of the hash
+  private final int tableMask;
+  private final long[] keys;
+  private final boolean[] used;
+  private final int[] values;
+  private final int[] bestMoves;
+  private final byte[] bounds;
+  /** Moves of each ply, reused between nodes. */
+  private int[][] buffers = new int[16][MAX_CANDIDATES];
+  private long deadline;
+  private long nodes;
+  private volatile long lastNodes = 0;
+  private volatile int lastValue = 0;
+
+  /**
+   * Create a search used under the default threshold, with a table of 2^18 entries.
+   */
+  public EndgameSearch() {
+    this(THRESHOLD, 18);
+  }
+
+  /**
+   * Create a new search.
+   * @param threshold Number of time squares left to both players under which the search is used
+   * @param tableBits Base 2 logarithm of the number of memoized states
+   */
+  public EndgameSearch(int threshold, int tableBits) {
+    if (threshold < 0) throw new IllegalArgumentException("threshold should be >= 0.");
+    if (tableBits < 0 || tableBits > 28) throw new IllegalArgumentException("tableBits should be >= 0 and <= 28.");
+    this.threshold = threshold;
+    final int size = 1 << tableBits;
+    tableMask = size - 1;
+    keys = new long[size];
+    used = new boolean[size];
+    values = new int[size];
+    bestMoves = new int[size];
+    bounds = new byte[size];
+  }
+
+  /**
+   * Check if a state is close enough to the end to be searched.
+   * @param state The state
+   * @return True if the game is not finished and few squares of time are left
+   */
+  public boolean applies(GameState state) {
+    Objects.requireNonNull(state);
+    if (state.finished()) return false;
+    final int end = state.timeBoardSize() - 1;
+    return end - state.position(0) + end - state.position(1) <= threshold;
+  }
+
+  /**
+   * Find the best move of a state among the searched ones, unless the time is over.
+   * @param state State of the game, not finished
+   * @param deadline Value of System.nanoTime() at which the search is abandoned
+   * @return Encoded move, or -1 if the search did not end before the deadline
+   */
+  public synchronized int search(GameState state, long deadline) {
+    Objects.requireNonNull(state);
+    if (state.finished()) throw new IllegalArgumentException("The game is finished.");
+    this.deadline = deadline;
+    nodes = 0;
+    try {
+      // Searched with infinite bounds, the value and the move stored for the state are not bounds
+      lastValue = value(state, 0, Integer.MIN_VALUE, Integer.MAX_VALUE);
+    } catch (Timeout e) {
+      // Completed states stay in the table and speed up the next search
+      return -1;
+    } finally {
+      lastNodes = nodes;
+    }
+    return bestMoves[(int) state.hash() & tableMask];
+  }
+
+  /**
+   * Final score difference of the last searched state, when both players play the best of the
+   * searched moves.
+   * @return Score of the first player minus the score of the second one
+   */
+  public int lastValue() { return lastValue; }
+
+  /**
+   * Statistics about the last searched state, to display.
+   * @return Readable statistics
+   */
+  public String report() {
+    return "endgame searched, " + lastNodes + " nodes";
+  }
+
+  /**
+   * Alpha-beta search of the value of a state over the searched moves.
+   * @param state The state
+   * @param ply Distance from the root, selecting the buffer of the moves
+   * @param alpha Lower bound
+   * @param beta Upper bound
+   * @return Final score of the first player minus the final score of the second one,
+   *         exact if it is strictly between the bounds
+   */
+  private int value(GameState state, int ply, int alpha, int beta) {
+    nodes++;
+    if (System.nanoTime() > deadline) throw TIMEOUT;
+    if (state.finished()) return state.score(0) - state.score(1);
+    final long key = state.hash();
+    final int slot = (int) key & tableMask;
+    int tableMove = -1;
+    if (used[slot] && keys[slot] == key) {
+      final int value = values[slot];
+      if (bounds[slot] == EXACT
+          || bounds[slot] == LOWER && value >= beta
+          || bounds[slot] == UPPER && value <= alpha) {
+        return value;
+      }
+      tableMove = bestMoves[slot];
+    }
+
+    if (ply == buffers.length) {
+      // Games with patches costing no time can be longer than the buffers
+      buffers = Arrays.copyOf(buffers, ply * 2);
+      for (int i = ply; i < buffers.length; i++) {
+        buffers[i] = new int[MAX_CANDIDATES];
+      }
+    }
+    final int[] moves = buffers[ply];
+    final int count = candidates(state, moves, tableMove);
+    final boolean maximize = state.playing() == 0;
+    final int alphaStart = alpha;
+    final int betaStart = beta;
+    int best = maximize ? Integer.MIN_VALUE : Integer.MAX_VALUE;
+    int bestMove = moves[0];
+    for (int i = 0; i < count && alpha < beta; i++) {
+      final int value = value(state.apply(moves[i]), ply + 1, alpha, beta);
+      if (maximize ? value > best : value < best) {
+        best = value;
+        bestMove = moves[i];
+      }
+      if (maximize) alpha = Math.max(alpha, value);
+      else beta = Math.min(beta, value);
+    }
+
+    used[slot] = true;
+    keys[slot] = key;
+    values[slot] = best;
+    bestMoves[slot] = bestMove;
+    bounds[slot] = (byte) (best <= alphaStart ? UPPER : best >= betaStart ? LOWER : EXACT);
+    return best;
+  }
+
+  /**
+   * Fill the moves to search in a state, the best move of the table first.
+   * @param state The state, not finished
+   * @param moves Array receiving the moves
+   * @param first Move to search first if it is a candidate, or -1
+   * @return Number of moves
+   */
+  private static int candidates(GameState state, int[] moves, int first) {
+    final int playing = state.playing();
+    int count = 0;
+    if (state.leatherCount(playing) > 0) {
+      // A leather patch is the last one only if no other is waiting to be placed
+      final boolean last = state.position(playing) == state.timeBoardSize() - 1
+          && state.leatherCount(playing) == 1;
+      count = placements(state, Patch.LEATHER, -1, last, moves, count);
+      if (count == 0) moves[count++] = Move.DISCARD_MOVE;
+    } else {
+      final int available = Math.min(Game.PATCH_AVAILABLE, state.patchCount());
+      final int end = state.timeBoardSize() - 1;
+      for (int index = 0; index < available; index++) {
+        final Patch patch = state.getPatch(index);
+        if (patch.buttonCost() > state.buttonCount(playing)) continue;
+        // Leather patches taken on the way must still fit after the patch
+        final boolean last = state.position(playing) + patch.timeCost() >= end
+            && state.leathersAhead(playing, patch.timeCost()) == 0;
+        count = placements(state, patch, index, last, moves, count);
+      }
+      moves[count++] = Move.ADVANCE_MOVE;
+    }
+
+    for (int i = 0; i < count; i++) {
+      if (moves[i] == first) {
+        System.arraycopy(moves, 0, moves, 1, i);
+        moves[0] = first;
+        break;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Add the placements of a patch to search, and a placement completing the bonus if none of them does.
+   * @param state The state
+   * @param patch The patch
+   * @param index Index of the patch from the neutral pawn, or -1 for a leather patch
+   * @param last Is this the last patch the player can place
+   * @param moves Array receiving the moves
+   * @param count Number of moves already added
+   * @return New number of moves
+   */
+  private static int placements(GameState state, Patch patch, int index, boolean last,
+      int[] moves, int count) {
+    final int playing = state.playing();
+    final var best = state.bestPlacements(playing, patch, last ? 1 : PLACEMENTS);
+    for (var placement : best) {
+      moves[count++] = move(index, placement.code(), placement.x(), placement.y());
+    }
+    if (best.isEmpty() || state.bonusFullGiven() || state.hasBonus(playing)) return count;
+
+    // Add the best placement completing the bonus, unless it is already searched
+    final var bonus = state.bonusPlacement(playing, patch);
+    if (bonus == null) return count;
+    final int move = move(index, bonus.code(), bonus.x(), bonus.y());
+    for (int i = count - best.size(); i < count; i++) {
+      if (moves[i] == move) return count;
+    }
+    moves[count++] = move;
+    return count;
+  }
+
+  /**
+   * Encode the placement of a patch.
+   * @param index Index of the patch from the neutral pawn, or -1 for a leather patch
+   * @param code Transform code of the orientation
+   * @param x Horizontal position
+   * @param y Vertical position
+   * @return Encoded move
+   */
+  private static int move(int index, int code, int x, int y) {
+    return index < 0 ? Move.leather(x, y) : Move.buy(index, code, x, y);
+  }
+}
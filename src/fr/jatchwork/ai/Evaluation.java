@@ -0,0 +1,153 @@
+package fr.jatchwork.ai;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Objects;
+import java.util.Properties;
+
+import fr.jatchwork.model.GameState;
+
+/**
+ * Linear evaluation of a state, as the difference between the values of the two players.
+ * The value of a player is its score, plus the buttons its income will earn until the end,
+ * plus the time left before the end, minus the empty squares of its quilt board.
+ * At the end of a game, only the difference of scores counts, multiplied by {@link #WIN} so that a
+ * won end is valued above any unfinished state evaluated with weights of the order of 1.
+ * Weights tuned by self-play are saved in a properties file, which bots load at startup.
+ * @param score Weight of the score
+ * @param income Weight of the buttons still to earn with the income
+ * @param time Weight of the squares left on the time board
+ * @param space Weight of the empty squares on the quilt board
+ */
+public record Evaluation(double score, double income, double time, double space) {
+  /** Weights used by default. */
+  public static final Evaluation DEFAULT = new Evaluation(1, 1, 1, 0);
+  /** Default location of the tuned weights. */
+  public static final Path DEFAULT_PATH = Path.of("files", "evaluation.properties");
+  /** Value of a finished state per point of score difference, above any heuristic value. */
+  public static final double WIN = 1e4;
+  /** Number of weights, in the order of {@link #weights()}. */
+  public static final int FEATURES = 4;
+
+  private static final String[] NAMES = { "score", "income", "time", "space" };
+
+  /**
+   * Create an evaluation from its weights.
+   * @param weights Weights in the order of {@link #weights()}
+   * @return The evaluation
+   */
+  public static Evaluation of(double[] weights) {
+    Objects.requireNonNull(weights);
+    if (weights.length != FEATURES) throw new IllegalArgumentException("weights should have " + FEATURES + " values.");
+    return new Evaluation(weights[0], weights[1], weights[2], weights[3]);
+  }
+
+  /**
+   * Read weights from a properties file, with the keys score, income, time and space.
+   * @param path Path of the file
+   * @return The evaluation
+   * @throws IOException If the file can't be read
+   */
+  public static Evaluation load(Path path) throws IOException {
+    Objects.requireNonNull(path);
+    final var properties = new Properties();
+    try (var reader = Files.newBufferedReader(path)) {
+      properties.load(reader);
+    }
+    final var weights = new double[FEATURES];
+    for (int i = 0; i < FEATURES; i++) {
+      final var value = properties.getProperty(NAMES[i]);
+      if (value == null) throw new IllegalArgumentException("Missing weight: " + NAMES[i]);
+      try {
+        weights[i] = Double.parseDouble(value.trim());
+      } catch (NumberFormatException e) {
+        throw new IllegalArgumentException("Invalid weight " + NAMES[i] + ": " + value, e);
+      }
+    }
+    return of(weights);
+  }
+
+  /**
+   * Read the weights at the default location if they exist.
+   * @return The tuned evaluation, or {@link #DEFAULT} if there are no readable weights
+   */
+  public static Evaluation loadDefault() {
+    if (!Files.isRegularFile(DEFAULT_PATH)) return DEFAULT;
+    try {
+      return load(DEFAULT_PATH);
+    } catch (IOException | IllegalArgumentException e) {
+      return DEFAULT;
+    }
+  }
+
+  /**
+   * Values of a state weighted by this evaluation, as the differences between the two players.
+   * The evaluation of the state is the sum of the features multiplied by the weights.
+   * @param state The state
+   * @param player Index of the player
+   * @return Array of {@link #FEATURES} values, positive if the player is ahead
+   */
+  public static double[] features(GameState state, int player) {
+    Objects.requireNonNull(state);
+    final int other = 1 - player;
+    return new double[] {
+      state.score(player) - state.score(other),
+      state.buttonIncome(player) * state.incomesLeft(player) - state.buttonIncome(other) * state.incomesLeft(other),
+      state.position(other) - state.position(player),
+      state.remainingSpace(other) - state.remainingSpace(player),
+    };
+  }
+
+  /**
+   * Weights of this evaluation.
+   * @return Array of the score, income, time and space weights
+   */
+  public double[] weights() {
+    return new double[] { score, income, time, space };
+  }
+
+  /**
+   * Write the weights to a properties file.
+   * @param path Path of the file, replaced if it exists
+   * @throws IOException If the file can't be written
+   */
+  public void save(Path path) throws IOException {
+    Objects.requireNonNull(path);
+    final var weights = weights();
+    final var properties = new Properties();
+    for (int i = 0; i < FEATURES; i++) {
+      properties.setProperty(NAMES[i], Double.toString(weights[i]));
+    }
+    try (var writer = Files.newBufferedWriter(path)) {
+      properties.store(writer, "Evaluation weights tuned by self-play");
+    }
+  }
+
+  /**
+   * Evaluate a state for a player.
+   * A finished state is valued by the final scores alone, the weighted features only guiding the
+   * search in unfinished states.
+   * @param state The state
+   * @param player Index of the player
+   * @return Positive if the player is ahead
+   */
+  public double evaluate(GameState state, int player) {
+    Objects.requireNonNull(state);
+    if (state.finished()) return WIN * (state.score(player) - state.score(1 - player));
+    return value(state, player) - value(state, 1 - player);
+  }
+
+  /**
+   * Value of a single player.
+   * @param state The state
+   * @param i Index of the player
+   * @return Value
+   */
+  private double value(GameState state, int i) {
+    return score * state.score(i)
+        + income * state.buttonIncome(i) * state.incomesLeft(i)
+        + time * (state.timeBoardSize() - 1 - state.position(i))
+        - space * state.remainingSpace(i);
+  }
+}
@@ -0,0 +1,278 @@
+package fr.jatchwork.ai;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Objects;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import fr.jatchwork.model.GameState;
+import fr.jatchwork.model.MoveGenerator;
+
+/**
+ * Computer player using a Monte Carlo tree search with UCT selection.
+ * The search is parallelized at the root : each thread grows its own tree from the same state,
+ * then the visits of the moves of every tree are added to choose the most visited move.
+ * The search stops when the time or the number of playouts is reached.
+ * Close to the end of the game, the {@link EndgameSearch} is tried first, within half of the time limit.
+ */
+public final class MctsBot implements Bot {
+  /** Policy used to play the games until the end. */
+  public enum Playout {
+    /** Random purchases and advances. */
+    RANDOM,
+    /** Purchase of the patch with the most points per time, with some random moves. */
+    HEURISTIC,
+  }
+
+  /** Exploration constant of UCT. */
+  private static final double EXPLORATION = Math.sqrt(2);
+
+  /**
+   * A node of a search tree. Its value is for the player who played the move leading to it.
+   */
+  private static final class Node {
+    private final GameState state;
+    private final int player;
+    private final int[] moves;
+    private final int moveCount;
+    private final Node[] children;
+    private int expanded = 0;
+    private int visits = 0;
+    private double wins = 0;
+
+    /**
+     * Create a node, generating the moves of its state.
+     * @param state State of the game
+     * @param player Index of the player who played the move leading to this state
+     * @param buffer Buffer used to generate the moves
+     */
+    private Node(GameState state, int player, int[] buffer) {
+      this.state = state;
+      this.player = player;
+      moveCount = MoveGenerator.generate(state, buffer);
+      moves = Arrays.copyOf(buffer, moveCount);
+      children = new Node[moveCount];
+    }
+  }
+
+  private final Duration time;
+  private final int playouts;
+  private final int threads;
+  private final Playout playout;
+  private final ForkJoinPool pool;
+  private SplittableRandom random;
+  private final EndgameSearch endgame;
+  private volatile long lastPlayouts = 0;
+  private volatile long lastNanos = 0;
+  private volatile boolean lastSolved = false;
+
+  /**
+   * Create a bot thinking one second per move on every core, with heuristic playouts,
+   * searching the end of the game under the default threshold.
+   */
+  public MctsBot() {
+    this(Duration.ofSeconds(1), 0, Runtime.getRuntime().availableProcessors(), Playout.HEURISTIC, new SplittableRandom());
+  }
+
+  /**
+   * Create a new bot, searching the end of the game under the default threshold.
+   * @param time Maximum time per move, or zero for no limit
+   * @param playouts Maximum number of playouts per move and per thread, or 0 for no limit
+   * @param threads Number of trees searched in parallel
+   * @param playout Policy of the playouts
+   * @param random Source of randomness, split for each tree
+   */
+  public MctsBot(Duration time, int playouts, int threads, Playout playout, SplittableRandom random) {
+    this(time, playouts, threads, playout, random, new EndgameSearch());
+  }
+
+  /**
+   * Create a new bot.
+   * @param time Maximum time per move, or zero for no limit
+   * @param playouts Maximum number of playouts per move and per thread, or 0 for no limit
+   * @param threads Number of trees searched in parallel
+   * @param playout Policy of the playouts
+   * @param random Source of randomness, split for each tree
+   * @param endgame Search of the end of the game, or null to always use the tree search
+   */
+  public MctsBot(Duration time, int playouts, int threads, Playout playout, SplittableRandom random,
+      EndgameSearch endgame) {
+    Objects.requireNonNull(time);
+    Objects.requireNonNull(playout);
+    Objects.requireNonNull(random);
+    if (time.isNegative()) throw new IllegalArgumentException("time should be >= 0.");
+    if (playouts < 0) throw new IllegalArgumentException("playouts should be >= 0.");
+    if (time.isZero() && playouts == 0) throw new IllegalArgumentException("time or playouts should be limited.");
+    if (threads <= 0) throw new IllegalArgumentException("threads should be > 0.");
+    this.time = time;
+    this.playouts = playouts;
+    this.threads = threads;
+    this.playout = playout;
+    this.pool = new ForkJoinPool(threads);
+    this.random = random;
+    this.endgame = endgame;
+  }
+
+  @Override
+  public synchronized void seed(long seed) {
+    random = new SplittableRandom(seed);
+  }
+
+  @Override
+  public int chooseMove(GameState state) {
+    Objects.requireNonNull(state);
+    if (state.finished()) throw new IllegalArgumentException("The game is finished.");
+    final long start = System.nanoTime();
+    final long deadline = time.isZero() ? Long.MAX_VALUE : start + time.toNanos();
+    if (endgame != null && endgame.applies(state)) {
+      final int move = endgame.search(state, time.isZero() ? Long.MAX_VALUE : start + time.toNanos() / 2);
+      lastSolved = move >= 0;
+      // Otherwise the trees use the other half of the time
+      if (lastSolved) return move;
+    } else {
+      lastSolved = false;
+    }
+
+    final var tasks = new ArrayList<ForkJoinTask<Node>>(threads);
+    synchronized (this) {
+      for (int i = 0; i < threads; i++) {
+        final SplittableRandom treeRandom = random.split();
+        tasks.add(pool.submit(() -> search(state, deadline, treeRandom)));
+      }
+    }
+
+    // Add the visits of the root moves of every tree
+    final var visits = new HashMap<Integer, Integer>();
+    long total = 0;
+    for (var task : tasks) {
+      final Node root = task.join();
+      total += root.visits;
+      for (int i = 0; i < root.expanded; i++) {
+        visits.merge(root.moves[i], root.children[i].visits, Integer::sum);
+      }
+    }
+    lastPlayouts = total;
+    lastNanos = Math.max(1, System.nanoTime() - start);
+
+    int best = -1;
+    int bestVisits = -1;
+    for (var entry : visits.entrySet()) {
+      if (entry.getValue() > bestVisits) {
+        best = entry.getKey();
+        bestVisits = entry.getValue();
+      }
+    }
+    return best;
+  }
+
+  /**
+   * Number of playouts done by all threads for the last move.
+   * @return Playout count
+   */
+  public long lastPlayouts() { return lastPlayouts; }
+
+  /**
+   * Speed of the last search, used to size the number of bots a machine can run.
+   * @return Playouts per second
+   */
+  public double playoutsPerSecond() {
+    return lastNanos == 0 ? 0 : lastPlayouts * 1e9 / lastNanos;
+  }
+
+  @Override
+  public String report() {
+    if (lastSolved) return endgame.report();
+    return String.format("%d playouts, %.0f playouts/s", lastPlayouts, playoutsPerSecond());
+  }
+
+  /**
+   * Stop the threads searching the trees, once the current search is over.
+   */
+  @Override
+  public void close() {
+    pool.shutdown();
+  }
+
+  /**
+   * Grow a tree from a state until a limit is reached.
+   * @param state Root state
+   * @param deadline Time limit, from System.nanoTime()
+   * @param random Source of randomness of this tree
+   * @return Root of the tree
+   */
+  private Node search(GameState state, long deadline, SplittableRandom random) {
+    final var buffer = new int[MoveGenerator.maxMoves(state.boardSize())];
+    final var root = new Node(state, 1 - state.playing(), buffer);
+    final var path = new ArrayList<Node>();
+    final boolean heuristic = playout == Playout.HEURISTIC;
+    // A single move needs no search, but at least one playout is done to report it
+    while (root.visits == 0 || root.moveCount > 1
+        && (playouts == 0 || root.visits < playouts)
+        && System.nanoTime() < deadline) {
+      path.clear();
+      Node node = root;
+      path.add(node);
+
+      // Selection then expansion
+      while (node.moveCount > 0) {
+        if (node.expanded < node.moveCount) {
+          node = expand(node, random, buffer);
+          path.add(node);
+          break;
+        }
+        node = select(node);
+        path.add(node);
+      }
+
+      // Simulation then backpropagation
+      final GameState end = Playouts.playout(node.state, heuristic, random);
+      for (Node visited : path) {
+        visited.visits++;
+        visited.wins += Playouts.result(end, visited.player);
+      }
+    }
+    return root;
+  }
+
+  /**
+   * Add a random child not expanded yet to a node.
+   * @param node The node
+   * @param random Source of randomness
+   * @param buffer Buffer used to generate the moves
+   * @return The new child
+   */
+  private static Node expand(Node node, SplittableRandom random, int[] buffer) {
+    // Expanded moves are kept at the beginning of the array
+    final int i = node.expanded + random.nextInt(node.moveCount - node.expanded);
+    final int move = node.moves[i];
+    node.moves[i] = node.moves[node.expanded];
+    node.moves[node.expanded] = move;
+    final var child = new Node(node.state.apply(move), node.state.playing(), buffer);
+    node.children[node.expanded++] = child;
+    return child;
+  }
+
+  /**
+   * Select the child with the best upper confidence bound.
+   * @param node A fully expanded node
+   * @return The selected child
+   */
+  private static Node select(Node node) {
+    final double log = Math.log(node.visits);
+    Node best = null;
+    double bestValue = Double.NEGATIVE_INFINITY;
+    for (int i = 0; i < node.expanded; i++) {
+      final Node child = node.children[i];
+      final double value = child.wins / child.visits + EXPLORATION * Math.sqrt(log / child.visits);
+      if (value > bestValue) {
+        bestValue = value;
+        best = child;
+      }
+    }
+    return best;
+  }
+}
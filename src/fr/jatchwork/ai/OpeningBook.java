@@ -0,0 +1,139 @@
+package fr.jatchwork.ai;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.Objects;
+
+import fr.jatchwork.model.GameState;
+
+/**
+ * Best moves of opening states, read from a memory-mapped file without any parsing.
+ * States are identified by their {@link GameState#openingHash(int)}, so a book computed on some
+ * orders of the circle also serves other orders starting with the same patches.
+ * The file holds a header (magic number, version, window, count), then the entries sorted by hash,
+ * each one being a long hash followed by an int move, all in big-endian.
+ */
+public final class OpeningBook {
+  /** Default location of the book. */
+  public static final Path DEFAULT_PATH = Path.of("files", "opening.book");
+  /** Default number of patches from the neutral pawn included in the hashes. */
+  public static final int WINDOW = 3;
+
+  private static final int MAGIC = 0x4A504F42;
+  private static final int VERSION = 1;
+  private static final int HEADER = 4 * Integer.BYTES;
+  private static final int ENTRY = Long.BYTES + Integer.BYTES;
+
+  private final ByteBuffer buffer;
+  private final int window;
+  private final int count;
+
+  /**
+   * Create a book reading a buffer.
+   * @param buffer Content of a book file
+   */
+  private OpeningBook(ByteBuffer buffer) {
+    this.buffer = buffer;
+    if (buffer.capacity() < HEADER || buffer.getInt(0) != MAGIC) {
+      throw new IllegalArgumentException("The file is not an opening book.");
+    }
+    if (buffer.getInt(Integer.BYTES) != VERSION) {
+      throw new IllegalArgumentException("Unsupported opening book version: " + buffer.getInt(Integer.BYTES));
+    }
+    window = buffer.getInt(2 * Integer.BYTES);
+    count = buffer.getInt(3 * Integer.BYTES);
+    if (window < 0 || count < 0 || buffer.capacity() != HEADER + (long) count * ENTRY) {
+      throw new IllegalArgumentException("The opening book is truncated or corrupted.");
+    }
+  }
+
+  /**
+   * Map a book file in memory. Only the header is read.
+   * @param path Path of the file
+   * @return The book
+   * @throws IOException If the file can't be read
+   */
+  public static OpeningBook open(Path path) throws IOException {
+    Objects.requireNonNull(path);
+    try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      // The mapping stays valid after the channel is closed
+      return new OpeningBook(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+    }
+  }
+
+  /**
+   * Write a book file.
+   * @param path Path of the file, replaced if it exists
+   * @param window Number of patches from the neutral pawn included in the hashes
+   * @param moves Best move of each opening hash
+   * @throws IOException If the file can't be written
+   */
+  public static void write(Path path, int window, Map<Long, Integer> moves) throws IOException {
+    Objects.requireNonNull(path);
+    Objects.requireNonNull(moves);
+    if (window < 0) throw new IllegalArgumentException("window should be >= 0.");
+    final long[] hashes = moves.keySet().stream().mapToLong(Long::longValue).sorted().toArray();
+    final var buffer = ByteBuffer.allocate(HEADER + hashes.length * ENTRY);
+    buffer.putInt(MAGIC).putInt(VERSION).putInt(window).putInt(hashes.length);
+    for (long hash : hashes) {
+      buffer.putLong(hash).putInt(moves.get(hash));
+    }
+    buffer.flip();
+    try (var channel = FileChannel.open(path, StandardOpenOption.WRITE,
+        StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+      while (buffer.hasRemaining()) {
+        channel.write(buffer);
+      }
+    }
+  }
+
+  /**
+   * Open the book at the default location if it exists.
+   * @return The book, or null if there is no readable book
+   */
+  public static OpeningBook openDefault() {
+    if (!Files.isRegularFile(DEFAULT_PATH)) return null;
+    try {
+      return open(DEFAULT_PATH);
+    } catch (IOException | IllegalArgumentException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Number of patches from the neutral pawn included in the hashes of this book.
+   * @return Window of the hashes
+   */
+  public int window() { return window; }
+
+  /**
+   * Number of states in the book.
+   * @return Count of entries
+   */
+  public int size() { return count; }
+
+  /**
+   * Find the best move of a state, by a binary search in the mapped file.
+   * @param state The state
+   * @return Encoded move, or -1 if the state is not in the book
+   */
+  public int lookup(GameState state) {
+    Objects.requireNonNull(state);
+    final long hash = state.openingHash(window);
+    int low = 0;
+    int high = count - 1;
+    while (low <= high) {
+      final int middle = (low + high) >>> 1;
+      final long found = buffer.getLong(HEADER + middle * ENTRY);
+      if (found < hash) low = middle + 1;
+      else if (found > hash) high = middle - 1;
+      else return buffer.getInt(HEADER + middle * ENTRY + Long.BYTES);
+    }
+    return -1;
+  }
+}
@@ -0,0 +1,63 @@
+package fr.jatchwork.ai;
+
+import java.util.Objects;
+import java.util.SplittableRandom;
+
+import fr.jatchwork.model.GameState;
+import fr.jatchwork.model.Move;
+import fr.jatchwork.model.Patch;
+import fr.jatchwork.model.PlacementEngine;
+
+/**
+ * Computer player playing directly the moves of a playout policy, without any search.
+ * The heuristic policy places its patches with the {@link PlacementEngine} instead of at random.
+ * Very fast, used as a reference opponent.
+ */
+public final class PlayoutBot implements Bot {
+  private final MctsBot.Playout playout;
+  private SplittableRandom random;
+
+  /**
+   * Create a new bot.
+   * @param playout Policy choosing the moves
+   * @param random Source of randomness
+   */
+  public PlayoutBot(MctsBot.Playout playout, SplittableRandom random) {
+    this.playout = Objects.requireNonNull(playout);
+    this.random = Objects.requireNonNull(random);
+  }
+
+  @Override
+  public synchronized void seed(long seed) {
+    random = new SplittableRandom(seed);
+  }
+
+  @Override
+  public synchronized int chooseMove(GameState state) {
+    Objects.requireNonNull(state);
+    if (state.finished()) throw new IllegalArgumentException("The game is finished.");
+    if (playout == MctsBot.Playout.RANDOM) return Playouts.randomMove(state, random);
+    final int move = Playouts.heuristicMove(state, random);
+    return switch (Move.kind(move)) {
+    case Move.BUY -> {
+      final var placement = best(state, state.getPatch(Move.index(move)));
+      yield Move.buy(Move.index(move), placement.code(), placement.x(), placement.y());
+    }
+    case Move.LEATHER -> {
+      final var placement = best(state, Patch.LEATHER);
+      yield Move.leather(placement.x(), placement.y());
+    }
+    default -> move;
+    };
+  }
+
+  /**
+   * Best placement of a patch the policy chose to place, so it fits.
+   * @param state State of the game
+   * @param patch The patch
+   * @return The placement
+   */
+  private static PlacementEngine.Placement best(GameState state, Patch patch) {
+    return state.bestPlacements(state.playing(), patch, 1).get(0);
+  }
+}
@@ -0,0 +1,163 @@
+package fr.jatchwork.ai;
+
+import java.util.SplittableRandom;
+
+import fr.jatchwork.model.Game;
+import fr.jatchwork.model.GameState;
+import fr.jatchwork.model.Move;
+import fr.jatchwork.model.Orientations;
+import fr.jatchwork.model.Patch;
+import fr.jatchwork.model.Placements;
+
+/**
+ * Fast move policies used to play games until the end.
+ * Patches are placed at a random anchor fitting in the quilt board, without generating every move.
+ */
+final class Playouts {
+  /** Probability to play a random move instead of the heuristic one. */
+  private static final double EPSILON = 0.1;
+
+  /**
+   * Choose a random move : advance or buy one of the affordable patches.
+   * @param state State of the game, not finished
+   * @param random Source of randomness
+   * @return Encoded move
+   */
+  static int randomMove(GameState state, SplittableRandom random) {
+    final int playing = state.playing();
+    if (state.leatherCount(playing) > 0) return leatherMove(state, random);
+    final int available = Math.min(Game.PATCH_AVAILABLE, state.patchCount());
+    final int first = random.nextInt(available + 1);
+    for (int k = 0; k < available; k++) {
+      final int index = (first + k) % (available + 1);
+      if (index == available) break;
+      final Patch patch = state.getPatch(index);
+      if (patch.buttonCost() > state.buttonCount(playing)) continue;
+      final int move = placement(state, index, patch, random);
+      if (move >= 0) return move;
+    }
+    return Move.ADVANCE_MOVE;
+  }
+
+  /**
+   * Choose the purchase giving the most points per square of time, or advance if it is better.
+   * @param state State of the game, not finished
+   * @param random Source of randomness
+   * @return Encoded move
+   */
+  static int heuristicMove(GameState state, SplittableRandom random) {
+    final int playing = state.playing();
+    if (state.leatherCount(playing) > 0) return leatherMove(state, random);
+    if (random.nextDouble() < EPSILON) return randomMove(state, random);
+    final int available = Math.min(Game.PATCH_AVAILABLE, state.patchCount());
+    final int incomes = state.incomesLeft(playing);
+    final int buttons = state.buttonCount(playing);
+
+    // Try the patches from the best one, advancing earns one button per square
+    int tried = 0;
+    for (int round = 0; round < available; round++) {
+      int bestIndex = -1;
+      double bestValue = 1;
+      for (int index = 0; index < available; index++) {
+        final Patch patch = state.getPatch(index);
+        if ((tried >>> index & 1) != 0 || patch.buttonCost() > buttons) continue;
+        final double value = value(patch, incomes);
+        if (value > bestValue) {
+          bestValue = value;
+          bestIndex = index;
+        }
+      }
+      if (bestIndex < 0) break;
+      tried |= 1 << bestIndex;
+      final int move = placement(state, bestIndex, state.getPatch(bestIndex), random);
+      if (move >= 0) return move;
+    }
+    return Move.ADVANCE_MOVE;
+  }
+
+  /**
+   * Points earned by a patch per square of time spent.
+   * @param patch The patch
+   * @param incomes Button incomes the player will still cross
+   * @return Value of the patch
+   */
+  static double value(Patch patch, int incomes) {
+    final int gain = 2 * patch.tiles().count() + patch.buttonIncome() * incomes - patch.buttonCost();
+    return (double) gain / Math.max(1, patch.timeCost());
+  }
+
+  /**
+   * Place a leather patch at a random free square, or discard it.
+   * @param state State of the game
+   * @param random Source of randomness
+   * @return Encoded move
+   */
+  static int leatherMove(GameState state, SplittableRandom random) {
+    final Orientations orientations = Patch.LEATHER.orientations();
+    final Placements placements = orientations.placements(0, state.boardSize());
+    final int count = placements.count();
+    final int first = random.nextInt(count);
+    for (int k = 0; k < count; k++) {
+      final int anchor = (first + k) % count;
+      if (state.fit(state.playing(), placements, anchor)) {
+        return Move.leather(placements.x(anchor), placements.y(anchor));
+      }
+    }
+    return Move.DISCARD_MOVE;
+  }
+
+  /**
+   * Find a random placement of a patch on the quilt board of the player who must play.
+   * @param state State of the game
+   * @param index Index of the patch from the neutral pawn
+   * @param patch The patch
+   * @param random Source of randomness
+   * @return Encoded move, or -1 if the patch does not fit
+   */
+  static int placement(GameState state, int index, Patch patch, SplittableRandom random) {
+    final Orientations orientations = patch.orientations();
+    final int playing = state.playing();
+    final int first = random.nextInt(orientations.count());
+    for (int k = 0; k < orientations.count(); k++) {
+      final int i = (first + k) % orientations.count();
+      final Placements placements = orientations.placements(i, state.boardSize());
+      final int count = placements.count();
+      if (count == 0) continue;
+      final int start = random.nextInt(count);
+      for (int j = 0; j < count; j++) {
+        final int anchor = (start + j) % count;
+        if (state.fit(playing, placements, anchor)) {
+          return Move.buy(index, orientations.code(i), placements.x(anchor), placements.y(anchor));
+        }
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Play a game until the end.
+   * @param state Starting state
+   * @param heuristic Use the heuristic policy instead of random moves
+   * @param random Source of randomness
+   * @return Final state
+   */
+  static GameState playout(GameState state, boolean heuristic, SplittableRandom random) {
+    while (!state.finished()) {
+      state = state.apply(heuristic ? heuristicMove(state, random) : randomMove(state, random));
+    }
+    return state;
+  }
+
+  /**
+   * Result of a finished game for a player.
+   * @param state Final state
+   * @param player Index of the player
+   * @return 1 for a win, 0.5 for a draw and 0 for a loss
+   */
+  static double result(GameState state, int player) {
+    final int diff = state.score(player) - state.score(1 - player);
+    return diff > 0 ? 1 : diff == 0 ? 0.5 : 0;
+  }
+
+  private Playouts() { }
+}
@@ -3,11 +3,24 @@ package fr.jatchwork.control;
 import java.io.IOException;
 import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Objects;
 import java.util.Scanner;
 
+import fr.jatchwork.ai.AlphaBetaBot;
+import fr.jatchwork.ai.BookBot;
+import fr.jatchwork.ai.Bot;
+import fr.jatchwork.ai.MctsBot;
+import fr.jatchwork.ai.OpeningBook;
+import fr.jatchwork.io.GameRecord;
+import fr.jatchwork.io.MoveLog;
 import fr.jatchwork.model.Game;
+import fr.jatchwork.model.Move;
+import fr.jatchwork.model.PackingOracle;
 import fr.jatchwork.model.Patch;
 import fr.jatchwork.model.PatchBuilder;
+import fr.jatchwork.model.PatchFormatException;
+import fr.jatchwork.model.PlacementEngine;
 import fr.jatchwork.model.Player;
 import fr.jatchwork.view.ViewConsole;
 
@@ -15,7 +28,12 @@ import fr.jatchwork.view.ViewConsole;
  * Manage input on the console versions.
  */
 public final class ControlConsole {
+  /** Index of the player played by the computer. */
+  public static final int BOT_PLAYER = 1;
+
   private static final Scanner scanner = new Scanner(System.in);
+  /** Oracle of the hints, its answers being kept for the whole game. */
+  private static final PackingOracle oracle = new PackingOracle();
 
   /**
    * Display a dialog and wait for input to choose the version of the game.
@@ -32,44 +50,137 @@ public final class ControlConsole {
       System.out.println("4. Custom version");
       version = scanner.nextInt();
     }
+    return version;
+  }
+
+  /**
+   * Create the game for the choosen version.
+   * Display a dialog and wait for input if the version require a file of patches.
+   * @param version Choosen version
+   * @return The new game
+   */
+  public static Game initGame(int version) {
+    if (version != 4) {
+      return new Game(version);
+    }
 
-    if (version == 4) {
-      while (Game.instance() == null) {
-        // Ask patches file
-        System.out.println("This version require a file of patches.");
-        System.out.println("Specify the path of this file :");
-        final var path = Path.of(scanner.next());
-        try {
-          Game.initGame(version, PatchBuilder.fromFile(path));
-        } catch (NoSuchFileException e) {
-          System.out.printf("The file %s does not exist or is not a file.\n", e.getMessage());
-        } catch (IOException e) {
-          System.out.println(e.getMessage());
-        } catch (Exception e) {
-          System.out.println("Malformed file. Please fix the file or specify another one.");
-        }
+    Game game = null;
+    while (game == null) {
+      // Ask patches file
+      System.out.println("This version require a file of patches.");
+      System.out.println("Specify the path of this file :");
+      final var path = Path.of(scanner.next());
+      try {
+        game = new Game(version, PatchBuilder.fromFile(path));
+      } catch (NoSuchFileException e) {
+        System.out.printf("The file %s does not exist or is not a file.\n", e.getMessage());
+      } catch (PatchFormatException e) {
+        System.out.printf("Malformed file at line %d, column %d : %s.\n", e.line(), e.column(), e.reason());
+        System.out.println("Please fix the file or specify another one.");
+      } catch (IOException e) {
+        System.out.println(e.getMessage());
+      } catch (Exception e) {
+        System.out.println("Malformed file. Please fix the file or specify another one.");
       }
-    } else {
-      Game.initGame(version);
     }
+    return game;
+  }
 
-    return version;
+  /**
+   * Display a dialog and wait for input to choose if the player 2 is played by the computer.
+   * The computer plays the moves of the opening book first, if there is one at the default location.
+   * @return The bot playing the player 2, or null if it is played by a human
+   */
+  public static Bot initBot() {
+    String answer = "";
+    while (!answer.equals("0") && !answer.equals("1") && !answer.equals("2")) {
+      System.out.println("Who plays the player 2 ?");
+      System.out.println("0. Human");
+      System.out.println("1. Computer (Monte Carlo tree search)");
+      System.out.println("2. Computer (alpha-beta search)");
+      answer = scanner.next();
+    }
+    final Bot bot = switch (answer) {
+    case "1" -> new MctsBot();
+    case "2" -> new AlphaBetaBot();
+    default -> null;
+    };
+    final var book = OpeningBook.openDefault();
+    return bot == null || book == null ? bot : new BookBot(book, bot);
+  }
+
+  /**
+   * Add a finished game at the end of the archive of the games played.
+   * A failure is only reported, so it never interrupts the game.
+   * The patches of a game of the custom version are not archived, so replaying it needs the file
+   * of patches it was played with.
+   * @param game The game, every move having been played with {@link Game#play(int)}
+   */
+  public static void archiveGame(Game game) {
+    Objects.requireNonNull(game);
+    try {
+      MoveLog.append(MoveLog.ARCHIVE, GameRecord.of(game));
+    } catch (IOException e) {
+      System.err.println("The game could not be archived: " + e.getMessage());
+    }
+  }
+
+  /**
+   * Display which groups of the patches that can be bought still fit together on the quilt board
+   * of the player who must play, so the player knows if buying one leaves room for the others.
+   * @param game The game being played
+   */
+  private static void displayHint(Game game) {
+    final Player player = game.playing();
+    final int count = Math.min(Game.PATCH_AVAILABLE, game.patchCount());
+    System.out.println("\n-- HINT --\n");
+    for (int group = 1; group < 1 << count; group++) {
+      final var patches = new ArrayList<Patch>(count);
+      final var numbers = new ArrayList<String>(count);
+      for (int i = 0; i < count; i++) {
+        if ((group & 1 << i) == 0) continue;
+        patches.add(game.getPatch(i));
+        numbers.add(Integer.toString(i));
+      }
+      final boolean fit = oracle.canPack(player.board(), patches);
+      if (patches.size() == 1) {
+        System.out.printf("Patch %s : %s\n", numbers.get(0), fit ? "fits" : "doesn't fit");
+      } else {
+        System.out.printf("Patches %s : %s\n", String.join(" + ", numbers), fit ? "fit together" : "don't fit together");
+      }
+    }
+    System.out.println();
+  }
+
+  /**
+   * Let the computer play the turn of its player.
+   * @param game The game being played
+   * @param bot The bot choosing the move
+   */
+  public static void playBot(Game game, Bot bot) {
+    Objects.requireNonNull(game);
+    Objects.requireNonNull(bot);
+    final int move = bot.chooseMove(game);
+    game.play(move);
+    ViewConsole.displayBotMove(move, bot);
+    if (!game.finished()) ViewConsole.displayMenu(game);
   }
 
   /**
    * Wait for input for the main game loop.
+   * @param game The game being played
    */
-  public static void manageInput() {
+  public static void manageInput(Game game) {
+    Objects.requireNonNull(game);
     String input = scanner.next();
     switch (input) {
     case "b" -> {
-      ViewConsole.displayGame();
+      ViewConsole.displayGame(game);
     }
     case "p" -> {
-      ViewConsole.displayPatches();
+      ViewConsole.displayPatches(game);
     }
     case "0", "1", "2" -> {
-      final Game game = Game.instance();
       final Player player = game.playing();
       int toBuy = Integer.parseInt(input);
       if (game.patchCount() <= toBuy) {
@@ -83,14 +194,18 @@ public final class ControlConsole {
             patch.buttonCost() - player.buttonCount());
         break;
       }
-      if (!player.canPlacePatch(patch)) {
+      final var placement = PlacementEngine.best(player.board(), patch);
+      if (placement == null) {
         System.out.println("There is not enough space in the quiltboard to place the patch\n");
         break;
       }
-      player.buyPatch(toBuy);
+      game.play(Move.buy(toBuy, placement.code(), placement.x(), placement.y()));
     }
     case "e" -> {
-      Game.instance().playing().endTurn();
+      game.play(Move.ADVANCE_MOVE);
+    }
+    case "h" -> {
+      displayHint(game);
     }
     case "q" -> {
       System.exit(0);
@@ -100,14 +215,14 @@ public final class ControlConsole {
     }
     };
 
-    // Place leather patches
-    final var player = Game.instance().playing();
+    // Place leather patches, or throw them away if the quilt board is full
+    final var player = game.playing();
     while (player.leatherCount() > 0) {
-      player.buyPatch(Patch.LEATHER);
-      player.removeLeather();
+      final var placement = PlacementEngine.best(player.board(), Patch.LEATHER);
+      game.play(placement == null ? Move.DISCARD_MOVE : Move.leather(placement.x(), placement.y()));
     }
 
-    ViewConsole.displayMenu();
+    ViewConsole.displayMenu(game);
   }
 
   private ControlConsole() { }
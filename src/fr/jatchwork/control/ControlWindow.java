@@ -3,12 +3,15 @@ package fr.jatchwork.control;
 import java.util.Arrays;
 import java.util.Objects;
 
+import fr.jatchwork.ai.Bot;
 import fr.jatchwork.model.Game;
+import fr.jatchwork.model.Move;
 import fr.jatchwork.model.Patch;
 import fr.jatchwork.model.PatchSetter;
 import fr.jatchwork.model.Player;
 import fr.jatchwork.model.QuiltBoard;
 import fr.jatchwork.model.Vector;
+import fr.jatchwork.view.ViewConsole;
 import fr.jatchwork.view.ViewWindow;
 import fr.umlv.zen5.ApplicationContext;
 import fr.umlv.zen5.Event;
@@ -20,6 +23,13 @@ import fr.umlv.zen5.KeyboardKey;
  */
 public final class ControlWindow {
 
+  /** The game played in the window. */
+  private static Game game = null;
+
+  /** The computer player, or null if both players are humans. */
+  private static Bot bot = null;
+  private static int botPlayer = -1;
+
   // Temporary default patch for test, to delete
   private static PatchSetter patchSetter = null;
 
@@ -32,7 +42,7 @@ public final class ControlWindow {
   private static final Button btnEndTurn = new Button(
       () -> {
         patchSetter = null;
-        Game.instance().playing().endTurn();
+        game.play(Move.ADVANCE_MOVE);
       },
       null, "End turn", ViewWindow.FONT);
 
@@ -48,7 +58,7 @@ public final class ControlWindow {
           // Rotate button
           new Button(
               () -> {
-                if (patchSetter != null && Game.instance().playing() == Game.instance().player(ii)) {
+                if (patchSetter != null && game.playing() == game.player(ii)) {
                   patchSetter.rotate();
                 }
               },
@@ -56,7 +66,7 @@ public final class ControlWindow {
           // Flip button
           new Button(
               () -> {
-                if (patchSetter != null && Game.instance().playing() == Game.instance().player(ii)) {
+                if (patchSetter != null && game.playing() == game.player(ii)) {
                   patchSetter.flip();
                 }
               },
@@ -64,7 +74,7 @@ public final class ControlWindow {
           // Buy button
           new Button(
               () -> {
-                playerBuyPatch(Game.instance().player(ii));
+                playerBuyPatch(game.player(ii));
               },
               null, "Buy patch", ViewWindow.FONT));
     }
@@ -78,7 +88,6 @@ public final class ControlWindow {
           final int ycopy = y;
           quiltBoardBtns[i][x][y] = new Button(() -> {
             // Place a patch at button position when clicked
-            final Game game = Game.instance();
             final Player player = game.player(icopy);
             if (player == game.playing()
                 && patchSetter != null
@@ -92,7 +101,26 @@ public final class ControlWindow {
   }
 
   /**
-   * The selected patch from the instance of Game.
+   * Set the game to play in the window. Must be called before any input.
+   * @param game The game
+   */
+  public static void setGame(Game game) {
+    ControlWindow.game = Objects.requireNonNull(game);
+  }
+
+  /**
+   * Let the computer play a player of the game.
+   * @param bot The bot choosing the moves
+   * @param player Index of the player played by the bot
+   */
+  public static void setBot(Bot bot, int player) {
+    Objects.checkIndex(player, Game.PLAYER_COUNT);
+    ControlWindow.bot = Objects.requireNonNull(bot);
+    botPlayer = player;
+  }
+
+  /**
+   * The selected patch from the game.
    * @return Patch. May be null
    */
   public static Patch selectedPatch() { return patchSetter != null ? patchSetter.patch() : null; }
@@ -118,9 +146,8 @@ public final class ControlWindow {
    * @param i Index of the new selected patch
    */
   public static void selectPatch(int i) {
-    final Game game = Game.instance();
     if (game.patchCount() <= i) return;
-    patchSetter = new PatchSetter(game.playing().board(), i);
+    patchSetter = new PatchSetter(game, game.playing().board(), i);
   }
 
   /**
@@ -151,6 +178,16 @@ public final class ControlWindow {
   public static void manageInput(ApplicationContext context) {
     Objects.requireNonNull(context);
 
+    // The computer plays without waiting for input
+    if (botPlaying()) {
+      patchSetter = null;
+      final int move = bot.chooseMove(game);
+      game.play(move);
+      ViewConsole.displayBotMove(move, bot);
+      updateBtns();
+      return;
+    }
+
     // Fetch the event
     Event event;
     do {
@@ -165,6 +202,14 @@ public final class ControlWindow {
     updateBtns();
   }
   
+  /**
+   * Is it the turn of the computer.
+   * @return True if the bot must play
+   */
+  private static boolean botPlaying() {
+    return bot != null && !game.finished() && game.playing() == game.player(botPlayer);
+  }
+
   /**
    * Execute action based on event
    * @param event User event
@@ -177,19 +222,26 @@ public final class ControlWindow {
       Button.runButtons(new Vector((int)pos.x, (int)pos.y));
     }
     case KEY_PRESSED -> {
-      if (event.getKey() == KeyboardKey.Q) System.exit(0);
+      if (event.getKey() == KeyboardKey.Q) quit();
     }
     default -> { }
     }
   }
 
+  /**
+   * Close the bot, if there is one, then quit the application.
+   */
+  private static void quit() {
+    if (bot != null) bot.close();
+    System.exit(0);
+  }
+
   /**
    * Update buttons states, based on current game state.
    */
   private static void updateBtns() {
-    final Game game = Game.instance();
     final Player player = game.playing();
-    if (player.leatherCount() > 0 && patchSetter == null) {
+    if (player.leatherCount() > 0 && patchSetter == null && !botPlaying()) {
       // Player must place a leather patch
       btnEndTurn.setActive(false);
       for (Button btn : patchButtons) {
@@ -203,7 +255,10 @@ public final class ControlWindow {
 
     if (game.finished()) {
       // Now end turn button while quit the game
-      btnEndTurn.setHandler(() -> System.exit(0));
+      btnEndTurn.setHandler(() -> {
+        ControlConsole.archiveGame(game);
+        quit();
+      });
       btnEndTurn.setText("Quit game");
     }
   }
@@ -214,13 +269,15 @@ public final class ControlWindow {
    */
   private static void playerBuyPatch(Player player) {
     Objects.requireNonNull(player);
-    final Game game = Game.instance();
     if (patchSetter != null
         && patchSetter.position() != null
         && game.playing() == player
         && player.board().fit(patchSetter.patch(), patchSetter.position().x(), patchSetter.position().y()))
     {
-      player.buyPatch(patchSetter.patchNum(), patchSetter.patch(), patchSetter.position());
+      final int numPatch = patchSetter.patchNum();
+      final int code = game.getPatch(numPatch).orientations().codeOf(patchSetter.patch());
+      final Vector pos = patchSetter.position();
+      game.play(Move.buy(numPatch, code, pos.x(), pos.y()));
       patchSetter = null;
     }
   }
@@ -239,9 +296,9 @@ public final class ControlWindow {
             patchSetter.position().x(),
             patchSetter.position().y()))
     {
-      player.buyPatch(patchSetter.patch(), patchSetter.position());
+      final Vector pos = patchSetter.position();
+      game.play(Move.leather(pos.x(), pos.y()));
       patchSetter = null;
-      player.removeLeather();
 
       // Reactivate buttons
       btnEndTurn.setActive(true);
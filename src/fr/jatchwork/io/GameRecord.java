@@ -0,0 +1,76 @@
+package fr.jatchwork.io;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+import fr.jatchwork.model.Game;
+
+/**
+ * Everything needed to replay a game : its version, its seed and its moves.
+ * A game of the custom version also needs its list of patches, which is not recorded.
+ * @param phase Version of the game, from 1 to 4
+ * @param seed Seed of the order of the patches, see {@link Game#seed()}
+ * @param moves Encoded moves in the order they were played (see {@link fr.jatchwork.model.Move})
+ */
+public record GameRecord(int phase, long seed, int[] moves) {
+  /**
+   * Create a new record.
+   * @param phase Version of the game, from 1 to 4
+   * @param seed Seed of the order of the patches
+   * @param moves Encoded moves in the order they were played
+   */
+  public GameRecord {
+    if (phase < 1 || phase > 4) throw new IllegalArgumentException("phase should be between 1 and 4.");
+    moves = Objects.requireNonNull(moves).clone();
+  }
+
+  /**
+   * Record the moves played in a game so far.
+   * @param game The game, every move having been played with {@link Game#play(int)}
+   * @return The record
+   */
+  public static GameRecord of(Game game) {
+    Objects.requireNonNull(game);
+    final var moves = new int[game.undoCount()];
+    for (int i = 0; i < moves.length; i++) {
+      moves[i] = game.playedMove(i);
+    }
+    return new GameRecord(game.phase(), game.seed(), moves);
+  }
+
+  /**
+   * Encoded moves of the game.
+   * @return Copy of the moves
+   */
+  @Override
+  public int[] moves() { return moves.clone(); }
+
+  /**
+   * Number of moves of the game.
+   * @return Move count
+   */
+  public int length() { return moves.length; }
+
+  /**
+   * Get a move of the game.
+   * @param ply Index of the move, 0 being the first move
+   * @return Encoded move
+   */
+  public int move(int ply) { return moves[Objects.checkIndex(ply, moves.length)]; }
+
+  @Override
+  public boolean equals(Object obj) {
+    return obj instanceof GameRecord record
+        && phase == record.phase && seed == record.seed && Arrays.equals(moves, record.moves);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(phase, seed, Arrays.hashCode(moves));
+  }
+
+  @Override
+  public String toString() {
+    return "GameRecord[phase=" + phase + ", seed=" + seed + ", " + moves.length + " moves]";
+  }
+}
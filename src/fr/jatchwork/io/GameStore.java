@@ -0,0 +1,555 @@
+package fr.jatchwork.io;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.stream.IntStream;
+
+import fr.jatchwork.model.Game;
+import fr.jatchwork.model.Move;
+import fr.jatchwork.model.Patch;
+import fr.jatchwork.model.PatchBuilder;
+
+/**
+ * Append-only database of finished games, stored in a directory and queried through memory-mapped
+ * files, so millions of games are scanned without being loaded on the heap.
+ * The directory holds :
+ * <ul>
+ * <li>headers.bin : a header of {@value #HEADER_BYTES} bytes per game (see {@link Header}),
+ * with the offset of its moves</li>
+ * <li>moves.bin : the moves of each game, encoded as a {@link MoveLog} record</li>
+ * <li>patches.patch : the catalog of the patches bought, in the format of the patch files,
+ * the index of a patch in it being its identifier in the purchase indexes</li>
+ * <li>result-N.idx : the numbers of the games with the result N (see {@link Header#result()})</li>
+ * <li>patch-N.idx : every purchase of the patch N (see {@link Purchase}), on 8 bytes each</li>
+ * </ul>
+ * Games are numbered from 0 in the order they were added. The header of a game is written after
+ * everything else, so a game interrupted while being written is simply not part of the store.
+ */
+public final class GameStore implements Closeable {
+  /** Size of the header of a game. */
+  public static final int HEADER_BYTES = 32;
+  /** Result of a game won by neither player. */
+  public static final int DRAW = 2;
+
+  /** Size of a purchase in an index. */
+  private static final int PURCHASE_BYTES = 8;
+  /** Size of a game number in an index. */
+  private static final int GAME_BYTES = Integer.BYTES;
+  /** Maximum number of bytes mapped at once, to map files of more than 2 GB. */
+  private static final int SEGMENT = 1 << 30;
+  /** Maximum number of distinct patches, identifiers being saved on a byte. */
+  private static final int MAX_PATCHES = 256;
+
+  /**
+   * Summary of a stored game.
+   * @param game Number of the game in the store
+   * @param seed Seed of the game
+   * @param phase Version of the game
+   * @param length Number of moves of the game
+   * @param result Index of the winning player, or {@link GameStore#DRAW}
+   * @param firstScore Final score of the player 1
+   * @param secondScore Final score of the player 2
+   * @param bonusOwner Index of the player who took the 7x7 bonus, or -1
+   * @param bonusPly Number of moves played when the bonus was taken, or -1
+   */
+  public record Header(int game, long seed, int phase, int length, int result,
+      int firstScore, int secondScore, int bonusOwner, int bonusPly) {
+    /**
+     * Read a header.
+     * @param game Number of the game
+     * @param buffer Source, its position being moved after the header
+     * @return The header
+     */
+    private static Header read(int game, ByteBuffer buffer) {
+      final long seed = buffer.getLong();
+      buffer.position(buffer.position() + Long.BYTES + Integer.BYTES);
+      final int length = Short.toUnsignedInt(buffer.getShort());
+      final int phase = buffer.get();
+      final int result = buffer.get();
+      final int firstScore = buffer.getShort();
+      final int secondScore = buffer.getShort();
+      final int bonusOwner = buffer.get();
+      buffer.get();
+      final int bonusPly = buffer.getShort();
+      return new Header(game, seed, phase, length, result, firstScore, secondScore, bonusOwner, bonusPly);
+    }
+  }
+
+  /**
+   * Purchase of a patch in a stored game.
+   * @param game Number of the game
+   * @param ply Number of moves played before the purchase
+   * @param player Index of the buying player
+   * @param time Position of the player on the time board before the purchase
+   */
+  public record Purchase(int game, int ply, int player, int time) { }
+
+  /**
+   * File written at its end through a buffer, and read through its channel.
+   */
+  private static final class AppendFile {
+    private final FileChannel channel;
+    private final ByteBuffer pending;
+
+    /**
+     * Open a file, creating it if needed.
+     * @param path Path of the file
+     * @param capacity Size of the write buffer
+     * @throws IOException If the file can't be opened
+     */
+    AppendFile(Path path, int capacity) throws IOException {
+      channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+      channel.position(channel.size());
+      pending = ByteBuffer.allocate(capacity);
+    }
+
+    /**
+     * Size of the file, with the bytes not written yet.
+     * @return Size in bytes
+     * @throws IOException If the size can't be read
+     */
+    long size() throws IOException {
+      return channel.size() + pending.position();
+    }
+
+    /**
+     * Get the write buffer, writing it first if it can't hold some more bytes.
+     * @param bytes Number of bytes to add
+     * @return Buffer to put the bytes in
+     * @throws IOException If the file can't be written
+     */
+    ByteBuffer reserve(int bytes) throws IOException {
+      if (pending.remaining() < bytes) flush();
+      return pending;
+    }
+
+    /**
+     * Add bytes at the end of the file.
+     * @param bytes The bytes
+     * @throws IOException If the file can't be written
+     */
+    void append(byte[] bytes) throws IOException {
+      if (bytes.length > pending.capacity()) {
+        flush();
+        write(ByteBuffer.wrap(bytes));
+      } else {
+        reserve(bytes.length).put(bytes);
+      }
+    }
+
+    /**
+     * Write the bytes added to the file.
+     * @throws IOException If the file can't be written
+     */
+    void flush() throws IOException {
+      pending.flip();
+      write(pending);
+      pending.clear();
+    }
+
+    /**
+     * Write a whole buffer at the end of the file.
+     * @param buffer The bytes
+     * @throws IOException If the file can't be written
+     */
+    private void write(ByteBuffer buffer) throws IOException {
+      while (buffer.hasRemaining()) {
+        channel.write(buffer);
+      }
+    }
+
+    /**
+     * Read bytes written in the file.
+     * @param position Position of the first byte
+     * @param buffer Destination, filled entirely
+     * @throws IOException If the file can't be read or is too short
+     */
+    void read(long position, ByteBuffer buffer) throws IOException {
+      while (buffer.hasRemaining()) {
+        final int read = channel.read(buffer, position);
+        if (read < 0) throw new EOFException("Truncated game store.");
+        position += read;
+      }
+      buffer.flip();
+    }
+
+    /**
+     * Drop the records of the games which are not in the store, and any partial record.
+     * Records start with the number of their game, in increasing order.
+     * @param recordSize Size of a record
+     * @param games Number of games in the store
+     * @throws IOException If the file can't be read or truncated
+     */
+    void keep(int recordSize, int games) throws IOException {
+      // Binary search of the first record of a game not in the store
+      long low = 0;
+      long high = channel.size() / recordSize;
+      final var game = ByteBuffer.allocate(Integer.BYTES);
+      while (low < high) {
+        final long middle = (low + high) >>> 1;
+        read(middle * recordSize, game.clear());
+        if (game.getInt() < games) low = middle + 1;
+        else high = middle;
+      }
+      channel.truncate(low * recordSize);
+      channel.position(low * recordSize);
+    }
+
+    /**
+     * Map the records written in the file, by segments of whole records.
+     * @param recordSize Size of a record
+     * @param count Number of records to map
+     * @return Mapped segments, in order
+     * @throws IOException If the file can't be mapped
+     */
+    List<MappedByteBuffer> map(int recordSize, long count) throws IOException {
+      final var segments = new ArrayList<MappedByteBuffer>();
+      final long end = Math.min(count * recordSize, channel.size() / recordSize * recordSize);
+      final long step = SEGMENT / recordSize * recordSize;
+      for (long start = 0; start < end; start += step) {
+        segments.add(channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(step, end - start)));
+      }
+      return segments;
+    }
+
+    /**
+     * Close the file, writing the bytes added first.
+     * @throws IOException If the file can't be written
+     */
+    void close() throws IOException {
+      try {
+        flush();
+      } finally {
+        channel.close();
+      }
+    }
+  }
+
+  private final Path directory;
+  private final AppendFile headers;
+  private final AppendFile moves;
+  private final AppendFile[] results = new AppendFile[DRAW + 1];
+  private final AppendFile[] purchases = new AppendFile[MAX_PATCHES];
+  private final List<Patch> catalog;
+  private final HashMap<Patch, Integer> ids = new HashMap<>();
+  private int count;
+
+  /**
+   * Open a store, creating it if needed.
+   * @param directory Directory of the store
+   * @throws IOException If the store can't be opened
+   */
+  public GameStore(Path directory) throws IOException {
+    this.directory = Objects.requireNonNull(directory);
+    Files.createDirectories(directory);
+    final Path patches = directory.resolve("patches.patch");
+    catalog = Files.exists(patches) ? PatchBuilder.fromFile(patches) : new ArrayList<>();
+    for (int id = 0; id < catalog.size(); id++) {
+      ids.put(catalog.get(id), id);
+    }
+    headers = new AppendFile(directory.resolve("headers.bin"), HEADER_BYTES << 11);
+    // Drop the end of a header interrupted while being written
+    count = (int) (headers.size() / HEADER_BYTES);
+    headers.channel.truncate((long) count * HEADER_BYTES);
+    headers.channel.position((long) count * HEADER_BYTES);
+    moves = new AppendFile(directory.resolve("moves.bin"), 1 << 16);
+    for (int result = 0; result < results.length; result++) {
+      results[result] = new AppendFile(directory.resolve("result-" + result + ".idx"), GAME_BYTES << 10);
+      results[result].keep(GAME_BYTES, count);
+    }
+    // Drop the postings of games whose header was not written, so they are not given to the next games
+    for (int id = 0; id < catalog.size(); id++) {
+      if (Files.exists(directory.resolve("patch-" + id + ".idx"))) purchases(id).keep(PURCHASE_BYTES, count);
+    }
+  }
+
+  /**
+   * Add a finished game of a standard version.
+   * @param record Record of the game
+   * @return Number of the game in the store
+   * @throws IOException If the store can't be written
+   * @throws IllegalArgumentException If the game is not finished
+   */
+  public int append(GameRecord record) throws IOException {
+    Objects.requireNonNull(record);
+    if (record.phase() == 4) throw new IllegalArgumentException("A custom game needs its list of patches.");
+    return append(record, new Game(record.phase(), record.seed()));
+  }
+
+  /**
+   * Add a finished game of the custom version.
+   * @param record Record of the game
+   * @param patches List of patches the game was created with
+   * @return Number of the game in the store
+   * @throws IOException If the store can't be written
+   * @throws IllegalArgumentException If the game is not finished
+   */
+  public int append(GameRecord record, List<Patch> patches) throws IOException {
+    Objects.requireNonNull(record);
+    return append(record, new Game(record.phase(), patches, record.seed()));
+  }
+
+  /**
+   * Replay a game to index it, then add it.
+   * @param record Record of the game
+   * @param game New game of the record
+   * @return Number of the game in the store
+   * @throws IOException If the store can't be written
+   */
+  private synchronized int append(GameRecord record, Game game) throws IOException {
+    final int number = count;
+    final var bought = new ArrayList<long[]>();
+    int bonusOwner = -1;
+    int bonusPly = -1;
+    for (int ply = 0; ply < record.length(); ply++) {
+      final int move = record.move(ply);
+      final int player = game.playing() == game.player(0) ? 0 : 1;
+      if (Move.kind(move) == Move.BUY) {
+        final Patch patch = game.getPatch(Move.index(move));
+        bought.add(new long[] { id(patch), ply, player, game.playing().position() });
+      }
+      game.play(move);
+      if (bonusOwner < 0 && game.bonusFullGiven()) {
+        bonusOwner = player;
+        bonusPly = ply + 1;
+      }
+    }
+    if (!game.finished()) throw new IllegalArgumentException("The game is not finished.");
+    final int firstScore = game.player(0).score();
+    final int secondScore = game.player(1).score();
+    final int result = firstScore == secondScore ? DRAW : firstScore > secondScore ? 0 : 1;
+
+    final long offset = moves.size();
+    final byte[] payload = MoveLog.encode(record);
+    moves.append(payload);
+    for (var purchase : bought) {
+      purchases(Math.toIntExact(purchase[0])).reserve(PURCHASE_BYTES)
+          .putInt(number).putShort((short) purchase[1]).put((byte) purchase[2]).put((byte) purchase[3]);
+    }
+    results[result].reserve(GAME_BYTES).putInt(number);
+    // A full header buffer is written by flush, after the moves and the postings of its games
+    if (headers.pending.remaining() < HEADER_BYTES) flush();
+    headers.reserve(HEADER_BYTES)
+        .putLong(record.seed()).putLong(offset).putInt(payload.length)
+        .putShort((short) record.length()).put((byte) record.phase()).put((byte) result)
+        .putShort((short) firstScore).putShort((short) secondScore)
+        .put((byte) bonusOwner).put((byte) 0).putShort((short) bonusPly);
+    count++;
+    return number;
+  }
+
+  /**
+   * Number of stored games.
+   * @return Game count
+   */
+  public synchronized int size() { return count; }
+
+  /**
+   * Patches bought in the stored games, their index being their identifier.
+   * @return Unmodifiable list of patches
+   */
+  public synchronized List<Patch> patches() { return List.copyOf(catalog); }
+
+  /**
+   * Get the summary of a game.
+   * @param game Number of the game
+   * @return The header of the game
+   * @throws IOException If the store can't be read
+   */
+  public synchronized Header header(int game) throws IOException {
+    Objects.checkIndex(game, count);
+    flush();
+    final var buffer = ByteBuffer.allocate(HEADER_BYTES);
+    headers.read((long) game * HEADER_BYTES, buffer);
+    return Header.read(game, buffer);
+  }
+
+  /**
+   * Get the moves of a game.
+   * @param game Number of the game
+   * @return The record of the game
+   * @throws IOException If the store can't be read
+   */
+  public synchronized GameRecord record(int game) throws IOException {
+    final var header = ByteBuffer.allocate(HEADER_BYTES);
+    Objects.checkIndex(game, count);
+    flush();
+    headers.read((long) game * HEADER_BYTES, header);
+    final long offset = header.getLong(Long.BYTES);
+    final int size = header.getInt(2 * Long.BYTES);
+    final var payload = ByteBuffer.allocate(size);
+    moves.read(offset, payload);
+    return MoveLog.decode(payload.array());
+  }
+
+  /**
+   * Read the summary of every game in order, from the mapped headers.
+   * @param action Action done on each header
+   * @throws IOException If the store can't be read
+   */
+  public synchronized void forEach(Consumer<Header> action) throws IOException {
+    Objects.requireNonNull(action);
+    flush();
+    int game = 0;
+    for (var segment : headers.map(HEADER_BYTES, count)) {
+      while (segment.hasRemaining()) {
+        action.accept(Header.read(game++, segment));
+      }
+    }
+  }
+
+  /**
+   * Find the games whose summary matches a filter.
+   * @param filter The filter
+   * @return Numbers of the matching games, in increasing order
+   * @throws IOException If the store can't be read
+   */
+  public int[] select(Predicate<Header> filter) throws IOException {
+    Objects.requireNonNull(filter);
+    final var builder = IntStream.builder();
+    forEach(header -> {
+      if (filter.test(header)) builder.add(header.game());
+    });
+    return builder.build().toArray();
+  }
+
+  /**
+   * Find the games with a result, from its index.
+   * @param result Index of the winning player, or {@link #DRAW}
+   * @return Numbers of the games, in increasing order
+   * @throws IOException If the store can't be read
+   */
+  public synchronized int[] withResult(int result) throws IOException {
+    Objects.checkIndex(result, results.length);
+    flush();
+    final var builder = IntStream.builder();
+    for (var segment : results[result].map(GAME_BYTES, Long.MAX_VALUE / GAME_BYTES)) {
+      while (segment.hasRemaining()) {
+        final int game = segment.getInt();
+        if (game < count) builder.add(game);
+      }
+    }
+    return builder.build().toArray();
+  }
+
+  /**
+   * Read every purchase of a patch, from its index.
+   * @param patch The patch
+   * @param action Action done on each purchase, in the order of the games
+   * @throws IOException If the store can't be read
+   */
+  public synchronized void forEachPurchase(Patch patch, Consumer<Purchase> action) throws IOException {
+    Objects.requireNonNull(patch);
+    Objects.requireNonNull(action);
+    final Integer id = ids.get(patch);
+    if (id == null) return;
+    flush();
+    for (var segment : purchases(id).map(PURCHASE_BYTES, Long.MAX_VALUE / PURCHASE_BYTES)) {
+      while (segment.hasRemaining()) {
+        final int game = segment.getInt();
+        final int ply = Short.toUnsignedInt(segment.getShort());
+        final int player = segment.get();
+        final int time = Byte.toUnsignedInt(segment.get());
+        if (game < count) action.accept(new Purchase(game, ply, player, time));
+      }
+    }
+  }
+
+  /**
+   * Find the games where a patch was bought before a time.
+   * @param patch The patch
+   * @param time Position on the time board the buying player had not reached yet
+   * @return Numbers of the games, in increasing order
+   * @throws IOException If the store can't be read
+   */
+  public int[] boughtBefore(Patch patch, int time) throws IOException {
+    final var builder = IntStream.builder();
+    final int[] last = { -1 };
+    forEachPurchase(patch, purchase -> {
+      // Purchases are in the order of the games, so duplicates follow each other
+      if (purchase.time() < time && purchase.game() != last[0]) {
+        builder.add(purchase.game());
+        last[0] = purchase.game();
+      }
+    });
+    return builder.build().toArray();
+  }
+
+  /**
+   * Write every game added to the files.
+   * @throws IOException If the store can't be written
+   */
+  public synchronized void flush() throws IOException {
+    // Headers come last, so they only refer to written games
+    moves.flush();
+    for (var file : results) {
+      file.flush();
+    }
+    for (var file : purchases) {
+      if (file != null) file.flush();
+    }
+    headers.flush();
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    try {
+      flush();
+    } finally {
+      headers.close();
+      moves.close();
+      for (var file : results) {
+        file.close();
+      }
+      for (var file : purchases) {
+        if (file != null) file.close();
+      }
+    }
+  }
+
+  /**
+   * Identifier of a patch, adding it to the catalog if needed.
+   * @param patch The patch
+   * @return Index of the patch in the catalog
+   * @throws IOException If the catalog can't be written
+   */
+  private int id(Patch patch) throws IOException {
+    final Integer id = ids.get(patch);
+    if (id != null) return id;
+    if (catalog.size() == MAX_PATCHES) throw new IllegalStateException("Too many distinct patches.");
+    final var text = patch.timeCost() + " " + patch.buttonCost() + " " + patch.buttonIncome() + "\n"
+        + patch.tiles() + "\n";
+    Files.writeString(directory.resolve("patches.patch"), text, StandardCharsets.UTF_8,
+        StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    ids.put(patch, catalog.size());
+    catalog.add(patch);
+    return catalog.size() - 1;
+  }
+
+  /**
+   * Index of the purchases of a patch, opened when first needed.
+   * @param id Identifier of the patch
+   * @return The index
+   * @throws IOException If the index can't be opened
+   */
+  private AppendFile purchases(int id) throws IOException {
+    if (purchases[id] == null) {
+      purchases[id] = new AppendFile(directory.resolve("patch-" + id + ".idx"), PURCHASE_BYTES << 10);
+    }
+    return purchases[id];
+  }
+}
@@ -0,0 +1,238 @@
+package fr.jatchwork.io;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+import fr.jatchwork.model.Move;
+
+/**
+ * Compact binary format of game records, so every game can be archived in a few dozen bytes.
+ * Records are written one after the other, so an archive is simply appended to.
+ * Each record holds :
+ * <ul>
+ * <li>the magic bytes 'J' 'M' and the version of the format, on 3 bytes</li>
+ * <li>the version of the game, as a varint</li>
+ * <li>the seed of the game, on 8 bytes</li>
+ * <li>the number of moves, as a varint</li>
+ * <li>each move : its kind, patch index and transform code on a byte,
+ * followed for placements by the position as two zigzag varints</li>
+ * </ul>
+ * An advance takes a single byte and a placement on a standard quilt board takes 3 bytes.
+ */
+public final class MoveLog {
+  /** Default archive of the games played. */
+  public static final Path ARCHIVE = Path.of("files", "games.jml");
+
+  private static final int MAGIC1 = 'J';
+  private static final int MAGIC2 = 'M';
+  private static final int VERSION = 1;
+  /** Maximum number of moves of a record, far more than any game, to reject corrupted counts. */
+  private static final int MAX_MOVES = 1 << 16;
+
+  /**
+   * Write a record to a stream.
+   * @param out The stream
+   * @param record The record
+   * @throws IOException If the stream can't be written
+   */
+  public static void write(OutputStream out, GameRecord record) throws IOException {
+    Objects.requireNonNull(out);
+    Objects.requireNonNull(record);
+    out.write(MAGIC1);
+    out.write(MAGIC2);
+    out.write(VERSION);
+    writeVarint(out, record.phase());
+    final long seed = record.seed();
+    for (int shift = 56; shift >= 0; shift -= 8) {
+      out.write((int) (seed >>> shift));
+    }
+    writeVarint(out, record.length());
+    for (int i = 0; i < record.length(); i++) {
+      final int move = record.move(i);
+      // Kind, index and code are the 7 lowest bits of the move
+      out.write(move & 0x7F);
+      final int kind = Move.kind(move);
+      if (kind == Move.BUY || kind == Move.LEATHER) {
+        writeVarint(out, zigzag(Move.x(move)));
+        writeVarint(out, zigzag(Move.y(move)));
+      }
+    }
+  }
+
+  /**
+   * Read the next record of a stream.
+   * @param in The stream
+   * @return The record, or null if the stream is at its end
+   * @throws IOException If the stream can't be read or does not hold a valid record
+   */
+  public static GameRecord read(InputStream in) throws IOException {
+    Objects.requireNonNull(in);
+    final int first = in.read();
+    if (first < 0) return null;
+    if (first != MAGIC1 || readByte(in) != MAGIC2) throw new IOException("Not a move log record.");
+    final int version = readByte(in);
+    if (version != VERSION) throw new IOException("Unsupported move log version: " + version);
+    final int phase = readVarint(in);
+    if (phase < 1 || phase > 4) throw new IOException("Invalid game version: " + phase);
+    long seed = 0;
+    for (int i = 0; i < Long.BYTES; i++) {
+      seed = seed << 8 | readByte(in);
+    }
+    final int length = readVarint(in);
+    if (length > MAX_MOVES) throw new IOException("Invalid move count: " + length);
+    final var moves = new int[length];
+    for (int i = 0; i < length; i++) {
+      final int header = readByte(in);
+      if (header > 0x7F) throw new IOException("Invalid move at ply " + i);
+      try {
+        moves[i] = switch (header & 3) {
+        case Move.BUY -> Move.buy(header >>> 2 & 3, header >>> 4, unzigzag(readVarint(in)), unzigzag(readVarint(in)));
+        case Move.LEATHER -> Move.leather(unzigzag(readVarint(in)), unzigzag(readVarint(in)));
+        default -> header & 3;
+        };
+      } catch (IllegalArgumentException e) {
+        throw new IOException("Invalid move at ply " + i + ": " + e.getMessage(), e);
+      }
+    }
+    return new GameRecord(phase, seed, moves);
+  }
+
+  /**
+   * Encode a record in an array.
+   * @param record The record
+   * @return Bytes of the record
+   */
+  public static byte[] encode(GameRecord record) {
+    final var out = new ByteArrayOutputStream(64);
+    try {
+      write(out, record);
+    } catch (IOException e) {
+      // A byte array stream can't fail
+      throw new UncheckedIOException(e);
+    }
+    return out.toByteArray();
+  }
+
+  /**
+   * Decode a record from an array.
+   * @param bytes Bytes of the record
+   * @return The record
+   * @throws IOException If the bytes are not a valid record
+   */
+  public static GameRecord decode(byte[] bytes) throws IOException {
+    Objects.requireNonNull(bytes);
+    final var record = read(new ByteArrayInputStream(bytes));
+    if (record == null) throw new EOFException("Empty move log record.");
+    return record;
+  }
+
+  /**
+   * Add a record at the end of an archive file, creating it if needed.
+   * @param path Path of the archive
+   * @param record The record
+   * @throws IOException If the file can't be written
+   */
+  public static void append(Path path, GameRecord record) throws IOException {
+    Objects.requireNonNull(path);
+    Objects.requireNonNull(record);
+    try (var out = new BufferedOutputStream(Files.newOutputStream(path,
+        StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND))) {
+      write(out, record);
+    }
+  }
+
+  /**
+   * Read every record of an archive file.
+   * @param path Path of the archive
+   * @return The records in the order they were written
+   * @throws IOException If the file can't be read or holds an invalid record
+   */
+  public static List<GameRecord> readAll(Path path) throws IOException {
+    Objects.requireNonNull(path);
+    final var records = new ArrayList<GameRecord>();
+    try (var in = new BufferedInputStream(Files.newInputStream(path))) {
+      for (var record = read(in); record != null; record = read(in)) {
+        records.add(record);
+      }
+    }
+    return records;
+  }
+
+  /**
+   * Read a byte which must exist.
+   * @param in The stream
+   * @return Byte between 0 and 255
+   * @throws IOException If the stream ends
+   */
+  private static int readByte(InputStream in) throws IOException {
+    final int value = in.read();
+    if (value < 0) throw new EOFException("Truncated move log record.");
+    return value;
+  }
+
+  /**
+   * Write a positive int on as few bytes as possible, 7 bits per byte, lowest bits first.
+   * @param out The stream
+   * @param value Value, >= 0
+   * @throws IOException If the stream can't be written
+   */
+  private static void writeVarint(OutputStream out, int value) throws IOException {
+    while ((value & ~0x7F) != 0) {
+      out.write(value & 0x7F | 0x80);
+      value >>>= 7;
+    }
+    out.write(value);
+  }
+
+  /**
+   * Read a positive int written by writeVarint.
+   * @param in The stream
+   * @return The value
+   * @throws IOException If the stream ends or the value does not fit an int
+   */
+  private static int readVarint(InputStream in) throws IOException {
+    int value = 0;
+    for (int shift = 0; shift < 32; shift += 7) {
+      final int b = readByte(in);
+      value |= (b & 0x7F) << shift;
+      if ((b & 0x80) == 0) {
+        if (value < 0) break;
+        return value;
+      }
+    }
+    throw new IOException("Invalid varint in move log record.");
+  }
+
+  /**
+   * Map a signed int to a positive one, small values giving small results.
+   * @param value Signed value
+   * @return 0, 1, 2, 3... for 0, -1, 1, -2...
+   */
+  private static int zigzag(int value) {
+    return value << 1 ^ value >> 31;
+  }
+
+  /**
+   * Reverse of zigzag.
+   * @param value Positive value
+   * @return Signed value
+   */
+  private static int unzigzag(int value) {
+    return value >>> 1 ^ -(value & 1);
+  }
+
+  private MoveLog() { }
+}
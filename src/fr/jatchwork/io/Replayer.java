@@ -0,0 +1,80 @@
+package fr.jatchwork.io;
+
+import java.util.List;
+import java.util.Objects;
+
+import fr.jatchwork.model.Game;
+import fr.jatchwork.model.Patch;
+
+/**
+ * Rebuild the states of a recorded game, by playing and undoing its moves on a single game.
+ * Moves are applied in place without allocation, so seeking any ply costs a few hundred
+ * nanoseconds per move between the current ply and the wanted one.
+ */
+public final class Replayer {
+  private final GameRecord record;
+  private final Game game;
+
+  /**
+   * Prepare the replay of a game of a standard version.
+   * @param record Record of the game
+   */
+  public Replayer(GameRecord record) {
+    this.record = Objects.requireNonNull(record);
+    if (record.phase() == 4) throw new IllegalArgumentException("A custom game needs its list of patches.");
+    this.game = new Game(record.phase(), record.seed());
+  }
+
+  /**
+   * Prepare the replay of a game of the custom version.
+   * @param record Record of the game
+   * @param patches List of patches the game was created with
+   */
+  public Replayer(GameRecord record, List<Patch> patches) {
+    this.record = Objects.requireNonNull(record);
+    this.game = new Game(record.phase(), patches, record.seed());
+  }
+
+  /**
+   * Number of moves of the recorded game.
+   * @return Move count
+   */
+  public int length() { return record.length(); }
+
+  /**
+   * Current ply of the replayed game.
+   * @return Number of moves played, between 0 and length()
+   */
+  public int ply() { return game.undoCount(); }
+
+  /**
+   * Put the game in the state it had after a number of moves.
+   * The game is owned by the replayer and is changed by the next seek, so it must not be played on.
+   * @param ply Number of moves played, between 0 and length()
+   * @return The game after the moves
+   * @throws IllegalArgumentException If a move is illegal, the record not matching its game
+   */
+  public Game seek(int ply) {
+    if (ply < 0 || ply > record.length()) throw new IllegalArgumentException("ply should be between 0 and length().");
+    while (game.undoCount() > ply) {
+      game.undo();
+    }
+    while (game.undoCount() < ply) {
+      final int next = game.undoCount();
+      try {
+        game.play(record.move(next));
+      } catch (IllegalArgumentException | IllegalStateException e) {
+        throw new IllegalArgumentException("The move " + next + " of the record can't be played.", e);
+      }
+    }
+    return game;
+  }
+
+  /**
+   * Put the game in its final state.
+   * @return The game after every move
+   */
+  public Game end() {
+    return seek(record.length());
+  }
+}
@@ -0,0 +1,193 @@
+package fr.jatchwork.io;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+
+import fr.jatchwork.model.Game;
+import fr.jatchwork.model.GameSnapshot;
+
+/**
+ * Save and restore running games through NIO channels, to checkpoint and resume them.
+ * Each snapshot (see {@link GameSnapshot}) is framed by its length, so a channel holds any number
+ * of snapshots one after the other, and a checkpoint of many games is written with a single buffer.
+ */
+public final class Snapshot {
+  /** Size of the buffer tried first for each game, enough for the standard versions. */
+  private static final int INITIAL_SIZE = 1024;
+  /** Maximum size of a snapshot, to reject corrupted lengths. */
+  private static final int MAX_SIZE = 1 << 24;
+
+  /**
+   * Write a game to a channel.
+   * @param channel Destination
+   * @param game The game
+   * @throws IOException If the channel can't be written
+   */
+  public static void save(WritableByteChannel channel, Game game) throws IOException {
+    Objects.requireNonNull(channel);
+    write(channel, encode(List.of(game)));
+  }
+
+  /**
+   * Write games to a channel, with a single write of all of their snapshots.
+   * @param channel Destination
+   * @param games The games
+   * @throws IOException If the channel can't be written
+   */
+  public static void saveAll(WritableByteChannel channel, Collection<Game> games) throws IOException {
+    Objects.requireNonNull(channel);
+    write(channel, encode(games));
+  }
+
+  /**
+   * Read the next game of a channel.
+   * @param channel Source
+   * @return The game, or null if the channel is at its end
+   * @throws IOException If the channel can't be read or does not hold a valid snapshot
+   */
+  public static Game load(ReadableByteChannel channel) throws IOException {
+    Objects.requireNonNull(channel);
+    final var header = ByteBuffer.allocate(Integer.BYTES);
+    if (!fill(channel, header, true)) return null;
+    final int length = header.flip().getInt();
+    if (length <= 0 || length > MAX_SIZE) throw new IOException("Invalid snapshot length: " + length);
+    final var body = ByteBuffer.allocate(length);
+    fill(channel, body, false);
+    return decode(body.flip());
+  }
+
+  /**
+   * Read every game of a channel.
+   * @param channel Source
+   * @return The games in the order they were written
+   * @throws IOException If the channel can't be read or holds an invalid snapshot
+   */
+  public static List<Game> loadAll(ReadableByteChannel channel) throws IOException {
+    Objects.requireNonNull(channel);
+    final var games = new ArrayList<Game>();
+    for (var game = load(channel); game != null; game = load(channel)) {
+      games.add(game);
+    }
+    return games;
+  }
+
+  /**
+   * Write games to a file, replacing it.
+   * @param path Path of the file
+   * @param games The games
+   * @throws IOException If the file can't be written
+   */
+  public static void saveAll(Path path, Collection<Game> games) throws IOException {
+    Objects.requireNonNull(path);
+    try (var channel = FileChannel.open(path, StandardOpenOption.WRITE,
+        StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+      saveAll(channel, games);
+    }
+  }
+
+  /**
+   * Read every game of a file, mapping it in memory.
+   * @param path Path of the file
+   * @return The games in the order they were written
+   * @throws IOException If the file can't be read or holds an invalid snapshot
+   */
+  public static List<Game> loadAll(Path path) throws IOException {
+    Objects.requireNonNull(path);
+    try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      final var buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      final var games = new ArrayList<Game>();
+      while (buffer.hasRemaining()) {
+        if (buffer.remaining() < Integer.BYTES) throw new EOFException("Truncated snapshot.");
+        final int length = buffer.getInt();
+        if (length <= 0 || length > buffer.remaining()) throw new IOException("Invalid snapshot length: " + length);
+        final var body = buffer.slice(buffer.position(), length);
+        buffer.position(buffer.position() + length);
+        games.add(decode(body));
+      }
+      return games;
+    }
+  }
+
+  /**
+   * Write the framed snapshots of games in a buffer, growing it until they fit.
+   * @param games The games
+   * @return Buffer ready to be written
+   */
+  private static ByteBuffer encode(Collection<Game> games) {
+    Objects.requireNonNull(games);
+    int size = INITIAL_SIZE * Math.max(1, games.size());
+    while (true) {
+      final var buffer = ByteBuffer.allocate(size);
+      try {
+        for (var game : games) {
+          final int start = buffer.position();
+          buffer.position(start + Integer.BYTES);
+          GameSnapshot.write(Objects.requireNonNull(game), buffer);
+          buffer.putInt(start, buffer.position() - start - Integer.BYTES);
+        }
+        return buffer.flip();
+      } catch (BufferOverflowException e) {
+        size *= 2;
+      }
+    }
+  }
+
+  /**
+   * Read a game from the body of a snapshot.
+   * @param body Bytes of the snapshot, without its length
+   * @return The game
+   * @throws IOException If the bytes are not a valid snapshot
+   */
+  private static Game decode(ByteBuffer body) throws IOException {
+    try {
+      final var game = GameSnapshot.read(body);
+      if (body.hasRemaining()) throw new IOException("Unexpected bytes after the snapshot.");
+      return game;
+    } catch (IllegalArgumentException e) {
+      throw new IOException(e.getMessage(), e);
+    }
+  }
+
+  /**
+   * Write a whole buffer to a channel.
+   * @param channel Destination
+   * @param buffer Bytes to write
+   * @throws IOException If the channel can't be written
+   */
+  private static void write(WritableByteChannel channel, ByteBuffer buffer) throws IOException {
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+  }
+
+  /**
+   * Fill a buffer from a channel.
+   * @param channel Source
+   * @param buffer Buffer to fill
+   * @param endAllowed Can the channel end before the first byte
+   * @return False if the channel ended before the first byte
+   * @throws IOException If the channel can't be read or ends in the middle of the buffer
+   */
+  private static boolean fill(ReadableByteChannel channel, ByteBuffer buffer, boolean endAllowed) throws IOException {
+    while (buffer.hasRemaining()) {
+      if (channel.read(buffer) < 0) {
+        if (endAllowed && buffer.position() == 0) return false;
+        throw new EOFException("Truncated snapshot.");
+      }
+    }
+    return true;
+  }
+
+  private Snapshot() { }
+}
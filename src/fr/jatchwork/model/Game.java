@@ -1,61 +1,37 @@
 package fr.jatchwork.model;
 
-import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
-import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.stream.Stream;
 
 /**
- * Contains all data of the current game.
+ * Contains all data of a game.
+ * Each game owns its players, time board and patches, so many games can run at the same time.
+ * The order of the patches only depends on the seed of the game, so a game can be replayed
+ * from its seed, and simulators derive the seeds of their games from a single one.
  */
 public final class Game {
   /** Number of player. */
   public static final int PLAYER_COUNT = 2;
   /** Number of patches available to be bought */
   public static final int PATCH_AVAILABLE = 3;
-
-  private static Game instance = null;
-
-  /**
-   * The only instance of the game.
-   * @return The instance
-   */
-  public static Game instance() {
-    return instance;
-  }
-
-  /**
-   * Create the instance if it does not exists.
-   * @param phase The current phase to initialize the game.
-   */
-  public static void initGame(int phase) {
-    if (instance != null) throw new RuntimeException("An instance of Game already exist.");
-    instance = new Game(phase);
-  }
-
-  /**
-   * Create the instance if it does not exists.
-   * @param phase The current phase to initialize the game.
-   * @param patches All the patches of the game.
-   */
-  public static void initGame(int phase, List<Patch> patches) {
-    Objects.requireNonNull(patches);
-    if (instance != null) throw new RuntimeException("An instance of Game already exist.");
-    instance = new Game(phase, patches);
-  }
+  /** Patches of the phase 2 and 3, before shuffling. */
+  private static final List<Patch> PATCHES2 = standardPatches();
 
   /**
    * Generate all patches for phase 1 only. There is 2 type of patch, each with 20
    * duplicates.
+   * @param random Source of randomness shuffling the patches
    * @return The list of generated patches
    */
-  private static ArrayDeque<Patch> generatePatches1() {
+  private static List<Patch> generatePatches1(SplittableRandom random) {
     // Init values
-    var patches = new ArrayDeque<Patch>();
+    var patches = new ArrayList<Patch>(40);
     var patch1 = new Patch(4, 3, 1, """
         ##
         ##
@@ -66,11 +42,10 @@ public final class Game {
         """);
     int remains1 = 20;
     int remains2 = 20;
-    var rand = new Random();
 
-    // Shuffle patches in the deque
+    // Shuffle patches in the list
     while (remains1 > 0 && remains2 > 0) {
-      var value = rand.nextInt(remains1 + remains2);
+      var value = random.nextInt(remains1 + remains2);
       if (value < remains1) {
         patches.add(patch1);
         remains1--;
@@ -84,9 +59,21 @@ public final class Game {
 
   /**
    * Generate all patches for phase 2 and 3.
+   * @param random Source of randomness shuffling the patches
    * @return The list of generated patches.
    */
-  private static ArrayDeque<Patch> generatePatches2() {
+  private static List<Patch> generatePatches2(SplittableRandom random) {
+    // Patches are immutable, so every game shares the parsed ones
+    final var patches = new ArrayList<>(PATCHES2);
+    shuffle(patches, random);
+    return patches;
+  }
+
+  /**
+   * Parse all patches for phase 2 and 3, in a fixed order.
+   * @return The list of patches
+   */
+  private static List<Patch> standardPatches() {
     // Init values
     var patches = new ArrayList<Patch>(33);
 
@@ -232,32 +219,57 @@ public final class Game {
         #...
         """));
     
-    Collections.shuffle(patches);
-    return new ArrayDeque<>(patches);
+    return List.copyOf(patches);
+  }
+
+  /**
+   * Shuffle a list of patches, each order being equally likely.
+   * @param patches The patches
+   * @param random Source of randomness
+   */
+  private static void shuffle(List<Patch> patches, SplittableRandom random) {
+    for (int i = patches.size() - 1; i > 0; i--) {
+      Collections.swap(patches, i, random.nextInt(i + 1));
+    }
   }
 
   private final Player[] players;
   private Player playing;
   private final TimeBoard timeBoard;
-  private ArrayDeque<Patch> patches;
+  private PatchCircle patches;
   private boolean bonusFullGiven = false;
+  private final UndoJournal journal = new UndoJournal();
+  private final int phase;
+  private final long seed;
+
+  /**
+   * Create a new game data, with a random seed.
+   * @param phase Version chosen by the user
+   */
+  public Game(int phase) {
+    this(phase, ThreadLocalRandom.current().nextLong());
+  }
 
   /**
    * Create a new game data.
    * @param phase Version chosen by the user
+   * @param seed Seed of the order of the patches
    */
-  private Game(int phase) {
-    players = new Player[] { new Player(1, QuiltBoard.SIZE, 5), new Player(2, QuiltBoard.SIZE, 5) };
+  public Game(int phase, long seed) {
+    this.phase = phase;
+    this.seed = seed;
+    final var random = new SplittableRandom(seed);
+    players = new Player[] { new Player(this, 1, QuiltBoard.SIZE, 5), new Player(this, 2, QuiltBoard.SIZE, 5) };
     playing = players[0];
     switch (phase) {
     case 1 -> {
-      patches = generatePatches1();
+      patches = new PatchCircle(generatePatches1(random));
       timeBoard = new TimeBoard(54,
           new int[] { 5, 11, 17, 23, 29, 35, 41, 47, 53 },
           new int[] { });
     }
     case 2, 3 -> {
-      patches = generatePatches2();
+      patches = new PatchCircle(generatePatches2(random));
       timeBoard = new TimeBoard(54,
           new int[] { 5, 11, 17, 23, 29, 35, 41, 47, 53 },
           new int[] { 20, 26, 32, 44, 50 });
@@ -271,15 +283,52 @@ public final class Game {
     }
   }
   
+  /**
+   * Create a new game data, with a random seed.
+   * @param phase Version chosen by the user
+   * @param patches Custom list of patches, left unchanged
+   */
+  public Game(int phase, List<Patch> patches) {
+    this(phase, patches, ThreadLocalRandom.current().nextLong());
+  }
+
   /**
    * Create a new game data.
    * @param phase Version chosen by the user
-   * @param patches Custom list of patches
+   * @param patches Custom list of patches, left unchanged
+   * @param seed Seed of the order of the patches
+   */
+  public Game(int phase, List<Patch> patches, long seed) {
+    this(phase, seed);
+    final var shuffled = new ArrayList<>(Objects.requireNonNull(patches));
+    shuffle(shuffled, new SplittableRandom(seed));
+    this.patches = new PatchCircle(shuffled);
+  }
+
+  /**
+   * Seed of the game, creating the same order of patches with the same version and patches.
+   * @return The seed
+   */
+  public long seed() { return seed; }
+
+  /**
+   * Version of the game, from 1 to 4.
+   * @return The version chosen by the user
    */
-  private Game(int phase, List<Patch> patches) {
-    this(phase);
-    Collections.shuffle(patches);
-    this.patches = new ArrayDeque<Patch>(Objects.requireNonNull(patches));
+  public int phase() { return phase; }
+
+  /**
+   * Restore the shared data of a game saved by a snapshot.
+   * The undo journal of the game must be empty.
+   * @param circle Remaining patches
+   * @param playing Index of the player who must play
+   * @param bonusFullGiven Is the bonus for completing a quilt board taken
+   */
+  void restore(PatchCircle circle, int playing, boolean bonusFullGiven) {
+    if (journal.size() != 0) throw new IllegalStateException("Moves were already played.");
+    patches = Objects.requireNonNull(circle);
+    this.playing = players[Objects.checkIndex(playing, PLAYER_COUNT)];
+    this.bonusFullGiven = bonusFullGiven;
   }
 
   /**
@@ -339,7 +388,15 @@ public final class Game {
    * @return Unmodifiable collection of patches
    */
   public Collection<Patch> patches() {
-    return Collections.unmodifiableCollection(patches);
+    return patches.toList();
+  }
+
+  /**
+   * The circle of patches, starting from the neutral pawn.
+   * @return The circle
+   */
+  public PatchCircle circle() {
+    return patches;
   }
 
   /**
@@ -352,13 +409,8 @@ public final class Game {
       throw new IllegalArgumentException("You must choose a patch numero < Game.PATCH_AVAILABLE");
     }
 
-    // Simulate the patch pawn deplacement
-    for (int i = 0; i < index; i++) {
-      patches.addLast(patches.removeFirst());
-    }
-
-    // Get the choosen patch
-    return patches.removeFirst();
+    // Move the neutral pawn and get the choosen patch
+    return patches.remove(index);
   }
 
   /**
@@ -367,12 +419,8 @@ public final class Game {
    * @return Patch at given index
    */
   public Patch getPatch(int index) {
-    int i = 0;
-    for (var patch : patches) {
-      if (i++ == index)
-        return patch;
-    }
-    throw new ArrayIndexOutOfBoundsException(index);
+    if (index < 0 || index >= patches.size()) throw new ArrayIndexOutOfBoundsException(index);
+    return patches.get(index);
   }
   
   /**
@@ -395,18 +443,153 @@ public final class Game {
     return false;
   }
 
+  /**
+   * State of the bonus for completing a quilt board.
+   * @return True if a player already took it
+   */
+  public boolean bonusFullGiven() {
+    return bonusFullGiven;
+  }
+
+  /**
+   * Play a move for the player which is the turn. The move can be undone with undo().
+   * The time board is saved in the journal only if the move takes leather patches.
+   * @param move Encoded move (see {@link Move})
+   * @throws IllegalArgumentException If the move is not legal
+   */
+  public void play(int move) {
+    if (finished()) throw new IllegalStateException("The game is finished.");
+    final Player player = playing();
+    final int kind = Move.kind(move);
+    if (player.leatherCount() > 0 ? kind < Move.LEATHER : kind >= Move.LEATHER)
+      throw new IllegalArgumentException("Illegal move: " + Move.toString(move));
+    final int index = player == players[0] ? 0 : 1;
+
+    switch (kind) {
+    case Move.ADVANCE -> {
+      journal.push(move, index, player, bonusFullGiven);
+      final int leathers = player.leatherCount();
+      journal.saveLeathers(timeBoard);
+      player.endTurn();
+      if (player.leatherCount() == leathers) journal.dropLeathers();
+    }
+    case Move.BUY -> {
+      final int numPatch = Move.index(move);
+      if (numPatch >= patches.size()) throw new IllegalArgumentException("There is not enough patch to buy: " + numPatch);
+      final Patch patch = patches.get(numPatch);
+      if (!player.canBuyPatch(patch)) throw new IllegalArgumentException("The patch is too expensive.");
+      final Placements placements = placements(player, patch, Move.code(move));
+      final int anchor = anchor(player, placements, move);
+      journal.push(move, index, player, bonusFullGiven);
+      journal.placement(placements, anchor, patches.slot(numPatch));
+      patches.remove(numPatch);
+      final int leathers = player.leatherCount();
+      journal.saveLeathers(timeBoard);
+      player.buyPatch(placements, anchor);
+      if (player.leatherCount() == leathers) journal.dropLeathers();
+    }
+    case Move.LEATHER -> {
+      final Placements placements = placements(player, Patch.LEATHER, 0);
+      final int anchor = anchor(player, placements, move);
+      journal.push(move, index, player, bonusFullGiven);
+      journal.placement(placements, anchor, -1);
+      player.buyPatch(placements, anchor);
+      player.removeLeather();
+    }
+    default -> {
+      if (player.canPlacePatch(Patch.LEATHER)) throw new IllegalArgumentException("A leather patch can still be placed.");
+      journal.push(move, index, player, bonusFullGiven);
+      player.removeLeather();
+    }
+    }
+  }
+
+  /**
+   * Undo the last move played with play(). Does not allocate.
+   */
+  public void undo() {
+    if (journal.size() == 0) throw new IllegalStateException("There is no move to undo.");
+    final Player player = players[journal.player()];
+    final Placements placements = journal.placements();
+    if (placements != null) player.board().removeLast(placements, journal.anchor());
+    if (journal.slot() >= 0) patches.restore(Move.index(journal.move()), journal.slot());
+    journal.restoreLeathers(timeBoard);
+    player.restore(journal.buttonCount(), journal.position(), journal.leatherCount(), journal.hasBonus());
+    bonusFullGiven = journal.bonusFullGiven();
+    playing = player;
+    journal.pop();
+  }
+
+  /**
+   * Number of moves played with play() which can be undone.
+   * @return Number of moves
+   */
+  public int undoCount() {
+    return journal.size();
+  }
+
+  /**
+   * Get a move played with play(), so the game can be recorded.
+   * @param ply Index of the move, 0 being the first move, lower than undoCount()
+   * @return Encoded move
+   */
+  public int playedMove(int ply) {
+    return journal.move(ply);
+  }
+
+  /**
+   * Placements of an orientation of a patch on the quilt board of a player.
+   * @param player The player
+   * @param patch The patch
+   * @param code Transform code of the patch
+   * @return Placements
+   */
+  private static Placements placements(Player player, Patch patch, int code) {
+    final Orientations orientations = patch.orientations();
+    return orientations.placements(orientations.index(code), player.board().size());
+  }
+
+  /**
+   * Anchor of a move, checking that the patch fits in the quilt board.
+   * @param player The player placing the patch
+   * @param placements Placements of the patch
+   * @param move Encoded move
+   * @return Index of the anchor
+   */
+  private static int anchor(Player player, Placements placements, int move) {
+    final int anchor = placements.indexOf(Move.x(move), Move.y(move));
+    if (!player.board().fit(placements, anchor))
+      throw new IllegalArgumentException("The patch did not fit in the quilt board.");
+    return anchor;
+  }
+
+  /**
+   * Zobrist hash of the state of the game : quilt boards and data of the players,
+   * leather patches of the time board, remaining patches, neutral pawn and player who must play.
+   * Every part is updated incrementally on each move, so this is computed in constant time.
+   * The hash is the same as the one of a {@link GameState} taken from this game.
+   * @return Hash of the game
+   */
+  public long hash() {
+    long hash = timeBoard.hash() ^ patches.hash();
+    for (int i = 0; i < players.length; i++) {
+      final Player player = players[i];
+      hash ^= Zobrist.player(i, player.buttonCount(), player.position(), player.leatherCount(),
+          player.hasBonus(), player.board().hash());
+    }
+    return hash ^ Zobrist.shared(bonusFullGiven, finished() ? -1 : playing() == players[0] ? 0 : 1);
+  }
+
   /**
    * Better string format for all patches than the default Collection.toString().
    * @return Generated string
    */
   public String patchesToString() {
     var builder = new StringBuilder();
-    int i = 0;
-    for (var patch : patches) {
+    for (int i = 0; i < patches.size(); i++) {
       if (i == PATCH_AVAILABLE) builder.insert(0, "(inaccessible)\n\n");
-      builder.insert(0, '\n').insert(0, patch);
+      builder.insert(0, '\n').insert(0, patches.get(i));
       builder.insert(0, '\n').insert(0, i).insert(0, "n°");
-      i++;
     }
     return builder.substring(0, builder.length()-2);
   }
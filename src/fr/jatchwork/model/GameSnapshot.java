@@ -0,0 +1,214 @@
+package fr.jatchwork.model;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Binary snapshot of the whole state of a game, written to and read from buffers without
+ * Java serialization.
+ * Patches are written once in a table, then the circle and the quilt boards refer to them by index.
+ * Quilt boards are saved as their list of placed patches, and rebuilt by placing them again.
+ * The undo journal is not saved, so a restored game can't undo the moves played before its snapshot.
+ * <p>
+ * Layout, in big-endian : magic number (int), version (byte), game version (byte), seed (long),
+ * patch table, circle, leather patches of the time board, playing player and bonus, then both players.
+ */
+public final class GameSnapshot {
+  private static final int MAGIC = 0x4A505353;
+  private static final int VERSION = 1;
+
+  /**
+   * Write the state of a game.
+   * @param game The game
+   * @param buffer Destination, its position being moved after the snapshot
+   * @throws java.nio.BufferOverflowException If the buffer is too small
+   */
+  public static void write(Game game, ByteBuffer buffer) {
+    Objects.requireNonNull(game);
+    Objects.requireNonNull(buffer);
+    buffer.putInt(MAGIC).put((byte) VERSION).put((byte) game.phase()).putLong(game.seed());
+
+    // Table of the distinct patches of the circle and of the quilt boards
+    final var indexes = new HashMap<Patch, Integer>();
+    final var table = new ArrayList<Patch>();
+    final PatchCircle circle = game.circle();
+    for (int slot = 0; slot < circle.initialSize(); slot++) {
+      index(circle.patchAt(slot), indexes, table);
+    }
+    for (int i = 0; i < Game.PLAYER_COUNT; i++) {
+      for (var coord : game.player(i).board().patches()) {
+        index(coord.patch(), indexes, table);
+      }
+    }
+    buffer.putShort((short) table.size());
+    for (var patch : table) {
+      writePatch(patch, buffer);
+    }
+
+    buffer.putShort((short) circle.initialSize());
+    for (int slot = 0; slot < circle.initialSize(); slot++) {
+      buffer.putShort(indexes.get(circle.patchAt(slot)).shortValue());
+    }
+    buffer.putShort((short) circle.size());
+    for (int index = 0; index < circle.size(); index++) {
+      buffer.putShort((short) circle.slot(index));
+    }
+
+    final TimeBoard timeBoard = game.timeBoard();
+    final var leathers = new long[timeBoard.leatherWords()];
+    timeBoard.saveLeathers(leathers, 0);
+    buffer.put((byte) leathers.length);
+    for (long word : leathers) {
+      buffer.putLong(word);
+    }
+
+    buffer.put((byte) (game.playing() == game.player(0) ? 0 : 1));
+    buffer.put((byte) (game.bonusFullGiven() ? 1 : 0));
+    for (int i = 0; i < Game.PLAYER_COUNT; i++) {
+      final Player player = game.player(i);
+      buffer.putShort((short) player.buttonCount());
+      buffer.putShort((short) player.position());
+      buffer.putShort((short) player.leatherCount());
+      buffer.put((byte) (player.hasBonus() ? 1 : 0));
+      final var coords = player.board().patches();
+      buffer.putShort((short) coords.size());
+      for (var coord : coords) {
+        buffer.putShort(indexes.get(coord.patch()).shortValue());
+        buffer.put((byte) coord.pos().x());
+        buffer.put((byte) coord.pos().y());
+      }
+    }
+  }
+
+  /**
+   * Read the state of a game.
+   * @param buffer Source, its position being moved after the snapshot
+   * @return New game in the saved state, without any move to undo
+   * @throws IllegalArgumentException If the buffer does not hold a valid snapshot
+   */
+  public static Game read(ByteBuffer buffer) {
+    Objects.requireNonNull(buffer);
+    try {
+      if (buffer.getInt() != MAGIC) throw new IllegalArgumentException("Not a game snapshot.");
+      final int version = buffer.get();
+      if (version != VERSION) throw new IllegalArgumentException("Unsupported snapshot version: " + version);
+      final int phase = buffer.get();
+      final long seed = buffer.getLong();
+      final var game = new Game(phase, seed);
+
+      final var table = new Patch[count(buffer)];
+      for (int i = 0; i < table.length; i++) {
+        table[i] = readPatch(buffer);
+      }
+
+      final var order = new ArrayList<Patch>();
+      for (int slot = count(buffer); slot > 0; slot--) {
+        order.add(table[Objects.checkIndex(buffer.getShort(), table.length)]);
+      }
+      final var slots = new int[count(buffer)];
+      for (int index = 0; index < slots.length; index++) {
+        slots[index] = buffer.getShort();
+      }
+      final var circle = new PatchCircle(order, slots);
+
+      final var leathers = new long[buffer.get()];
+      if (leathers.length != game.timeBoard().leatherWords()) {
+        throw new IllegalArgumentException("The time board does not match the game version.");
+      }
+      for (int i = 0; i < leathers.length; i++) {
+        leathers[i] = buffer.getLong();
+      }
+      game.timeBoard().restoreLeathers(leathers, 0);
+
+      final int playing = buffer.get();
+      final boolean bonusFullGiven = buffer.get() != 0;
+      game.restore(circle, playing, bonusFullGiven);
+      for (int i = 0; i < Game.PLAYER_COUNT; i++) {
+        final Player player = game.player(i);
+        final int buttons = buffer.getShort();
+        final int position = buffer.getShort();
+        final int leatherCount = buffer.getShort();
+        final boolean bonus = buffer.get() != 0;
+        for (int coord = count(buffer); coord > 0; coord--) {
+          final Patch patch = table[Objects.checkIndex(buffer.getShort(), table.length)];
+          final int x = buffer.get();
+          final int y = buffer.get();
+          if (!player.board().fit(patch, x, y)) throw new IllegalArgumentException("Overlapping patches.");
+          player.board().add(patch, x, y);
+        }
+        if (position < 0 || position >= game.timeBoard().size()) throw new IllegalArgumentException("Invalid position: " + position);
+        player.restore(buttons, position, leatherCount, bonus);
+      }
+      return game;
+    } catch (BufferUnderflowException e) {
+      throw new IllegalArgumentException("Truncated game snapshot.", e);
+    } catch (IndexOutOfBoundsException e) {
+      throw new IllegalArgumentException("Corrupted game snapshot.", e);
+    }
+  }
+
+  /**
+   * Add a patch to the table if it is not in it yet.
+   * @param patch The patch
+   * @param indexes Index of each patch of the table
+   * @param table Distinct patches
+   */
+  private static void index(Patch patch, HashMap<Patch, Integer> indexes, List<Patch> table) {
+    if (indexes.putIfAbsent(patch, table.size()) == null) table.add(patch);
+  }
+
+  /**
+   * Write a patch : its costs and income, its size, then the bits of each line.
+   * @param patch The patch
+   * @param buffer Destination
+   */
+  private static void writePatch(Patch patch, ByteBuffer buffer) {
+    final PatchShape shape = patch.tiles();
+    buffer.put((byte) patch.timeCost()).put((byte) patch.buttonCost()).put((byte) patch.buttonIncome());
+    buffer.put((byte) shape.width()).put((byte) shape.height());
+    final int bytes = (shape.width() + 7) >>> 3;
+    for (int y = 0; y < shape.height(); y++) {
+      final long row = shape.row(y);
+      for (int i = 0; i < bytes; i++) {
+        buffer.put((byte) (row >>> (i << 3)));
+      }
+    }
+  }
+
+  /**
+   * Read a patch written by writePatch.
+   * @param buffer Source
+   * @return The patch
+   */
+  private static Patch readPatch(ByteBuffer buffer) {
+    final int timeCost = Byte.toUnsignedInt(buffer.get());
+    final int buttonCost = Byte.toUnsignedInt(buffer.get());
+    final int buttonIncome = Byte.toUnsignedInt(buffer.get());
+    final int width = Byte.toUnsignedInt(buffer.get());
+    final var rows = new long[Byte.toUnsignedInt(buffer.get())];
+    final int bytes = (width + 7) >>> 3;
+    for (int y = 0; y < rows.length; y++) {
+      for (int i = 0; i < bytes; i++) {
+        rows[y] |= Byte.toUnsignedLong(buffer.get()) << (i << 3);
+      }
+    }
+    return new Patch(timeCost, buttonCost, buttonIncome, PatchShape.ofRows(width, rows));
+  }
+
+  /**
+   * Read a count, which must be positive.
+   * @param buffer Source
+   * @return The count
+   */
+  private static int count(ByteBuffer buffer) {
+    final int count = buffer.getShort();
+    if (count < 0) throw new IllegalArgumentException("Invalid count: " + count);
+    return count;
+  }
+
+  private GameSnapshot() { }
+}
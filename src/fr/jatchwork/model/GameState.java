@@ -0,0 +1,497 @@
+package fr.jatchwork.model;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Immutable state of a game, used to explore moves without modifying a game.
+ * Applying a move returns a new state sharing every part the move did not change :
+ * the board of the other player, the time board when no leather patch was taken,
+ * and the order of the patches around the circle.
+ * States can be shared between threads.
+ */
+public final class GameState {
+  /**
+   * Data of a single player. The board is never modified once in a state.
+   * @param buttons Number of buttons
+   * @param position Position on the time board
+   * @param leathers Number of leather patches to place
+   * @param bonus Does the player have the 7x7 bonus
+   * @param board Quilt board of the player
+   */
+  private record Seat(int buttons, int position, int leathers, boolean bonus, QuiltBoard board) { }
+
+  /**
+   * Take a snapshot of a game.
+   * @param game Game to copy
+   * @return State of the game
+   */
+  public static GameState of(Game game) {
+    Objects.requireNonNull(game);
+    final var seats = new Seat[Game.PLAYER_COUNT];
+    int playing = 0;
+    for (int i = 0; i < seats.length; i++) {
+      final Player player = game.player(i);
+      seats[i] = new Seat(player.buttonCount(), player.position(), player.leatherCount(),
+          player.hasBonus(), player.board().copy());
+      if (game.playing() == player) playing = i;
+    }
+
+    // Remaining patches, as the set of their slots in the initial order
+    final PatchCircle circle = game.circle();
+    final var order = new Patch[circle.initialSize()];
+    for (int slot = 0; slot < order.length; slot++) {
+      order[slot] = circle.patchAt(slot);
+    }
+    final var present = new long[(order.length + 63) >>> 6];
+    for (int i = 0; i < circle.size(); i++) {
+      final int slot = circle.slot(i);
+      present[slot >>> 6] |= 1L << slot;
+    }
+    final int pawn = circle.size() > 0 ? circle.slot(0) : 0;
+    final long circleHash = circle.size() > 0 ? circle.hash() ^ Zobrist.key(Zobrist.PAWN, 0, pawn) : circle.hash();
+
+    return new GameState(seats, game.timeBoard().copy(), order, present, circle.size(), pawn,
+        circleHash, game.bonusFullGiven(), playing);
+  }
+
+  private final Seat[] seats;
+  private final TimeBoard timeBoard;
+  /** Patches in their initial circle order, shared by every state of a game. */
+  private final Patch[] order;
+  /** One bit per slot of the circle still containing its patch. */
+  private final long[] present;
+  private final int patchCount;
+  /** Slot from which the neutral pawn looks for the next patch. */
+  private final int pawn;
+  /** Xor of the Zobrist keys of the remaining slots. */
+  private final long circleHash;
+  private final boolean bonusGiven;
+  private final int playing;
+
+  private GameState(Seat[] seats, TimeBoard timeBoard, Patch[] order, long[] present, int patchCount,
+      int pawn, long circleHash, boolean bonusGiven, int playing) {
+    this.seats = seats;
+    this.timeBoard = timeBoard;
+    this.order = order;
+    this.present = present;
+    this.patchCount = patchCount;
+    this.pawn = pawn;
+    this.circleHash = circleHash;
+    this.bonusGiven = bonusGiven;
+    this.playing = playing;
+  }
+
+  /**
+   * Index of the player who must play.
+   * @return Index of the player
+   */
+  public int playing() { return playing; }
+
+  /**
+   * State of the game.
+   * @return True if both players can't play, false otherwise.
+   */
+  public boolean finished() {
+    for (Seat seat : seats) {
+      if (seat.position < timeBoard.size() - 1 || seat.leathers > 0) return false;
+    }
+    return true;
+  }
+
+  /**
+   * Number of buttons of a player.
+   * @param i Index of the player
+   * @return Button count
+   */
+  public int buttonCount(int i) { return seats[i].buttons; }
+
+  /**
+   * Position of a player on the time board.
+   * @param i Index of the player
+   * @return Position
+   */
+  public int position(int i) { return seats[i].position; }
+
+  /**
+   * Number of leather patches a player must place.
+   * @param i Index of the player
+   * @return Leather count
+   */
+  public int leatherCount(int i) { return seats[i].leathers; }
+
+  /**
+   * Does a player have the 7x7 bonus.
+   * @param i Index of the player
+   * @return True or false
+   */
+  public boolean hasBonus(int i) { return seats[i].bonus; }
+
+  /**
+   * Number of buttons a player earns on each button income.
+   * @param i Index of the player
+   * @return Button income
+   */
+  public int buttonIncome(int i) { return seats[i].board.buttonIncome(); }
+
+  /**
+   * Number of empty squares on the quilt board of a player.
+   * @param i Index of the player
+   * @return Remaining space
+   */
+  public int remainingSpace(int i) { return seats[i].board.remainingSpace(); }
+
+  /**
+   * The current score of a player.
+   * @param i Index of the player
+   * @return The player's score
+   */
+  public int score(int i) {
+    final Seat seat = seats[i];
+    return seat.buttons - seat.board.remainingSpace() * 2 + (seat.bonus ? 7 : 0);
+  }
+
+  /**
+   * A copy of the quilt board of a player.
+   * @param i Index of the player
+   * @return New quilt board
+   */
+  public QuiltBoard board(int i) { return seats[i].board.copy(); }
+
+  /**
+   * The quilt board of a player, shared with other states. It must not be modified.
+   * @param i Index of the player
+   * @return Quilt board of the state
+   */
+  QuiltBoard sharedBoard(int i) { return seats[i].board; }
+
+  /**
+   * Check that a patch can be inserted in the quilt board of a player.
+   * @param i Index of the player
+   * @param placements Placements of the patch
+   * @param anchor Index of the anchor
+   * @return True if insertion is possible
+   */
+  public boolean fit(int i, Placements placements, int anchor) {
+    return seats[i].board.fit(placements, anchor);
+  }
+
+  /**
+   * Count the sides of a patch touching the border or another patch on the board of a player.
+   * @param i Index of the player
+   * @param placements Placements of the patch
+   * @param anchor Index of an anchor where the patch fits
+   * @return Number of sides in contact
+   */
+  public int contact(int i, Placements placements, int anchor) {
+    return seats[i].board.contact(placements, anchor);
+  }
+
+  /**
+   * Find the best placements of a patch on the quilt board of a player.
+   * @param i Index of the player
+   * @param patch The patch, in any orientation
+   * @param count Maximum number of placements
+   * @return The best placements, from the best one, empty if the patch does not fit
+   */
+  public List<PlacementEngine.Placement> bestPlacements(int i, Patch patch, int count) {
+    return PlacementEngine.best(seats[i].board, patch, count);
+  }
+
+  /**
+   * Find the best placement of a patch completing a bonus square on the quilt board of a player.
+   * @param i Index of the player
+   * @param patch The patch, in any orientation
+   * @return The placement, or null if there is none or if the board already has a bonus square
+   */
+  public PlacementEngine.Placement bonusPlacement(int i, Patch patch) {
+    return PlacementEngine.bestCompletingBonus(seats[i].board, patch);
+  }
+
+  /**
+   * Width and height of the quilt boards.
+   * @return Size of the boards
+   */
+  public int boardSize() { return seats[0].board.size(); }
+
+  /**
+   * Number of button incomes a player will still cross before the end of the time board.
+   * @param i Index of the player
+   * @return Remaining button incomes
+   */
+  public int incomesLeft(int i) {
+    return timeBoard.containsIncome(seats[i].position, timeBoard.size() - 1);
+  }
+
+  /**
+   * Number of leather patches a player would take by moving on the time board.
+   * @param i Index of the player
+   * @param squares Number of squares to move
+   * @return Leather patches crossed
+   */
+  public int leathersAhead(int i, int squares) {
+    return timeBoard.containsLeathers(seats[i].position, seats[i].position + squares);
+  }
+
+  /**
+   * Size of the time board.
+   * @return Number of squares
+   */
+  public int timeBoardSize() { return timeBoard.size(); }
+
+  /**
+   * Get a copy of the time board.
+   * @return New time board
+   */
+  public TimeBoard timeBoard() { return timeBoard.copy(); }
+
+  /**
+   * Is the bonus for completing a quilt board already taken.
+   * @return True if a player took it
+   */
+  public boolean bonusFullGiven() { return bonusGiven; }
+
+  /**
+   * The number of remaining patch to bought in the game.
+   * @return Number of remaining patch
+   */
+  public int patchCount() { return patchCount; }
+
+  /**
+   * Get the patch at index from the neutral pawn.
+   * @param index Index of the patch
+   * @return Patch at given index
+   */
+  public Patch getPatch(int index) {
+    Objects.checkIndex(index, patchCount);
+    return order[slot(index)];
+  }
+
+  /**
+   * Zobrist hash of the state, equal to the hash of a game in the same state.
+   * @return Hash of the state
+   */
+  public long hash() {
+    long hash = timeBoard.hash() ^ circleHash;
+    if (patchCount > 0) hash ^= Zobrist.key(Zobrist.PAWN, 0, slot(0));
+    for (int i = 0; i < seats.length; i++) {
+      final Seat seat = seats[i];
+      hash ^= Zobrist.player(i, seat.buttons, seat.position, seat.leathers, seat.bonus, seat.board.hash());
+    }
+    return hash ^ Zobrist.shared(bonusGiven, finished() ? -1 : playing);
+  }
+
+  /**
+   * Hash of the state seen by an opening book : every data of the players and of the time board,
+   * but only the first patches of the circle. The patches are identified by their content,
+   * so the hash is the same in every run of the program and for every order of the other patches.
+   * @param window Number of patches from the neutral pawn included in the hash
+   * @return Opening hash of the state
+   */
+  public long openingHash(int window) {
+    if (window < 0) throw new IllegalArgumentException("window should be >= 0.");
+    long hash = timeBoard.hash();
+    for (int k = 0; k < Math.min(window, patchCount); k++) {
+      hash ^= Zobrist.window(k, getPatch(k));
+    }
+    for (int i = 0; i < seats.length; i++) {
+      final Seat seat = seats[i];
+      hash ^= Zobrist.player(i, seat.buttons, seat.position, seat.leathers, seat.bonus, seat.board.hash());
+    }
+    return hash ^ Zobrist.shared(bonusGiven, finished() ? -1 : playing);
+  }
+
+  /**
+   * Apply a move of the player who must play.
+   * @param move Encoded move (see {@link Move})
+   * @return The state after the move
+   * @throws IllegalArgumentException If the move is not legal
+   */
+  public GameState apply(int move) {
+    if (finished()) throw new IllegalStateException("The game is finished.");
+    final Seat seat = seats[playing];
+    if (seat.leathers > 0 ? Move.kind(move) < Move.LEATHER : Move.kind(move) >= Move.LEATHER)
+      throw new IllegalArgumentException("Illegal move: " + Move.toString(move));
+    return switch (Move.kind(move)) {
+    case Move.ADVANCE -> advance(seat);
+    case Move.BUY -> buy(seat, move);
+    case Move.LEATHER -> placeLeather(seat, move);
+    default -> discardLeather(seat);
+    };
+  }
+
+  /**
+   * Move in front of the opponent and earn one button per square.
+   * @param seat Moving player
+   * @return New state
+   */
+  private GameState advance(Seat seat) {
+    final int opponent = seats[1 - playing].position;
+    if (opponent < seat.position) return this;
+    final int wanted = opponent - seat.position + 1;
+    final int moved = Math.min(wanted, timeBoard.size() - 1 - seat.position);
+    return move(seat.buttons + moved, seat.bonus, seat.board, wanted, bonusGiven,
+        order, present, patchCount, pawn, circleHash);
+  }
+
+  /**
+   * Buy a patch and place it.
+   * @param seat Buying player
+   * @param move Encoded move
+   * @return New state
+   */
+  private GameState buy(Seat seat, int move) {
+    final int index = Move.index(move);
+    if (index >= patchCount) throw new IllegalArgumentException("There is not enough patch to buy: " + index);
+    final int slot = slot(index);
+    final Patch patch = order[slot];
+    if (patch.buttonCost() > seat.buttons) throw new IllegalArgumentException("The patch is too expensive.");
+
+    final var board = place(seat.board, patch.orientations(), Move.code(move), Move.x(move), Move.y(move));
+    final boolean bonus = !seat.bonus && !bonusGiven && board.fillBonus();
+
+    // Remove the patch from the circle, the pawn goes after it
+    final var left = present.clone();
+    left[slot >>> 6] &= ~(1L << slot);
+    final int nextPawn = slot + 1 == order.length ? 0 : slot + 1;
+
+    return move(seat.buttons - patch.buttonCost(), seat.bonus || bonus, board, patch.timeCost(),
+        bonusGiven || bonus, order, left, patchCount - 1, nextPawn, circleHash ^ PatchCircle.key(order, slot));
+  }
+
+  /**
+   * Place a leather patch.
+   * @param seat Player placing the patch
+   * @param move Encoded move
+   * @return New state
+   */
+  private GameState placeLeather(Seat seat, int move) {
+    if (Move.kind(move) != Move.LEATHER) throw new IllegalArgumentException("Illegal move: " + Move.toString(move));
+    final var board = place(seat.board, Patch.LEATHER.orientations(), 0, Move.x(move), Move.y(move));
+    final boolean bonus = !seat.bonus && !bonusGiven && board.fillBonus();
+    final var seats = this.seats.clone();
+    seats[playing] = new Seat(seat.buttons, seat.position, seat.leathers - 1, seat.bonus || bonus, board);
+    return new GameState(seats, timeBoard, order, present, patchCount, pawn, circleHash,
+        bonusGiven || bonus, next(seats));
+  }
+
+  /**
+   * Throw away a leather patch, only allowed if it can't be placed anywhere.
+   * @param seat Player throwing the patch
+   * @return New state
+   */
+  private GameState discardLeather(Seat seat) {
+    if (seat.board.findSpace(Patch.LEATHER) != null)
+      throw new IllegalArgumentException("A leather patch can still be placed.");
+    final var seats = this.seats.clone();
+    seats[playing] = new Seat(seat.buttons, seat.position, seat.leathers - 1, seat.bonus, seat.board);
+    return new GameState(seats, timeBoard, order, present, patchCount, pawn, circleHash,
+        bonusGiven, next(seats));
+  }
+
+  /**
+   * Place a patch on a copy of a quilt board.
+   * @param board Current quilt board
+   * @param orientations Orientations of the patch
+   * @param code Transform code of the patch
+   * @param x Horizontal position
+   * @param y Vertical position
+   * @return The new quilt board
+   */
+  private static QuiltBoard place(QuiltBoard board, Orientations orientations, int code, int x, int y) {
+    final Placements placements = orientations.placements(orientations.index(code), board.size());
+    final int anchor = placements.indexOf(x, y);
+    if (!board.fit(placements, anchor)) throw new IllegalArgumentException("The patch did not fit in the quilt board.");
+    final var result = board.copy();
+    result.add(placements, anchor);
+    return result;
+  }
+
+  /**
+   * Move the player who plays on the time board, and build the new state.
+   * @param buttons Buttons of the player before the button incomes
+   * @param bonus Bonus of the player
+   * @param board Quilt board of the player
+   * @param tileCount Number of squares to move
+   * @param bonusGiven Is the bonus taken
+   * @param order Circle of patches
+   * @param present Remaining patches
+   * @param patchCount Number of remaining patches
+   * @param pawn Position of the neutral pawn
+   * @param circleHash Hash of the remaining patches
+   * @return New state
+   */
+  private GameState move(int buttons, boolean bonus, QuiltBoard board, int tileCount, boolean bonusGiven,
+      Patch[] order, long[] present, int patchCount, int pawn, long circleHash) {
+    final Seat seat = seats[playing];
+    final int start = seat.position;
+    final int end = start + tileCount;
+    buttons += timeBoard.containsIncome(start, end) * board.buttonIncome();
+
+    // The time board is copied only if leather patches are taken
+    TimeBoard newTimeBoard = timeBoard;
+    int leathers = timeBoard.containsLeathers(start, end);
+    if (leathers > 0) {
+      newTimeBoard = timeBoard.copy();
+      newTimeBoard.getLeathers(start, end);
+    }
+
+    final var seats = this.seats.clone();
+    seats[playing] = new Seat(buttons, Math.min(end, timeBoard.size() - 1), seat.leathers + leathers, bonus, board);
+    return new GameState(seats, newTimeBoard, order, present, patchCount, pawn, circleHash,
+        bonusGiven, next(seats));
+  }
+
+  /**
+   * Player who must play after a move of the current player.
+   * @param seats Players after the move
+   * @return Index of the next player
+   */
+  private int next(Seat[] seats) {
+    if (seats[playing].leathers > 0) return playing;
+    return seats[1 - playing].position < seats[playing].position ? 1 - playing : playing;
+  }
+
+  /**
+   * Slot of the patch at index from the neutral pawn.
+   * @param index Index of the patch, lower than patchCount
+   * @return Slot in the initial order
+   */
+  private int slot(int index) {
+    int slot = nextPresent(pawn);
+    for (int i = 0; i < index; i++) {
+      slot = nextPresent(slot + 1);
+    }
+    return slot;
+  }
+
+  /**
+   * First remaining slot at or after a slot, going around the circle.
+   * @param from Starting slot
+   * @return Slot of a remaining patch
+   */
+  private int nextPresent(int from) {
+    if (from >= order.length) from = 0;
+    int word = from >>> 6;
+    long bits = present[word] & (-1L << from);
+    while (bits == 0) {
+      if (++word == present.length) word = 0;
+      bits = present[word];
+    }
+    return (word << 6) + Long.numberOfTrailingZeros(bits);
+  }
+
+  @Override
+  public String toString() {
+    var b = new StringBuilder("-- GAME STATE --\n\n");
+    b.append(" ".repeat(seats[0].position)).append("|p1\n");
+    b.append(timeBoard).append('\n');
+    b.append(" ".repeat(seats[1].position)).append("|p2\n\n");
+    for (int i = 0; i < seats.length; i++) {
+      b.append("-- PLAYER ").append(i + 1).append(" --").append(i == playing ? " (playing)\n" : "\n");
+      b.append("buttons : ").append(seats[i].buttons).append('\n');
+      b.append(seats[i].board).append('\n');
+    }
+    return b.toString();
+  }
+}
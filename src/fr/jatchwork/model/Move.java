@@ -0,0 +1,116 @@
+package fr.jatchwork.model;
+
+/**
+ * Encode the action of a player in a single int, so moves can be stored without allocation.
+ * <ul>
+ * <li>bits 0-1 : kind of move</li>
+ * <li>bits 2-3 : index of the bought patch from the neutral pawn</li>
+ * <li>bits 4-6 : transform code of the patch (see {@link Orientations})</li>
+ * <li>bits 8-15 : horizontal position of the patch, as a signed byte</li>
+ * <li>bits 16-23 : vertical position of the patch, as a signed byte</li>
+ * </ul>
+ */
+public final class Move {
+  /** Kind of move : advance in front of the opponent and earn buttons. */
+  public static final int ADVANCE = 0;
+  /** Kind of move : buy a patch and place it. */
+  public static final int BUY = 1;
+  /** Kind of move : place a leather patch won on the time board. */
+  public static final int LEATHER = 2;
+  /** Kind of move : throw a leather patch away, when the quilt board is full. */
+  public static final int DISCARD = 3;
+
+  /** The move advancing in front of the opponent. */
+  public static final int ADVANCE_MOVE = ADVANCE;
+  /** The move throwing away a leather patch. */
+  public static final int DISCARD_MOVE = DISCARD;
+
+  /**
+   * Encode the purchase of a patch.
+   * @param index Index of the patch from the neutral pawn
+   * @param code Transform code of the patch, between 0 and 7
+   * @param x Horizontal position on the quilt board
+   * @param y Vertical position on the quilt board
+   * @return Encoded move
+   */
+  public static int buy(int index, int code, int x, int y) {
+    if (index < 0 || index >= Game.PATCH_AVAILABLE)
+      throw new IllegalArgumentException("index should be >= 0 and < Game.PATCH_AVAILABLE.");
+    if (code < 0 || code >= Orientations.TRANSFORM_COUNT)
+      throw new IllegalArgumentException("code should be >= 0 and < 8.");
+    return BUY | index << 2 | code << 4 | position(x, y);
+  }
+
+  /**
+   * Encode the placement of a leather patch.
+   * @param x Horizontal position on the quilt board
+   * @param y Vertical position on the quilt board
+   * @return Encoded move
+   */
+  public static int leather(int x, int y) {
+    return LEATHER | position(x, y);
+  }
+
+  /**
+   * Kind of a move.
+   * @param move Encoded move
+   * @return ADVANCE, BUY, LEATHER or DISCARD
+   */
+  public static int kind(int move) { return move & 3; }
+
+  /**
+   * Index of the bought patch from the neutral pawn.
+   * @param move Encoded move
+   * @return Index of the patch
+   */
+  public static int index(int move) { return move >>> 2 & 3; }
+
+  /**
+   * Transform code of the bought patch.
+   * @param move Encoded move
+   * @return Transform code
+   */
+  public static int code(int move) { return move >>> 4 & 7; }
+
+  /**
+   * Horizontal position of the placed patch.
+   * @param move Encoded move
+   * @return X position
+   */
+  public static int x(int move) { return (byte)(move >>> 8); }
+
+  /**
+   * Vertical position of the placed patch.
+   * @param move Encoded move
+   * @return Y position
+   */
+  public static int y(int move) { return (byte)(move >>> 16); }
+
+  /**
+   * Readable form of a move.
+   * @param move Encoded move
+   * @return Description of the move
+   */
+  public static String toString(int move) {
+    return switch (kind(move)) {
+    case ADVANCE -> "advance";
+    case BUY -> "buy " + index(move) + " t" + code(move) + " at " + x(move) + "," + y(move);
+    case LEATHER -> "leather at " + x(move) + "," + y(move);
+    default -> "discard leather";
+    };
+  }
+
+  /**
+   * Encode the position of a patch.
+   * @param x Horizontal position, between -128 and 127
+   * @param y Vertical position, between -128 and 127
+   * @return Encoded position
+   */
+  private static int position(int x, int y) {
+    if (x < Byte.MIN_VALUE || x > Byte.MAX_VALUE || y < Byte.MIN_VALUE || y > Byte.MAX_VALUE)
+      throw new IllegalArgumentException("position should fit in a byte.");
+    return (x & 0xFF) << 8 | (y & 0xFF) << 16;
+  }
+
+  private Move() { }
+}
@@ -0,0 +1,125 @@
+package fr.jatchwork.model;
+
+import java.util.Objects;
+
+/**
+ * Enumerate every legal move of the player who must play, encoded with {@link Move}.
+ * Moves are written in a buffer given by the caller, so the generation does not allocate
+ * once the placements of the patches are computed.
+ * Moves are generated in this order : the purchases of the patches (by index, orientation and anchor)
+ * then advancing, or the placements of a leather patch when the player has one to place.
+ */
+public final class MoveGenerator {
+  /**
+   * Maximum number of moves in a position, to size the buffers.
+   * @param boardSize Width and height of the quilt boards
+   * @return Maximum number of legal moves
+   */
+  public static int maxMoves(int boardSize) {
+    if (boardSize <= 0) throw new IllegalArgumentException("boardSize should be > 0.");
+    return Game.PATCH_AVAILABLE * Orientations.TRANSFORM_COUNT * boardSize * boardSize + 1;
+  }
+
+  /**
+   * Write the legal moves of the player who must play in a game.
+   * @param game The game
+   * @param buffer Destination of the moves, of at least maxMoves(boardSize) elements
+   * @return Number of moves written, 0 if the game is finished
+   */
+  public static int generate(Game game, int[] buffer) {
+    Objects.requireNonNull(game);
+    Objects.requireNonNull(buffer);
+    if (game.finished()) return 0;
+    final Player player = game.playing();
+    final QuiltBoard board = player.board();
+    checkBuffer(buffer, board.size());
+    if (player.leatherCount() > 0) return leathers(board, buffer);
+
+    int count = 0;
+    final int available = Math.min(Game.PATCH_AVAILABLE, game.patchCount());
+    for (int index = 0; index < available; index++) {
+      final Patch patch = game.getPatch(index);
+      if (patch.buttonCost() <= player.buttonCount()) count = buys(board, index, patch, buffer, count);
+    }
+    buffer[count++] = Move.ADVANCE_MOVE;
+    return count;
+  }
+
+  /**
+   * Write the legal moves of the player who must play in a state.
+   * @param state The state of a game
+   * @param buffer Destination of the moves, of at least maxMoves(boardSize) elements
+   * @return Number of moves written, 0 if the game is finished
+   */
+  public static int generate(GameState state, int[] buffer) {
+    Objects.requireNonNull(state);
+    Objects.requireNonNull(buffer);
+    if (state.finished()) return 0;
+    final int playing = state.playing();
+    final QuiltBoard board = state.sharedBoard(playing);
+    checkBuffer(buffer, board.size());
+    if (state.leatherCount(playing) > 0) return leathers(board, buffer);
+
+    int count = 0;
+    final int available = Math.min(Game.PATCH_AVAILABLE, state.patchCount());
+    for (int index = 0; index < available; index++) {
+      final Patch patch = state.getPatch(index);
+      if (patch.buttonCost() <= state.buttonCount(playing)) count = buys(board, index, patch, buffer, count);
+    }
+    buffer[count++] = Move.ADVANCE_MOVE;
+    return count;
+  }
+
+  /**
+   * Write every placement of a patch fitting in a quilt board.
+   * @param board Quilt board of the player
+   * @param index Index of the patch from the neutral pawn
+   * @param patch The patch
+   * @param buffer Destination of the moves
+   * @param count Number of moves already in the buffer
+   * @return New number of moves in the buffer
+   */
+  private static int buys(QuiltBoard board, int index, Patch patch, int[] buffer, int count) {
+    final Orientations orientations = patch.orientations();
+    for (int i = 0; i < orientations.count(); i++) {
+      final Placements placements = orientations.placements(i, board.size());
+      final int code = orientations.code(i);
+      for (int anchor = 0; anchor < placements.count(); anchor++) {
+        if (board.fit(placements, anchor)) {
+          buffer[count++] = Move.buy(index, code, placements.x(anchor), placements.y(anchor));
+        }
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Write every placement of a leather patch, or the discard if there is none.
+   * @param board Quilt board of the player
+   * @param buffer Destination of the moves
+   * @return Number of moves in the buffer
+   */
+  private static int leathers(QuiltBoard board, int[] buffer) {
+    final Placements placements = Patch.LEATHER.orientations().placements(0, board.size());
+    int count = 0;
+    for (int anchor = 0; anchor < placements.count(); anchor++) {
+      if (board.fit(placements, anchor)) {
+        buffer[count++] = Move.leather(placements.x(anchor), placements.y(anchor));
+      }
+    }
+    if (count == 0) buffer[count++] = Move.DISCARD_MOVE;
+    return count;
+  }
+
+  /**
+   * Check that a buffer can hold every move.
+   * @param buffer Destination of the moves
+   * @param boardSize Width and height of the quilt board
+   */
+  private static void checkBuffer(int[] buffer, int boardSize) {
+    if (buffer.length < maxMoves(boardSize))
+      throw new IllegalArgumentException("buffer should have at least " + maxMoves(boardSize) + " elements.");
+  }
+
+  private MoveGenerator() { }
+}
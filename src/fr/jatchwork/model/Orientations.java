@@ -0,0 +1,207 @@
+package fr.jatchwork.model;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * All the distinct orientations of a patch, computed once and shared.
+ * They are kept in a table of fixed size indexed by the hash of the patch, so a file of millions
+ * of custom patches can't fill the memory : a patch is searched in a few neighbouring slots, and
+ * replaces the one of its first slot when they are all taken, which is computed again if it is
+ * needed later. The standard patches and their orientations fit the table.
+ * An orientation is identified by a transform code from 0 to 7 :
+ * the patch is flipped horizontally if the code is 4 or more,
+ * then rotated (code % 4) times.
+ */
+public final class Orientations {
+  /** Number of transform codes (4 rotations, with or without flip). */
+  public static final int TRANSFORM_COUNT = 8;
+
+  /** Number of slots of the table, a power of 2. */
+  private static final int CACHE_SIZE = 1 << 12;
+  /** Number of slots where a patch can be kept. */
+  private static final int CACHE_WAYS = 4;
+
+  private static final AtomicReferenceArray<Orientations> cache = new AtomicReferenceArray<>(CACHE_SIZE);
+
+  /**
+   * Get the orientations of a patch, the patch itself being the transform 0.
+   * @param patch The patch
+   * @return Its orientations
+   */
+  public static Orientations of(Patch patch) {
+    Objects.requireNonNull(patch);
+    final int first = patch.hashCode() * 0x9E3779B9 >>> Integer.numberOfLeadingZeros(CACHE_SIZE) + 1;
+    int free = first;
+    for (int i = CACHE_WAYS - 1; i >= 0; i--) {
+      final int slot = first + i & CACHE_SIZE - 1;
+      final var cached = cache.get(slot);
+      if (cached == null) {
+        free = slot;
+      } else if (cached.transforms[0].equals(patch)) {
+        return cached;
+      }
+    }
+    // Two threads may compute the same patch, both results being equal
+    final var orientations = new Orientations(patch);
+    cache.set(free, orientations);
+    return orientations;
+  }
+
+  /** Every transform of the patch, indexed by transform code. */
+  private final Patch[] transforms = new Patch[TRANSFORM_COUNT];
+  /** Transform codes of the distinct orientations. */
+  private final int[] distinct;
+  /** Index of the distinct orientation of each transform code. */
+  private final int[] indexes = new int[TRANSFORM_COUNT];
+  private final Patch flippedVertically;
+  /** Placements of each distinct orientation, indexed by board size. */
+  private volatile Placements[][] placements = new Placements[0][];
+
+  /**
+   * Compute the orientations of a patch.
+   * @param patch The patch
+   */
+  private Orientations(Patch patch) {
+    Objects.requireNonNull(patch);
+    transforms[0] = patch;
+    transforms[4] = flipH(patch);
+    for (int i = 1; i < TRANSFORM_COUNT; i++) {
+      if (i != 4) transforms[i] = rotate(transforms[i - 1]);
+    }
+
+    // Keep only the first transform giving each shape, share the patch objects
+    final var codes = new int[TRANSFORM_COUNT];
+    int count = 0;
+    for (int i = 0; i < TRANSFORM_COUNT; i++) {
+      int same = -1;
+      for (int j = 0; j < count && same < 0; j++) {
+        if (transforms[codes[j]].equals(transforms[i])) same = codes[j];
+      }
+      if (same < 0) {
+        indexes[i] = count;
+        codes[count++] = i;
+      } else {
+        indexes[i] = indexes[same];
+        transforms[i] = transforms[same];
+      }
+    }
+    distinct = Arrays.copyOf(codes, count);
+    flippedVertically = transforms[6];
+  }
+
+  /**
+   * Number of distinct orientations.
+   * @return Between 1 and 8
+   */
+  public int count() { return distinct.length; }
+
+  /**
+   * Get a distinct orientation.
+   * @param i Index of the orientation, lower than count()
+   * @return The oriented patch
+   */
+  public Patch get(int i) { return transforms[distinct[i]]; }
+
+  /**
+   * Transform code of a distinct orientation.
+   * @param i Index of the orientation, lower than count()
+   * @return Transform code
+   */
+  public int code(int i) { return distinct[i]; }
+
+  /**
+   * Index of the distinct orientation obtained with a transform code.
+   * @param code Transform code between 0 and 7
+   * @return Index of the orientation
+   */
+  public int index(int code) { return indexes[code]; }
+
+  /**
+   * Get the patch for a transform code.
+   * @param code Transform code between 0 and 7
+   * @return The oriented patch
+   */
+  public Patch transform(int code) { return transforms[code]; }
+
+  /**
+   * Find the transform code giving an oriented patch.
+   * @param oriented The patch after a rotation or a flip
+   * @return Smallest transform code giving the patch, or -1 if it is not an orientation of this patch
+   */
+  public int codeOf(Patch oriented) {
+    Objects.requireNonNull(oriented);
+    for (int code = 0; code < TRANSFORM_COUNT; code++) {
+      if (transforms[code].equals(oriented)) return code;
+    }
+    return -1;
+  }
+
+  /**
+   * The patch rotated by 90 degree clockwise.
+   * @return Cached patch
+   */
+  Patch rotated() { return transforms[1]; }
+
+  /**
+   * The patch flipped horizontally.
+   * @return Cached patch
+   */
+  Patch flippedHorizontally() { return transforms[4]; }
+
+  /**
+   * The patch flipped vertically.
+   * @return Cached patch
+   */
+  Patch flippedVertically() { return flippedVertically; }
+
+  /**
+   * Every legal anchor of a distinct orientation on a quilt board.
+   * @param i Index of the orientation, lower than count()
+   * @param boardSize Width and height of the quilt board
+   * @return Placements of the orientation
+   */
+  public Placements placements(int i, int boardSize) {
+    final Placements[][] table = placements;
+    if (boardSize < table.length && table[boardSize] != null) return table[boardSize][i];
+    return computePlacements(boardSize)[i];
+  }
+
+  /**
+   * Compute the placements of every distinct orientation for a board size.
+   * @param boardSize Width and height of the quilt board
+   * @return Placements for each orientation
+   */
+  private synchronized Placements[] computePlacements(int boardSize) {
+    if (boardSize <= 0) throw new IllegalArgumentException("boardSize should be > 0.");
+    Placements[][] table = placements;
+    if (boardSize < table.length && table[boardSize] != null) return table[boardSize];
+    final var result = new Placements[distinct.length];
+    for (int i = 0; i < result.length; i++) {
+      result[i] = new Placements(get(i), boardSize);
+    }
+    table = Arrays.copyOf(table, Math.max(table.length, boardSize + 1));
+    table[boardSize] = result;
+    placements = table;
+    return result;
+  }
+
+  /**
+   * Build a patch which is a 90 degree clockwise rotation of another patch.
+   * @param patch Patch to rotate
+   * @return New patch
+   */
+  private static Patch rotate(Patch patch) {
+    return new Patch(patch.timeCost(), patch.buttonCost(), patch.buttonIncome(), patch.tiles().rotate());
+  }
+
+  /**
+   * Build a patch which is a horizontally flipped version of another patch.
+   * @param patch Patch to flip
+   * @return New patch
+   */
+  private static Patch flipH(Patch patch) {
+    return new Patch(patch.timeCost(), patch.buttonCost(), patch.buttonIncome(), patch.tiles().flipHorizontally());
+  }
+}
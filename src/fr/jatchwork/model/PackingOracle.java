@@ -0,0 +1,464 @@
+package fr.jatchwork.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Tell if a list of patches can all be placed together on the empty squares of a quilt board,
+ * in any orientation.
+ * Queries are first pruned by area and by the sizes of the empty regions. Only the shapes matter,
+ * so the empty squares and the patches are reduced to canonical shapes, the same whatever their
+ * position, rotation and flip, and the answers are kept in a bounded cache of the least recently
+ * used queries.
+ * The search of a query is limited, and a query exceeding the limit is answered as possible,
+ * so an impossible answer is always exact.
+ */
+public final class PackingOracle {
+  /** Default number of answers kept in the cache. */
+  public static final int CAPACITY = 1 << 16;
+  /** Default maximum number of positions searched for a query. */
+  public static final int NODES = 100_000;
+  /** Maximum number of patches of a query, the remaining ones being stored in a long. */
+  public static final int MAX_PATCHES = Long.SIZE - 1;
+
+  /**
+   * Key of a map, comparing arrays by content.
+   * @param words Content of the key
+   */
+  private record Key(long[] words) {
+    @Override
+    public boolean equals(Object obj) {
+      return obj instanceof Key key && Arrays.equals(words, key.words);
+    }
+
+    @Override
+    public int hashCode() {
+      return Arrays.hashCode(words);
+    }
+  }
+
+  /**
+   * A patch of a query, with the lines of its distinct orientations.
+   * @param shape Canonical shape of the patch
+   * @param count Number of squares
+   * @param orientations Lines of each orientation, without empty line or column
+   */
+  private record Piece(long[] shape, int count, long[][] orientations) { }
+
+  /**
+   * Thrown to stop a search which exceeds its number of nodes.
+   */
+  private static final class Exhausted extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    private Exhausted() {
+      super(null, null, false, false);
+    }
+  }
+
+  private static final Exhausted EXHAUSTED = new Exhausted();
+
+  /**
+   * Search of a placement of every piece of a query.
+   */
+  private static final class Search {
+    /** Lines of the board, modified during the search but restored. */
+    private final long[] filled;
+    private final long full;
+    private final Piece[] pieces;
+    /** Positions already searched, with their answer. */
+    private final HashMap<Key, Boolean> searched = new HashMap<>();
+    private int nodesLeft;
+
+    /**
+     * Prepare a search.
+     * @param filled Lines of the board
+     * @param full Bits of a full line
+     * @param pieces Pieces of the query
+     * @param nodes Maximum number of positions to search
+     */
+    private Search(long[] filled, long full, Piece[] pieces, int nodes) {
+      this.filled = filled;
+      this.full = full;
+      this.pieces = pieces;
+      nodesLeft = nodes;
+    }
+
+    /**
+     * Place the remaining pieces by filling the first empty square, either with a piece or as a lost square.
+     * @param remaining Bit i set if the piece i is not placed yet
+     * @param slack Number of squares which can still be left empty
+     * @return True if the remaining pieces can be placed
+     */
+    private boolean pack(long remaining, int slack) {
+      if (remaining == 0) return true;
+      final var words = Arrays.copyOf(filled, filled.length + 1);
+      words[filled.length] = remaining;
+      final var key = new Key(words);
+      final Boolean known = searched.get(key);
+      if (known != null) return known;
+      if (nodesLeft-- == 0) throw EXHAUSTED;
+
+      int area = 0;
+      for (long bits = remaining; bits != 0; bits &= bits - 1) {
+        area += pieces[Long.numberOfTrailingZeros(bits)].count();
+      }
+      boolean result = false;
+      if (regionsAllow(filled, full, Arrays.asList(pieces), remaining, area)) {
+        // First empty square, there is one as the remaining pieces fit in the empty area
+        int y = 0;
+        while (filled[y] == full) y++;
+        final int x = Long.numberOfTrailingZeros(~filled[y] & full);
+        result = placeAt(remaining, slack, x, y);
+        if (!result && slack > 0) {
+          filled[y] |= 1L << x;
+          result = pack(remaining, slack - 1);
+          filled[y] &= ~(1L << x);
+        }
+      }
+      searched.put(key, result);
+      return result;
+    }
+
+    /**
+     * Try every remaining piece covering a square, the square being the first one of the piece.
+     * @param remaining Bit i set if the piece i is not placed yet
+     * @param slack Number of squares which can still be left empty
+     * @param x Horizontal position of the square
+     * @param y Vertical position of the square
+     * @return True if the remaining pieces can be placed
+     */
+    private boolean placeAt(long remaining, int slack, int x, int y) {
+      final int size = filled.length;
+      for (int i = 0; i < pieces.length; i++) {
+        if ((remaining >>> i & 1) == 0) continue;
+        // Pieces of the same shape are interchangeable, only the first remaining one is tried
+        if (i > 0 && (remaining >>> (i - 1) & 1) != 0 && Arrays.equals(pieces[i].shape(), pieces[i - 1].shape())) {
+          continue;
+        }
+        for (long[] rows : pieces[i].orientations()) {
+          final int left = x - Long.numberOfTrailingZeros(rows[0]);
+          if (left < 0 || left + width(rows) > size || y + rows.length > size) continue;
+          boolean fit = true;
+          for (int r = 0; r < rows.length && fit; r++) {
+            fit = (filled[y + r] & rows[r] << left) == 0;
+          }
+          if (!fit) continue;
+          for (int r = 0; r < rows.length; r++) {
+            filled[y + r] |= rows[r] << left;
+          }
+          final boolean result = pack(remaining & ~(1L << i), slack);
+          for (int r = 0; r < rows.length; r++) {
+            filled[y + r] &= ~(rows[r] << left);
+          }
+          if (result) return true;
+        }
+      }
+      return false;
+    }
+  }
+
+  private final LinkedHashMap<Key, Boolean> cache;
+  private final int nodes;
+  private long hits = 0;
+  private long misses = 0;
+
+  /**
+   * Create an oracle with a cache of the default capacity and the default search limit.
+   */
+  public PackingOracle() {
+    this(CAPACITY, NODES);
+  }
+
+  /**
+   * Create an oracle.
+   * @param capacity Maximum number of answers kept in the cache
+   * @param nodes Maximum number of positions searched for a query
+   */
+  public PackingOracle(int capacity, int nodes) {
+    if (capacity <= 0) throw new IllegalArgumentException("capacity should be > 0.");
+    if (nodes <= 0) throw new IllegalArgumentException("nodes should be > 0.");
+    this.nodes = nodes;
+    cache = new LinkedHashMap<>(16, 0.75f, true) {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Key, Boolean> eldest) {
+        return size() > capacity;
+      }
+    };
+  }
+
+  /**
+   * Check if patches can all be placed on a quilt board, in any orientation.
+   * @param board The quilt board, not modified
+   * @param patches The patches to place
+   * @return True if there is a placement of every patch without overlap,
+   *         or if none was found within the search limit
+   */
+  public boolean canPack(QuiltBoard board, List<Patch> patches) {
+    Objects.requireNonNull(board);
+    Objects.requireNonNull(patches);
+    if (patches.size() > MAX_PATCHES) {
+      throw new IllegalArgumentException("patches should not contain more than " + MAX_PATCHES + " patches.");
+    }
+    final int size = board.size();
+    final long full = size == Long.SIZE ? -1L : (1L << size) - 1;
+
+    // Pieces sorted by shape, so equal shapes are next to each other
+    final var pieces = new ArrayList<Piece>(patches.size());
+    int area = 0;
+    for (Patch patch : patches) {
+      final Piece piece = piece(patch);
+      if (piece.count() == 0) continue;
+      pieces.add(piece);
+      area += piece.count();
+    }
+    if (pieces.isEmpty()) return true;
+    if (area > board.remainingSpace()) return false;
+    pieces.sort((p1, p2) -> Arrays.compare(p1.shape(), p2.shape()));
+
+    final var filled = new long[size];
+    for (int y = 0; y < size; y++) {
+      filled[y] = board.line(y);
+    }
+    if (!regionsAllow(filled, full, pieces, (1L << pieces.size()) - 1, area)) return false;
+
+    // Look for the same region and patches in the cache
+    final var empty = new long[size];
+    for (int y = 0; y < size; y++) {
+      empty[y] = ~filled[y] & full;
+    }
+    final var words = new ArrayList<long[]>(pieces.size() + 1);
+    words.add(canonical(empty));
+    for (Piece piece : pieces) {
+      words.add(piece.shape());
+    }
+    final var key = new Key(concat(words));
+    synchronized (cache) {
+      final Boolean known = cache.get(key);
+      if (known != null) {
+        hits++;
+        return known;
+      }
+      misses++;
+    }
+
+    boolean result;
+    try {
+      final var search = new Search(filled, full, pieces.toArray(new Piece[0]), nodes);
+      result = search.pack((1L << pieces.size()) - 1, board.remainingSpace() - area);
+    } catch (Exhausted e) {
+      // Not proven impossible
+      result = true;
+    }
+    synchronized (cache) {
+      cache.put(key, result);
+    }
+    return result;
+  }
+
+  /**
+   * Number of queries answered by the cache.
+   * @return Cache hits
+   */
+  public long hits() {
+    synchronized (cache) {
+      return hits;
+    }
+  }
+
+  /**
+   * Number of queries which had to be searched.
+   * @return Cache misses
+   */
+  public long misses() {
+    synchronized (cache) {
+      return misses;
+    }
+  }
+
+  /**
+   * Check the sizes of the empty regions : the squares of regions smaller than every piece are lost,
+   * and the biggest piece needs a region big enough.
+   * @param filled Lines of the board
+   * @param full Bits of a full line
+   * @param pieces Pieces of the query
+   * @param remaining Bit i set if the piece i is not placed yet
+   * @param area Number of squares of the remaining pieces
+   * @return False if the pieces surely can't be placed
+   */
+  private static boolean regionsAllow(long[] filled, long full, List<Piece> pieces, long remaining, int area) {
+    int smallest = Integer.MAX_VALUE;
+    int biggest = 0;
+    for (long bits = remaining; bits != 0; bits &= bits - 1) {
+      final int count = pieces.get(Long.numberOfTrailingZeros(bits)).count();
+      smallest = Math.min(smallest, count);
+      biggest = Math.max(biggest, count);
+    }
+
+    final int size = filled.length;
+    final var left = new long[size];
+    int usable = 0;
+    int largest = 0;
+    for (int y = 0; y < size; y++) {
+      left[y] = ~filled[y] & full;
+    }
+    for (int y = 0; y < size; y++) {
+      while (left[y] != 0) {
+        // Grow the region of the first square left, all lines at once, until it is stable
+        final var region = new long[size];
+        region[y] = left[y] & -left[y];
+        boolean grown = true;
+        while (grown) {
+          grown = false;
+          for (int ry = 0; ry < size; ry++) {
+            long next = region[ry] | region[ry] << 1 | region[ry] >>> 1;
+            if (ry > 0) next |= region[ry - 1];
+            if (ry + 1 < size) next |= region[ry + 1];
+            next &= left[ry];
+            if (next != region[ry]) {
+              region[ry] = next;
+              grown = true;
+            }
+          }
+        }
+        int count = 0;
+        for (int ry = 0; ry < size; ry++) {
+          count += Long.bitCount(region[ry]);
+          left[ry] &= ~region[ry];
+        }
+        if (count >= smallest) usable += count;
+        largest = Math.max(largest, count);
+      }
+    }
+    return usable >= area && largest >= biggest;
+  }
+
+  /**
+   * Compute the canonical shape and the orientations of a patch.
+   * @param patch The patch
+   * @return The piece
+   */
+  private static Piece piece(Patch patch) {
+    final Orientations orientations = patch.orientations();
+    final var lines = new long[orientations.count()][];
+    for (int i = 0; i < orientations.count(); i++) {
+      final PatchShape shape = orientations.get(i).tiles();
+      final var rows = new long[shape.height()];
+      for (int y = 0; y < rows.length; y++) {
+        rows[y] = shape.row(y);
+      }
+      lines[i] = trim(rows);
+    }
+    final int count = patch.tiles().count();
+    return new Piece(count == 0 ? new long[0] : canonical(lines[0]), count, lines);
+  }
+
+  /**
+   * Smallest encoding of a shape among its rotations and flips, whatever its position.
+   * @param rows Lines of the shape, not empty
+   * @return Height followed by the lines of the canonical shape
+   */
+  private static long[] canonical(long[] rows) {
+    long[] shape = trim(rows);
+    long[] best = null;
+    for (int flip = 0; flip < 2; flip++) {
+      for (int rotation = 0; rotation < 4; rotation++) {
+        final var encoded = new long[shape.length + 1];
+        encoded[0] = shape.length;
+        System.arraycopy(shape, 0, encoded, 1, shape.length);
+        if (best == null || Arrays.compare(encoded, best) < 0) best = encoded;
+        shape = rotate(shape);
+      }
+      // Reverse the lines to flip vertically
+      final var flipped = new long[shape.length];
+      for (int y = 0; y < shape.length; y++) {
+        flipped[y] = shape[shape.length - 1 - y];
+      }
+      shape = flipped;
+    }
+    return best;
+  }
+
+  /**
+   * Rotate a trimmed shape by a quarter turn.
+   * @param rows Lines of the shape, without empty line or column
+   * @return Lines of the rotated shape
+   */
+  private static long[] rotate(long[] rows) {
+    final var rotated = new long[width(rows)];
+    for (int y = 0; y < rows.length; y++) {
+      for (long bits = rows[y]; bits != 0; bits &= bits - 1) {
+        final int x = Long.numberOfTrailingZeros(bits);
+        rotated[x] |= 1L << (rows.length - 1 - y);
+      }
+    }
+    return rotated;
+  }
+
+  /**
+   * Remove the empty lines around a shape and its empty columns on the left.
+   * @param rows Lines of the shape
+   * @return Trimmed lines, empty if the shape has no square
+   */
+  private static long[] trim(long[] rows) {
+    int first = 0;
+    int last = rows.length - 1;
+    while (first <= last && rows[first] == 0) first++;
+    while (last >= first && rows[last] == 0) last--;
+    final int shift = Long.numberOfTrailingZeros(or(rows));
+    final var trimmed = new long[Math.max(0, last - first + 1)];
+    for (int y = 0; y < trimmed.length; y++) {
+      trimmed[y] = rows[first + y] >>> shift;
+    }
+    return trimmed;
+  }
+
+  /**
+   * Union of the lines of a shape.
+   * @param rows Lines of the shape
+   * @return Every column containing a square
+   */
+  private static long or(long[] rows) {
+    long columns = 0;
+    for (long row : rows) {
+      columns |= row;
+    }
+    return columns;
+  }
+
+  /**
+   * Width of a shape whose first column is not empty.
+   * @param rows Lines of the shape
+   * @return Number of columns
+   */
+  private static int width(long[] rows) {
+    return Long.SIZE - Long.numberOfLeadingZeros(or(rows));
+  }
+
+  /**
+   * Put arrays one after the other, each one after its length.
+   * @param arrays The arrays
+   * @return Concatenation
+   */
+  private static long[] concat(List<long[]> arrays) {
+    int length = 0;
+    for (long[] array : arrays) {
+      length += array.length + 1;
+    }
+    final var words = new long[length];
+    int i = 0;
+    for (long[] array : arrays) {
+      words[i++] = array.length;
+      System.arraycopy(array, 0, words, i, array.length);
+      i += array.length;
+    }
+    return words;
+  }
+}
@@ -1,62 +1,24 @@
 package fr.jatchwork.model;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
-import java.util.StringJoiner;
 
 /**
  * Construct patches by giving arguments one per one, or by reading a file.
  */
 public final class PatchBuilder {
   /**
-   * Extract a list of patches from a file.
+   * Extract a list of patches from a file, see {@link PatchParser}.
    * @param path Path of the file to read
    * @return List of extracted patches
    * @throws IOException Error when reading the file
+   * @throws PatchFormatException If the file is malformed, with the position of the error
    */
   public static List<Patch> fromFile(Path path) throws IOException {
     Objects.requireNonNull(path);
-    final var patches = new ArrayList<Patch>();
-    Patch patch;
-    
-    try (var reader = Files.newBufferedReader(path)) {
-      while ((patch = nextPatch(reader)) != null) {
-        patches.add(patch);
-      }
-    }
-    
-    return patches;
-  }
-
-  /**
-   * Read the next patch from a file
-   * @param reader The file to read
-   * @return Read patch
-   * @throws IOException Error when reading the file
-   */
-  private static Patch nextPatch(BufferedReader reader) throws IOException {
-    Objects.requireNonNull(reader);
-    String line;
-    for (line = reader.readLine(); line != null && line.isEmpty(); line = reader.readLine()) { }
-    if (line == null) return null;
-
-    final var builder = new PatchBuilder();
-    String[] args = line.split(" ");
-    builder.setTimeCost(Integer.parseInt(args[0]));
-    builder.setButtonCost(Integer.parseInt(args[1]));
-    builder.setButtonIncome(Integer.parseInt(args[2]));
-
-    final var joiner = new StringJoiner("\n");
-    for (line = reader.readLine(); line != null && line.length() > 0; line = reader.readLine()) {
-      joiner.add(line);
-    }
-    builder.setShape(joiner.toString());
-    return builder.toPatch();
+    return PatchParser.parse(path);
   }
 
   private int timeCost;
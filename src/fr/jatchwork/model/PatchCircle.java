@@ -0,0 +1,213 @@
+package fr.jatchwork.model;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+
+/**
+ * The circle of patches around the time board, starting from the neutral pawn.
+ * Patches keep their initial order, only the pawn moves and bought patches are removed.
+ * The circle is stored as a ring buffer of slots, a slot being the index of a patch in the initial order.
+ */
+public final class PatchCircle {
+  /** All patches in their initial order, shared between copies. */
+  private final Patch[] order;
+  private final int[] ring;
+  private int head = 0;
+  private int size;
+  /** Xor of the Zobrist keys of the remaining slots. */
+  private long hash;
+
+  /**
+   * Create a new circle, the neutral pawn being before the first patch.
+   * @param patches Patches in the circle order
+   */
+  public PatchCircle(List<Patch> patches) {
+    Objects.requireNonNull(patches);
+    order = patches.toArray(new Patch[0]);
+    for (var patch : order) {
+      Objects.requireNonNull(patch);
+    }
+    ring = new int[order.length];
+    for (int i = 0; i < ring.length; i++) {
+      ring[i] = i;
+    }
+    size = order.length;
+    for (int slot = 0; slot < order.length; slot++) {
+      hash ^= key(order, slot);
+    }
+  }
+
+  /**
+   * Create a circle of which some patches were already taken.
+   * @param patches Patches in their initial order
+   * @param slots Slots of the remaining patches, starting from the neutral pawn
+   */
+  PatchCircle(List<Patch> patches, int[] slots) {
+    this(patches);
+    Objects.requireNonNull(slots);
+    final var used = new boolean[order.length];
+    for (int slot : slots) {
+      Objects.checkIndex(slot, order.length);
+      if (used[slot]) throw new IllegalArgumentException("Duplicate slot: " + slot);
+      used[slot] = true;
+    }
+    System.arraycopy(slots, 0, ring, 0, slots.length);
+    size = slots.length;
+    hash = 0;
+    for (int slot : slots) {
+      hash ^= key(order, slot);
+    }
+  }
+
+  /**
+   * Create a copy of a circle, sharing its initial order.
+   * @param circle Circle to copy
+   */
+  private PatchCircle(PatchCircle circle) {
+    order = circle.order;
+    ring = new int[order.length];
+    circle.copyTo(this);
+  }
+
+  /**
+   * Number of remaining patches.
+   * @return Size of the circle
+   */
+  public int size() { return size; }
+
+  /**
+   * Get the patch at index from the neutral pawn.
+   * @param index Index of the patch
+   * @return Patch at given index
+   */
+  public Patch get(int index) {
+    return order[slot(index)];
+  }
+
+  /**
+   * Slot of the patch at index from the neutral pawn,
+   * which is the position of the patch in the initial order.
+   * @param index Index of the patch
+   * @return Slot of the patch
+   */
+  public int slot(int index) {
+    Objects.checkIndex(index, size);
+    int i = head + index;
+    if (i >= ring.length) i -= ring.length;
+    return ring[i];
+  }
+
+  /**
+   * Number of patches in the initial circle.
+   * @return Initial size
+   */
+  public int initialSize() { return order.length; }
+
+  /**
+   * Get a patch by its slot.
+   * @param slot Position of the patch in the initial order
+   * @return Patch
+   */
+  public Patch patchAt(int slot) { return order[slot]; }
+
+  /**
+   * Move the pawn and take (remove) a patch.
+   * @param index Index of the patch from the neutral pawn
+   * @return Taken patch
+   */
+  public Patch remove(int index) {
+    if (size == 0) throw new NoSuchElementException("The circle is empty.");
+    if (index < 0) throw new IllegalArgumentException("index should be >= 0.");
+    // Patches skipped by the pawn go at the end of the ring
+    for (int i = 0; i < index; i++) {
+      int last = head + size;
+      if (last >= ring.length) last -= ring.length;
+      ring[last] = ring[head];
+      if (++head == ring.length) head = 0;
+    }
+    final int slot = ring[head];
+    if (++head == ring.length) head = 0;
+    size--;
+    hash ^= key(order, slot);
+    return order[slot];
+  }
+
+  /**
+   * Put back a patch taken with remove, moving the pawn back.
+   * Must be called in the reverse order of the removals. Does not allocate.
+   * @param index Index given to remove
+   * @param slot Slot of the removed patch
+   */
+  void restore(int index, int slot) {
+    if (size == ring.length) throw new IllegalStateException("The circle is full.");
+    if (--head < 0) head = ring.length - 1;
+    ring[head] = slot;
+    size++;
+    hash ^= key(order, slot);
+    // Patches skipped by the pawn come back from the end of the ring
+    for (int i = 0; i < index; i++) {
+      int last = head + size - 1;
+      if (last >= ring.length) last -= ring.length;
+      final int moved = ring[last];
+      if (--head < 0) head = ring.length - 1;
+      ring[head] = moved;
+    }
+  }
+
+  /**
+   * Copy the state of this circle into another one built from the same patches.
+   * Does not allocate.
+   * @param circle Destination of the copy
+   */
+  public void copyTo(PatchCircle circle) {
+    Objects.requireNonNull(circle);
+    if (circle.order != order) throw new IllegalArgumentException("circles should share the same patches.");
+    final int end = Math.min(size, ring.length - head);
+    System.arraycopy(ring, head, circle.ring, 0, end);
+    System.arraycopy(ring, 0, circle.ring, end, size - end);
+    circle.head = 0;
+    circle.size = size;
+    circle.hash = hash;
+  }
+
+  /**
+   * Create a copy of this circle, sharing the patches.
+   * @return New circle
+   */
+  public PatchCircle copy() {
+    return new PatchCircle(this);
+  }
+
+  /**
+   * Zobrist hash of the remaining patches and of the position of the neutral pawn.
+   * @return Hash of the circle
+   */
+  public long hash() {
+    return size == 0 ? hash : hash ^ Zobrist.key(Zobrist.PAWN, 0, ring[head]);
+  }
+
+  /**
+   * Zobrist key of a slot containing its patch.
+   * @param order Patches in their initial order
+   * @param slot Slot of the patch
+   * @return Key
+   */
+  static long key(Patch[] order, int slot) {
+    return Zobrist.key(Zobrist.SLOT, slot, order[slot].hashCode());
+  }
+
+  /**
+   * All remaining patches, starting from the neutral pawn.
+   * @return Unmodifiable list of patches
+   */
+  public List<Patch> toList() {
+    final var result = new Patch[size];
+    for (int i = 0; i < size; i++) {
+      result[i] = get(i);
+    }
+    return Collections.unmodifiableList(Arrays.asList(result));
+  }
+}
@@ -0,0 +1,58 @@
+package fr.jatchwork.model;
+
+import java.io.IOException;
+
+/**
+ * Thrown when a file of patches is malformed, with the position of the error.
+ */
+public final class PatchFormatException extends IOException {
+  private static final long serialVersionUID = 1L;
+
+  private final int line;
+  private final int column;
+  private final String reason;
+
+  /**
+   * Create a new exception.
+   * @param line Line of the error, from 1
+   * @param column Column of the error in bytes, from 1
+   * @param reason Description of the error
+   */
+  public PatchFormatException(int line, int column, String reason) {
+    super("Line " + line + ", column " + column + " : " + reason);
+    if (line <= 0) throw new IllegalArgumentException("line should be > 0.");
+    if (column <= 0) throw new IllegalArgumentException("column should be > 0.");
+    this.line = line;
+    this.column = column;
+    this.reason = reason;
+  }
+
+  /**
+   * Line of the error.
+   * @return Line, from 1
+   */
+  public int line() { return line; }
+
+  /**
+   * Column of the error.
+   * @return Column in bytes, from 1
+   */
+  public int column() { return column; }
+
+  /**
+   * Description of the error, without its position.
+   * @return The description
+   */
+  public String reason() { return reason; }
+
+  /**
+   * Same error, in a part of a file starting after some lines.
+   * @param lines Number of lines before the part
+   * @return New exception
+   */
+  PatchFormatException shift(int lines) {
+    final var shifted = new PatchFormatException(line + lines, column, reason);
+    shifted.initCause(this);
+    return shifted;
+  }
+}
@@ -0,0 +1,168 @@
+package fr.jatchwork.model;
+
+import java.util.Objects;
+
+/**
+ * Occupied squares of a patch, packed as a bit mask for a quilt board of a given size.
+ * The square (x, y) of the board is the bit y * size + x.
+ * The mask is anchored on the first occupied column and line of the patch,
+ * so empty borders of the shape never prevent a placement.
+ */
+final class PatchMask {
+  private final Patch patch;
+  private final int boardSize;
+  private final int offsetX;
+  private final int offsetY;
+  private final int width;
+  private final int height;
+  private final int count;
+  private final long[] words;
+
+  /**
+   * Compute the mask of a patch.
+   * @param patch The patch
+   * @param boardSize Width and height of the targeted quilt board
+   */
+  PatchMask(Patch patch, int boardSize) {
+    this.patch = Objects.requireNonNull(patch);
+    this.boardSize = boardSize;
+
+    // Bounds of the occupied part of the shape
+    final PatchShape shape = patch.tiles();
+    long columns = 0;
+    int minY = -1, maxY = -1;
+    for (int y = 0; y < shape.height(); y++) {
+      final long row = shape.row(y);
+      if (row == 0) continue;
+      columns |= row;
+      if (minY < 0) minY = y;
+      maxY = y;
+    }
+    if (columns == 0) {
+      // Nothing to place
+      offsetX = offsetY = width = height = count = 0;
+      words = new long[0];
+      return;
+    }
+    offsetX = Long.numberOfTrailingZeros(columns);
+    offsetY = minY;
+    width = Long.SIZE - Long.numberOfLeadingZeros(columns) - offsetX;
+    height = maxY - minY + 1;
+
+    // Pack the occupied squares
+    words = new long[((height - 1) * boardSize + width + 63) >>> 6];
+    int total = 0;
+    for (int y = 0; y < height; y++) {
+      long row = shape.row(minY + y) >>> offsetX;
+      total += Long.bitCount(row);
+      while (row != 0) {
+        final int bit = y * boardSize + Long.numberOfTrailingZeros(row);
+        words[bit >>> 6] |= 1L << bit;
+        row &= row - 1;
+      }
+    }
+    count = total;
+  }
+
+  /**
+   * The patch this mask was computed for.
+   * @return Patch
+   */
+  Patch patch() { return patch; }
+
+  /**
+   * Size of the quilt board this mask was computed for.
+   * @return Width and height of the board
+   */
+  int boardSize() { return boardSize; }
+
+  /**
+   * Horizontal offset of the first occupied column inside the patch.
+   * @return Offset
+   */
+  int offsetX() { return offsetX; }
+
+  /**
+   * Vertical offset of the first occupied line inside the patch.
+   * @return Offset
+   */
+  int offsetY() { return offsetY; }
+
+  /**
+   * Width of the occupied part of the patch.
+   * @return Width
+   */
+  int width() { return width; }
+
+  /**
+   * Height of the occupied part of the patch.
+   * @return Height
+   */
+  int height() { return height; }
+
+  /**
+   * Number of squares covered by the patch.
+   * @return Number of occupied squares
+   */
+  int count() { return count; }
+
+  /**
+   * Check that the patch placed at given position stays inside the board.
+   * @param x Horizontal position of the patch
+   * @param y Vertical position of the patch
+   * @return True if every occupied square is inside the board
+   */
+  boolean inside(int x, int y) {
+    int ox = x + offsetX;
+    int oy = y + offsetY;
+    return ox >= 0 && oy >= 0 && ox + width <= boardSize && oy + height <= boardSize;
+  }
+
+  /**
+   * Test if the patch overlaps occupied squares of a board.
+   * The position must have been checked with {@link #inside(int, int)}.
+   * @param board Bits of the board
+   * @param x Horizontal position of the patch
+   * @param y Vertical position of the patch
+   * @return True if at least one square is already occupied
+   */
+  boolean intersects(long[] board, int x, int y) {
+    final int shift = (y + offsetY) * boardSize + x + offsetX;
+    final int q = shift >>> 6;
+    final int r = shift & 63;
+    long carry = 0;
+    for (int i = 0; i <= words.length; i++) {
+      long word = i < words.length ? words[i] : 0;
+      long shifted = (word << r) | carry;
+      carry = r == 0 ? 0 : word >>> (64 - r);
+      if (shifted != 0 && (board[q + i] & shifted) != 0) return true;
+    }
+    return false;
+  }
+
+  /**
+   * Mark the squares of the patch as occupied on a board.
+   * The position must have been checked with {@link #inside(int, int)}.
+   * @param board Bits of the board
+   * @param x Horizontal position of the patch
+   * @param y Vertical position of the patch
+   * @return Xor of the Zobrist keys of the filled squares
+   */
+  long fill(long[] board, int x, int y) {
+    final int shift = (y + offsetY) * boardSize + x + offsetX;
+    final int q = shift >>> 6;
+    final int r = shift & 63;
+    long carry = 0;
+    long hash = 0;
+    for (int i = 0; i <= words.length; i++) {
+      long word = i < words.length ? words[i] : 0;
+      long shifted = (word << r) | carry;
+      carry = r == 0 ? 0 : word >>> (64 - r);
+      if (shifted != 0) {
+        board[q + i] |= shifted;
+        hash ^= Zobrist.squares(shifted, (q + i) << 6);
+      }
+    }
+    return hash;
+  }
+}
@@ -0,0 +1,308 @@
+package fr.jatchwork.model;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+
+/**
+ * Parser of the files of patches, reading the bytes of a mapped file without creating any string.
+ * Each patch is a line "timeCost buttonCost buttonIncome", followed by the lines of its shape,
+ * '#' being a filled square, and patches are separated by empty lines.
+ * As with the shapes given as text, the width of a shape is the length of its first line and
+ * longer lines are truncated. Lines end with "\n", "\r\n" or "\r".
+ * <p>
+ * Large files are cut after empty lines in chunks parsed at the same time, and the patches of the
+ * chunks are put back in the order of the file.
+ */
+public final class PatchParser {
+  /** Minimum size of a chunk parsed by its own thread. */
+  private static final int CHUNK = 1 << 20;
+
+  /**
+   * Parse a file of patches, using every core for large files.
+   * @param path Path of the file
+   * @return Patches in the order of the file
+   * @throws IOException If the file can't be read
+   * @throws PatchFormatException If the file is malformed
+   */
+  public static List<Patch> parse(Path path) throws IOException {
+    return parse(path, Runtime.getRuntime().availableProcessors());
+  }
+
+  /**
+   * Parse a file of patches.
+   * @param path Path of the file
+   * @param threads Maximum number of chunks parsed at the same time
+   * @return Patches in the order of the file
+   * @throws IOException If the file can't be read
+   * @throws PatchFormatException If the file is malformed
+   */
+  public static List<Patch> parse(Path path, int threads) throws IOException {
+    Objects.requireNonNull(path);
+    try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      final long size = channel.size();
+      if (size > Integer.MAX_VALUE) throw new IOException("The file of patches is too large: " + path);
+      return parse(channel.map(FileChannel.MapMode.READ_ONLY, 0, size), threads);
+    }
+  }
+
+  /**
+   * Parse the bytes of a file of patches.
+   * @param buffer Bytes between the position and the limit of the buffer, left unchanged
+   * @param threads Maximum number of chunks parsed at the same time
+   * @return Patches in the order of the bytes
+   * @throws PatchFormatException If the bytes are malformed
+   * @throws InterruptedIOException If the thread is interrupted while waiting for the chunks
+   */
+  public static List<Patch> parse(ByteBuffer buffer, int threads) throws IOException {
+    Objects.requireNonNull(buffer);
+    if (threads <= 0) throw new IllegalArgumentException("threads should be > 0.");
+    final int start = buffer.position();
+    final int end = buffer.limit();
+    final int chunks = Math.max(1, Math.min(threads, (end - start) / CHUNK));
+    if (chunks == 1) return new Reader(buffer.slice(start, end - start)).patches();
+
+    // Cut the bytes after an empty line, where a new patch can start
+    final var bounds = new ArrayList<Integer>();
+    bounds.add(start);
+    for (int i = 1; i < chunks; i++) {
+      final int bound = boundary(buffer, start + (int) ((long) (end - start) * i / chunks), end);
+      if (bound > bounds.get(bounds.size() - 1) && bound < end) bounds.add(bound);
+    }
+    bounds.add(end);
+    final var readers = new ArrayList<Reader>(bounds.size() - 1);
+    final var tasks = new ArrayList<Callable<List<Patch>>>(bounds.size() - 1);
+    for (int i = 0; i + 1 < bounds.size(); i++) {
+      final var reader = new Reader(buffer.slice(bounds.get(i), bounds.get(i + 1) - bounds.get(i)));
+      readers.add(reader);
+      tasks.add(reader::patches);
+    }
+
+    final var executor = Executors.newFixedThreadPool(Math.min(threads, tasks.size()));
+    try {
+      final var patches = new ArrayList<Patch>();
+      int lines = 0;
+      int chunk = 0;
+      for (var task : executor.invokeAll(tasks)) {
+        try {
+          patches.addAll(task.get());
+        } catch (ExecutionException e) {
+          // The chunks before were parsed, so their number of lines is known
+          if (e.getCause() instanceof PatchFormatException error) throw error.shift(lines);
+          throw new IllegalStateException("A chunk of patches failed.", e.getCause());
+        }
+        lines += readers.get(chunk++).line;
+      }
+      return patches;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while parsing patches.");
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * Find the start of the line following the first empty line after a position.
+   * @param buffer The bytes
+   * @param from Position to search from, > 0
+   * @param end End of the bytes
+   * @return Position after the empty line, or end if there is none
+   */
+  private static int boundary(ByteBuffer buffer, int from, int end) {
+    // A '\n' always ends a line, even after a '\r'
+    int position = from;
+    while (position < end && buffer.get(position - 1) != '\n') position++;
+    while (position < end) {
+      final byte first = buffer.get(position);
+      if (first == '\n') return position + 1;
+      if (first == '\r') {
+        return position + 1 < end && buffer.get(position + 1) == '\n' ? position + 2 : position + 1;
+      }
+      while (position < end && buffer.get(position++) != '\n') { }
+    }
+    return end;
+  }
+
+  /**
+   * Cursor reading the patches of a chunk.
+   */
+  private static final class Reader {
+    private final ByteBuffer buffer;
+    private final int end;
+    private int position;
+    /** Number of lines ended before the position. */
+    private int line;
+    private int lineStart;
+    /** Lines of the shape being read, reused between patches. */
+    private long[] rows = new long[8];
+
+    /**
+     * Create a cursor at the start of a chunk.
+     * @param buffer Bytes of the chunk, from 0 to its limit
+     */
+    Reader(ByteBuffer buffer) {
+      this.buffer = buffer;
+      end = buffer.limit();
+    }
+
+    /**
+     * Read every patch of the chunk.
+     * @return Patches in order
+     * @throws PatchFormatException If the chunk is malformed
+     */
+    List<Patch> patches() throws PatchFormatException {
+      final var patches = new ArrayList<Patch>();
+      for (var patch = next(); patch != null; patch = next()) {
+        patches.add(patch);
+      }
+      return patches;
+    }
+
+    /**
+     * Read the next patch.
+     * @return The patch, or null at the end of the chunk
+     * @throws PatchFormatException If the patch is malformed
+     */
+    private Patch next() throws PatchFormatException {
+      while (position < end && atLineEnd()) {
+        nextLine();
+      }
+      if (position == end) return null;
+
+      final int headerLine = line;
+      final int timeColumn = column();
+      final int timeCost = number();
+      separator();
+      final int buttonColumn = column();
+      final int buttonCost = number();
+      separator();
+      final int incomeColumn = column();
+      final int buttonIncome = number();
+      if (!atLineEnd() && buffer.get(position) != ' ') throw error("expected the end of the line");
+      // Anything after the costs is ignored
+      while (!atLineEnd()) {
+        position++;
+      }
+      nextLine();
+
+      int width = -1;
+      int height = 0;
+      while (position < end && !atLineEnd()) {
+        long row = 0;
+        int x = 0;
+        for (; !atLineEnd(); x++, position++) {
+          if (width < 0 && x == PatchShape.MAX_WIDTH) {
+            throw error("the shape should not be wider than " + PatchShape.MAX_WIDTH + " squares");
+          }
+          if ((width < 0 || x < width) && buffer.get(position) == '#') row |= 1L << x;
+        }
+        if (width < 0) width = x;
+        if (x < width) throw error("expected " + width + " squares, as on the first line of the shape");
+        if (height == rows.length) rows = Arrays.copyOf(rows, height * 2);
+        rows[height++] = row;
+        nextLine();
+      }
+      if (height == 0) throw error("expected the shape of the patch");
+
+      if (timeCost < 0) throw new PatchFormatException(headerLine + 1, timeColumn, "the time cost should be >= 0");
+      if (buttonCost < 0) throw new PatchFormatException(headerLine + 1, buttonColumn, "the button cost should be >= 0");
+      if (buttonIncome < 0) throw new PatchFormatException(headerLine + 1, incomeColumn, "the button income should be >= 0");
+      return new Patch(timeCost, buttonCost, buttonIncome, PatchShape.ofRows(width, Arrays.copyOf(rows, height)));
+    }
+
+    /**
+     * Read a number with an optional sign, as Integer.parseInt.
+     * @return The number
+     * @throws PatchFormatException If there is no number or it does not fit an int
+     */
+    private int number() throws PatchFormatException {
+      final int start = position;
+      final boolean negative = position < end && buffer.get(position) == '-';
+      if (negative || position < end && buffer.get(position) == '+') position++;
+      if (position == end || !isDigit(buffer.get(position))) throw error("expected a number");
+      long value = 0;
+      while (position < end && isDigit(buffer.get(position))) {
+        value = value * 10 + buffer.get(position) - '0';
+        if (value > (long) Integer.MAX_VALUE + 1) {
+          position = start;
+          throw error("the number is too large");
+        }
+        position++;
+      }
+      if (!negative && value > Integer.MAX_VALUE) {
+        position = start;
+        throw error("the number is too large");
+      }
+      return (int) (negative ? -value : value);
+    }
+
+    /**
+     * Read the space between two numbers.
+     * @throws PatchFormatException If there is no space
+     */
+    private void separator() throws PatchFormatException {
+      if (atLineEnd()) throw error("expected 3 numbers : time cost, button cost and button income");
+      if (buffer.get(position) != ' ') throw error("expected a space");
+      position++;
+    }
+
+    /**
+     * Is the position at the end of a line.
+     * @return True at a line break or at the end of the chunk
+     */
+    private boolean atLineEnd() {
+      if (position == end) return true;
+      final byte b = buffer.get(position);
+      return b == '\n' || b == '\r';
+    }
+
+    /**
+     * Move after the line break at the position, if there is one.
+     */
+    private void nextLine() {
+      if (position == end) return;
+      if (buffer.get(position++) == '\r' && position < end && buffer.get(position) == '\n') position++;
+      line++;
+      lineStart = position;
+    }
+
+    /**
+     * Column of the position.
+     * @return Column in bytes, from 1
+     */
+    private int column() {
+      return position - lineStart + 1;
+    }
+
+    /**
+     * Error at the position.
+     * @param reason Description of the error
+     * @return The exception to throw
+     */
+    private PatchFormatException error(String reason) {
+      return new PatchFormatException(line + 1, column(), reason);
+    }
+
+    /**
+     * Is a byte an ASCII digit.
+     * @param b The byte
+     * @return True for '0' to '9'
+     */
+    private static boolean isDigit(byte b) {
+      return b >= '0' && b <= '9';
+    }
+  }
+
+  private PatchParser() { }
+}
@@ -13,14 +13,16 @@ public final class PatchSetter {
   
   /**
    * Create a new patch setter.
+   * @param game The game containing the patch
    * @param board Where to place the patch
    * @param patchNum Number of the patch in the game list
    */
-  public PatchSetter(QuiltBoard board, int patchNum) {
+  public PatchSetter(Game game, QuiltBoard board, int patchNum) {
+    Objects.requireNonNull(game);
     Objects.requireNonNull(board);
     this.board = board;
     this.patchNum = patchNum;
-    this.patch = Game.instance().getPatch(patchNum);
+    this.patch = game.getPatch(patchNum);
     this.pos = null;
   }
   
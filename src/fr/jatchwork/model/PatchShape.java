@@ -0,0 +1,243 @@
+package fr.jatchwork.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Immutable shape of a patch, packed as one bit per square.
+ * The line y is stored in a long, the square (x, y) being its bit x.
+ */
+public final class PatchShape {
+  /** Maximum width of a shape, one line being stored in a long. */
+  public static final int MAX_WIDTH = Long.SIZE;
+
+  /**
+   * Transform a text to a shape. Use a '#' to fill a square and '.' to let a square empty.
+   * The width of the shape is the length of the first line, longer lines are truncated.
+   * @param text Shape of the patch
+   * @return Packed shape
+   */
+  public static PatchShape of(String text) {
+    Objects.requireNonNull(text);
+    final var lines = text.split("\n");
+    final int width = lines[0].length();
+    final var rows = new long[lines.length];
+    for (int y = 0; y < lines.length; y++) {
+      if (lines[y].length() < width) {
+        throw new IllegalArgumentException("shape should have all lines of the same size.");
+      }
+      for (int x = 0; x < width; x++) {
+        if (lines[y].charAt(x) == '#') rows[y] |= 1L << x;
+      }
+    }
+    return new PatchShape(width, lines.length, rows);
+  }
+
+  /**
+   * Transform a 2D array to a shape.
+   * @param shape Shape of the patch, indexed by column then line
+   * @return Packed shape
+   */
+  public static PatchShape of(boolean[][] shape) {
+    Objects.requireNonNull(shape);
+    if (shape.length == 0 || shape[0].length == 0)
+      throw new IllegalArgumentException("shape should not be empty.");
+    final int height = shape[0].length;
+    final var rows = new long[height];
+    for (int x = 0; x < shape.length; x++) {
+      if (shape[x].length != height)
+        throw new IllegalArgumentException("shape should have all lines of the same size.");
+      for (int y = 0; y < height; y++) {
+        if (shape[x][y]) rows[y] |= 1L << x;
+      }
+    }
+    return new PatchShape(shape.length, height, rows);
+  }
+
+  /**
+   * Transform a matrix to a shape.
+   * @param shape Shape of the patch, indexed by column then line
+   * @return Packed shape
+   */
+  public static PatchShape of(List<List<Boolean>> shape) {
+    Objects.requireNonNull(shape);
+    if (shape.size() == 0 || shape.get(0).size() == 0)
+      throw new IllegalArgumentException("shape should not be empty.");
+    final int height = shape.get(0).size();
+    final var rows = new long[height];
+    for (int x = 0; x < shape.size(); x++) {
+      final var column = shape.get(x);
+      if (column.size() != height)
+        throw new IllegalArgumentException("shape should have all lines of the same size.");
+      for (int y = 0; y < height; y++) {
+        if (column.get(y)) rows[y] |= 1L << x;
+      }
+    }
+    return new PatchShape(shape.size(), height, rows);
+  }
+
+  private final int width;
+  private final int height;
+  private final long[] rows;
+  private final int hash;
+
+  /**
+   * Create a shape from the bits of its lines, taking ownership of them.
+   * @param width Number of columns
+   * @param rows Bits of each line, the bit x being set if the square (x, y) is filled
+   * @return New shape
+   */
+  static PatchShape ofRows(int width, long[] rows) {
+    Objects.requireNonNull(rows);
+    final long outside = width >= Long.SIZE ? 0 : -1L << width;
+    for (long row : rows) {
+      if ((row & outside) != 0) throw new IllegalArgumentException("rows should not be wider than the shape.");
+    }
+    return new PatchShape(width, rows.length, rows);
+  }
+
+  /**
+   * Create a new shape, taking ownership of the rows.
+   * @param width Number of columns
+   * @param height Number of lines
+   * @param rows Bits of each line
+   */
+  private PatchShape(int width, int height, long[] rows) {
+    if (width <= 0 || height <= 0)
+      throw new IllegalArgumentException("shape should not be empty.");
+    if (width > MAX_WIDTH)
+      throw new IllegalArgumentException("shape should not be wider than " + MAX_WIDTH + ".");
+    this.width = width;
+    this.height = height;
+    this.rows = rows;
+    hash = 31 * width + Arrays.hashCode(rows);
+  }
+
+  /**
+   * The horizontal size of the shape.
+   * @return Width
+   */
+  public int width() { return width; }
+
+  /**
+   * The vertical size of the shape.
+   * @return Height
+   */
+  public int height() { return height; }
+
+  /**
+   * Return true if a square is filled. Squares outside of the shape are empty.
+   * @param x Horizontal position
+   * @param y Vertical position
+   * @return True if filled, false otherwise
+   */
+  public boolean get(int x, int y) {
+    if (x < 0 || y < 0 || x >= width || y >= height)
+      return false;
+    return (rows[y] >>> x & 1) != 0;
+  }
+
+  /**
+   * Bits of a line, the bit x being set if the square (x, y) is filled.
+   * @param y Vertical position, between 0 and height - 1
+   * @return Packed line
+   */
+  public long row(int y) { return rows[y]; }
+
+  /**
+   * Number of filled squares.
+   * @return Count of squares
+   */
+  public int count() {
+    int count = 0;
+    for (long row : rows) {
+      count += Long.bitCount(row);
+    }
+    return count;
+  }
+
+  /**
+   * Returns a 90 degree clockwise rotation of this shape.
+   * @return The rotated shape
+   */
+  public PatchShape rotate() {
+    final var result = new long[width];
+    for (int y = 0; y < height; y++) {
+      final long row = rows[y];
+      final long bit = 1L << (height - y - 1);
+      for (int x = 0; x < width; x++) {
+        if ((row >>> x & 1) != 0) result[x] |= bit;
+      }
+    }
+    return new PatchShape(height, width, result);
+  }
+
+  /**
+   * Returns a horizontally flipped version of this shape (lines in reverse order).
+   * @return The flipped shape
+   */
+  public PatchShape flipHorizontally() {
+    final var result = new long[height];
+    for (int y = 0; y < height; y++) {
+      result[y] = rows[height - y - 1];
+    }
+    return new PatchShape(width, height, result);
+  }
+
+  /**
+   * Returns a vertically flipped version of this shape (columns in reverse order).
+   * @return The flipped shape
+   */
+  public PatchShape flipVertically() {
+    final var result = new long[height];
+    for (int y = 0; y < height; y++) {
+      result[y] = Long.reverse(rows[y]) >>> (MAX_WIDTH - width);
+    }
+    return new PatchShape(width, height, result);
+  }
+
+  /**
+   * The shape as an unmodifiable matrix, indexed by column then line.
+   * @return Matrix of squares
+   */
+  public List<List<Boolean>> toList() {
+    final var result = new ArrayList<List<Boolean>>(width);
+    for (int x = 0; x < width; x++) {
+      final var column = new ArrayList<Boolean>(height);
+      for (int y = 0; y < height; y++) {
+        column.add(get(x, y));
+      }
+      result.add(Collections.unmodifiableList(column));
+    }
+    return Collections.unmodifiableList(result);
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    return obj instanceof PatchShape shape
+        && hash == shape.hash
+        && width == shape.width
+        && height == shape.height
+        && Arrays.equals(rows, shape.rows);
+  }
+
+  @Override
+  public int hashCode() {
+    return hash;
+  }
+
+  @Override
+  public String toString() {
+    final var builder = new StringBuilder();
+    for (int y = 0; y < height; y++) {
+      for (int x = 0; x < width; x++) {
+        builder.append(get(x, y) ? '#' : '.');
+      }
+      builder.append('\n');
+    }
+    return builder.toString();
+  }
+}
@@ -0,0 +1,221 @@
+package fr.jatchwork.model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Choose where to place a patch on a quilt board, trying every orientation and every anchor.
+ * A placement is scored on the board it leaves : sides touching the border or other patches,
+ * empty squares it isolates, and progress of the most filled bonus square.
+ * The weights were chosen by self-play : isolated squares cost little, leather patches filling them.
+ * The board is read one long per line, so scoring a placement costs a few bit operations per line
+ * of the patch, and choosing among all placements takes a few microseconds.
+ */
+public final class PlacementEngine {
+  /** Weight of each side of the patch touching the border or another patch. */
+  private static final double CONTACT = 1;
+  /** Weight of each empty square surrounded by filled squares. */
+  private static final double ISOLATED = -0.5;
+  /** Weight of each filled square of the most filled bonus square, while the bonus is not owned. */
+  private static final double BONUS = 0.25;
+
+  /**
+   * A scored placement of a patch.
+   * @param code Transform code of the orientation
+   * @param placements Placements of the patch in this orientation
+   * @param anchor Index of the anchor
+   * @param score Quality of the board after the placement, higher is better
+   */
+  public record Placement(int code, Placements placements, int anchor, double score) {
+    /**
+     * Create a scored placement.
+     * @param code Transform code of the orientation
+     * @param placements Placements of the patch in this orientation
+     * @param anchor Index of the anchor
+     * @param score Quality of the board after the placement, higher is better
+     */
+    public Placement {
+      Objects.requireNonNull(placements);
+      Objects.checkIndex(anchor, placements.count());
+    }
+
+    /**
+     * The patch in its placed orientation.
+     * @return Patch
+     */
+    public Patch patch() { return placements.patch(); }
+
+    /**
+     * Horizontal position of the patch.
+     * @return X position
+     */
+    public int x() { return placements.x(anchor); }
+
+    /**
+     * Vertical position of the patch.
+     * @return Y position
+     */
+    public int y() { return placements.y(anchor); }
+  }
+
+  /**
+   * Find the best placement of a patch.
+   * @param board The quilt board, not modified
+   * @param patch The patch to place, in any orientation
+   * @return The best placement, or null if the patch does not fit
+   */
+  public static Placement best(QuiltBoard board, Patch patch) {
+    final List<Placement> best = best(board, patch, 1);
+    return best.isEmpty() ? null : best.get(0);
+  }
+
+  /**
+   * Find the best placements of a patch.
+   * @param board The quilt board, not modified
+   * @param patch The patch to place, in any orientation
+   * @param count Maximum number of placements
+   * @return The best placements, from the best one, empty if the patch does not fit
+   */
+  public static List<Placement> best(QuiltBoard board, Patch patch, int count) {
+    Objects.requireNonNull(board);
+    Objects.requireNonNull(patch);
+    if (count <= 0) throw new IllegalArgumentException("count should be > 0.");
+    return search(board, patch, count, false);
+  }
+
+  /**
+   * Find the best placement of a patch completing a bonus square.
+   * @param board The quilt board, not modified
+   * @param patch The patch to place, in any orientation
+   * @return The best placement filling a whole bonus square, or null if there is none
+   *         or if the board already has a bonus square
+   */
+  public static Placement bestCompletingBonus(QuiltBoard board, Patch patch) {
+    Objects.requireNonNull(board);
+    Objects.requireNonNull(patch);
+    final List<Placement> best = search(board, patch, 1, true);
+    return best.isEmpty() ? null : best.get(0);
+  }
+
+  /**
+   * Score every placement of a patch and keep the best ones.
+   * @param board The quilt board, not modified
+   * @param patch The patch to place, in any orientation
+   * @param count Maximum number of placements
+   * @param completeBonus Keep only the placements filling a whole bonus square
+   * @return The best placements, from the best one
+   */
+  private static List<Placement> search(QuiltBoard board, Patch patch, int count, boolean completeBonus) {
+    final int size = board.size();
+    final long full = size == Long.SIZE ? -1L : (1L << size) - 1;
+    final long last = 1L << (size - 1);
+
+    // Lines of the board, between two filled lines standing for the border
+    final var lines = new long[size + 2];
+    lines[0] = lines[size + 1] = full;
+    for (int y = 0; y < size; y++) {
+      lines[y + 1] = board.line(y);
+    }
+    final var isolated = new int[size + 2];
+    for (int y = 1; y <= size; y++) {
+      isolated[y] = isolated(lines, y, full);
+    }
+
+    // Filled squares of each bonus square, by first line then first column
+    final int bonusSize = board.bonusSize();
+    final int windows = board.fillBonus() || bonusSize > size ? 0 : size - bonusSize + 1;
+    final long window = bonusSize == Long.SIZE ? -1L : (1L << bonusSize) - 1;
+    final var filled = new int[windows * windows];
+    for (int wy = 0; wy < windows; wy++) {
+      for (int wx = 0; wx < windows; wx++) {
+        for (int y = wy; y < wy + bonusSize; y++) {
+          filled[wy * windows + wx] += Long.bitCount(lines[y + 1] & window << wx);
+        }
+      }
+    }
+
+    final Orientations orientations = patch.orientations();
+    final var best = new ArrayList<Placement>(count + 1);
+    for (int i = 0; i < orientations.count(); i++) {
+      final Placements placements = orientations.placements(i, size);
+      final long[] rows = placements.rows();
+      for (int anchor = 0; anchor < placements.count(); anchor++) {
+        final int first = placements.firstLine(anchor) + 1;
+        final int column = placements.firstColumn(anchor);
+
+        // Fit and contacts, on the board before the placement
+        int contact = 0;
+        boolean fit = true;
+        for (int r = 0; r < rows.length; r++) {
+          final long mask = rows[r] << column;
+          final long line = lines[first + r];
+          if ((line & mask) != 0) {
+            fit = false;
+            break;
+          }
+          contact += Long.bitCount(mask & (line << 1 | 1))
+              + Long.bitCount(mask & (line >>> 1 | last))
+              + Long.bitCount(mask & lines[first + r - 1])
+              + Long.bitCount(mask & lines[first + r + 1]);
+        }
+        if (!fit) continue;
+
+        // Isolated squares can only change on the lines of the patch and next to them
+        for (int r = 0; r < rows.length; r++) {
+          lines[first + r] |= rows[r] << column;
+        }
+        int isolatedDelta = 0;
+        final int from = Math.max(1, first - 1);
+        final int to = Math.min(size, first + rows.length);
+        for (int y = from; y <= to; y++) {
+          isolatedDelta += isolated(lines, y, full) - isolated[y];
+        }
+        for (int r = 0; r < rows.length; r++) {
+          lines[first + r] &= ~(rows[r] << column);
+        }
+
+        // Most filled bonus square after the placement
+        int bonus = 0;
+        for (int wy = 0; wy < windows; wy++) {
+          for (int wx = 0; wx < windows; wx++) {
+            int squares = filled[wy * windows + wx];
+            for (int r = 0; r < rows.length; r++) {
+              final int y = first - 1 + r;
+              if (y >= wy && y < wy + bonusSize) {
+                squares += Long.bitCount(rows[r] << column & window << wx);
+              }
+            }
+            bonus = Math.max(bonus, squares);
+          }
+        }
+        if (completeBonus && bonus < bonusSize * bonusSize) continue;
+
+        final double score = CONTACT * contact + ISOLATED * isolatedDelta + BONUS * bonus;
+        if (best.size() == count && score <= best.get(count - 1).score()) continue;
+        // Insert by decreasing score, keeping the first placement found on ties
+        int j = best.size();
+        while (j > 0 && best.get(j - 1).score() < score) {
+          j--;
+        }
+        best.add(j, new Placement(orientations.code(i), placements, anchor, score));
+        if (best.size() > count) best.remove(count);
+      }
+    }
+    return best;
+  }
+
+  /**
+   * Count the empty squares of a line whose four neighbours are filled or outside the board.
+   * @param lines Lines of the board, between two filled lines
+   * @param y Index of the line in the array
+   * @param full Bits of a full line
+   * @return Number of isolated squares
+   */
+  private static int isolated(long[] lines, int y, long full) {
+    final long empty = ~lines[y] & full;
+    return Long.bitCount(empty & ~(empty << 1) & ~(empty >>> 1) & lines[y - 1] & lines[y + 1]);
+  }
+
+  private PlacementEngine() { }
+}
@@ -0,0 +1,147 @@
+package fr.jatchwork.model;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Every legal position of a patch on an empty quilt board of a given size,
+ * with the mask of the occupied squares for each of them.
+ * Anchors are indexed column by column, the same order used by {@link QuiltBoard#findSpace(Patch)}.
+ * {@link PlacementEngine} chooses the best of them.
+ */
+public final class Placements {
+  private final Patch patch;
+  private final int boardSize;
+  private final int words;
+  private final int originX;
+  private final int originY;
+  private final int spanX;
+  private final int spanY;
+  private final int top;
+  private final int height;
+  private final long[] masks;
+  /** Occupied lines of the patch, the first occupied column being the bit 0. */
+  private final long[] rows;
+
+  /**
+   * Compute all placements of a patch.
+   * @param patch The patch, in its final orientation
+   * @param boardSize Width and height of the quilt board
+   */
+  Placements(Patch patch, int boardSize) {
+    this.patch = Objects.requireNonNull(patch);
+    this.boardSize = boardSize;
+    words = (boardSize * boardSize + 63) >>> 6;
+
+    final var mask = new PatchMask(patch, boardSize);
+    if (mask.count() == 0 || mask.width() > boardSize || mask.height() > boardSize) {
+      // No square to place, or patch too big for the board
+      originX = originY = spanX = spanY = top = height = 0;
+      masks = new long[0];
+      rows = new long[0];
+      return;
+    }
+    originX = -mask.offsetX();
+    originY = -mask.offsetY();
+    spanX = boardSize - mask.width() + 1;
+    spanY = boardSize - mask.height() + 1;
+    top = mask.offsetY();
+    height = mask.height();
+    masks = new long[spanX * spanY * words];
+    final var board = new long[words];
+    for (int i = 0; i < count(); i++) {
+      mask.fill(board, x(i), y(i));
+      System.arraycopy(board, 0, masks, i * words, words);
+      Arrays.fill(board, 0);
+    }
+    rows = new long[height];
+    for (int y = 0; y < height; y++) {
+      rows[y] = patch.tiles().row(top + y) >>> mask.offsetX();
+    }
+  }
+
+  /**
+   * The placed patch.
+   * @return Patch
+   */
+  public Patch patch() { return patch; }
+
+  /**
+   * Size of the quilt board the placements were computed for.
+   * @return Width and height of the board
+   */
+  public int boardSize() { return boardSize; }
+
+  /**
+   * Number of legal anchors on an empty board.
+   * @return Count of anchors
+   */
+  public int count() { return spanX * spanY; }
+
+  /**
+   * Horizontal position of an anchor.
+   * @param i Index of the anchor
+   * @return X position of the patch
+   */
+  public int x(int i) { return originX + i / spanY; }
+
+  /**
+   * Vertical position of an anchor.
+   * @param i Index of the anchor
+   * @return Y position of the patch
+   */
+  public int y(int i) { return originY + i % spanY; }
+
+  /**
+   * Index of the anchor at given position.
+   * @param x Horizontal position of the patch
+   * @param y Vertical position of the patch
+   * @return Index of the anchor, or -1 if the patch does not stay inside the board
+   */
+  public int indexOf(int x, int y) {
+    final int ix = x - originX;
+    final int iy = y - originY;
+    if (ix < 0 || iy < 0 || ix >= spanX || iy >= spanY) return -1;
+    return ix * spanY + iy;
+  }
+
+  /**
+   * First line of the board covered by the patch at an anchor.
+   * @param i Index of the anchor
+   * @return Vertical position of the first occupied square
+   */
+  public int firstLine(int i) { return y(i) + top; }
+
+  /**
+   * Last line of the board covered by the patch at an anchor.
+   * @param i Index of the anchor
+   * @return Vertical position of the last occupied square
+   */
+  public int lastLine(int i) { return y(i) + top + height - 1; }
+
+  /**
+   * First column of the board covered by the patch at an anchor.
+   * @param i Index of the anchor
+   * @return Horizontal position of the first occupied square
+   */
+  int firstColumn(int i) { return i / spanY; }
+
+  /**
+   * Occupied lines of the patch, to shift by {@link #firstColumn(int)} and to place
+   * from {@link #firstLine(int)}.
+   * @return Bits of each line, must not be modified
+   */
+  long[] rows() { return rows; }
+
+  /**
+   * Number of longs used by the mask of one anchor.
+   * @return Number of words
+   */
+  int words() { return words; }
+
+  /**
+   * Masks of all anchors, one after the other.
+   * @return Packed masks, must not be modified
+   */
+  long[] masks() { return masks; }
+}
@@ -6,6 +6,7 @@ import java.util.Objects;
  * A player and all his data.
  */
 public final class Player {  
+  private final Game game;
   private final int num;
   private final QuiltBoard board;
   private int buttonCount;
@@ -15,16 +16,24 @@ public final class Player {
 
   /**
    * Create a new player
+   * @param game The game the player belongs to
    * @param num His number, only used for display
    * @param quiltBoardSize Width and height of his quilt board
    * @param buttonCount Number of starting buttons
    */
-  public Player(int num, int quiltBoardSize, int buttonCount) {
+  Player(Game game, int num, int quiltBoardSize, int buttonCount) {
+    this.game = Objects.requireNonNull(game);
     this.num = num;
     board = new QuiltBoard(quiltBoardSize);
     this.buttonCount = buttonCount;
   }
   
+  /**
+   * The game the player belongs to.
+   * @return Owning game
+   */
+  public Game game() { return game; }
+
   /**
    * Number of the player, used only for display. This is not an identifier.
    * @return Numero
@@ -70,7 +79,6 @@ public final class Player {
    * End the turn of a player.
    */
   public void endTurn() {
-    var game = Game.instance();
     Player player;
     int max = 0;
     // Get the more advanced player
@@ -99,13 +107,13 @@ public final class Player {
   }
   
   /**
-   * Return true if the patch can be placed somewhere on the quilt board.
+   * Return true if the patch can be placed somewhere on the quilt board, in any orientation.
    * @param patch Number of the patch to test
    * @return True if there is available space, false otherwise.
    */
   public boolean canPlacePatch(Patch patch) {
     Objects.requireNonNull(patch);
-    return board.findSpace(patch) != null;
+    return PlacementEngine.best(board, patch) != null;
   }
 
   /**
@@ -117,30 +125,29 @@ public final class Player {
   public void buyPatch(int numPatch, Patch patch, Vector pos) {
     Objects.requireNonNull(patch);
     Objects.requireNonNull(pos);
-    Game.instance().buyPatch(numPatch);
+    game.buyPatch(numPatch);
     buyPatch(patch, pos);
   }
 
   /**
-   * Buy a patch and place it automatically on the quiltboard.
+   * Buy a patch and place it automatically on the quiltboard, at its best placement.
    * @param numPatch Patch to buy and place
    */
   public void buyPatch(int numPatch) {
-    Patch patch = Game.instance().getPatch(numPatch);
-    Vector coord = board.findSpace(patch);
-    if (coord == null) throw new RuntimeException("No place available to place patch.");
-    buyPatch(numPatch, Game.instance().getPatch(numPatch), coord);
+    final var placement = PlacementEngine.best(board, game.getPatch(numPatch));
+    if (placement == null) throw new RuntimeException("No place available to place patch.");
+    buyPatch(numPatch, placement.patch(), new Vector(placement.x(), placement.y()));
   }
 
   /**
-   * Buy a patch and place it automatically on the quilt board.
+   * Buy a patch and place it automatically on the quilt board, at its best placement.
    * @param patch Patch to buy
    */
   public void buyPatch(Patch patch) {
     Objects.requireNonNull(patch);
-    Vector coord = board.findSpace(patch);
-    if (coord == null) throw new RuntimeException("No place available to place patch.");
-    buyPatch(patch, coord);
+    final var placement = PlacementEngine.best(board, patch);
+    if (placement == null) throw new RuntimeException("No place available to place patch.");
+    buyPatch(placement.patch(), new Vector(placement.x(), placement.y()));
   }
 
   /**
@@ -160,6 +167,38 @@ public final class Player {
     move(patch.timeCost());
   }
 
+  /**
+   * Buy a patch and place it on the quilt board, at a precomputed anchor.
+   * @param placements Placements of the patch to place
+   * @param anchor Index of the anchor
+   */
+  public void buyPatch(Placements placements, int anchor) {
+    Objects.requireNonNull(placements);
+    board.add(placements, anchor);
+    if (!bonus && board.fillBonus()) {
+      bonus = game.getBonusFull();
+    }
+
+    final Patch patch = placements.patch();
+    buttonCount -= patch.buttonCost();
+    if (buttonCount < 0) throw new RuntimeException("Player bought an overpriced patch.");
+    move(patch.timeCost());
+  }
+
+  /**
+   * Restore the data of the player saved before a move.
+   * @param buttonCount Number of buttons
+   * @param position Position on the time board
+   * @param leatherCount Number of leather patches to place
+   * @param bonus Does the player have the 7x7 bonus
+   */
+  void restore(int buttonCount, int position, int leatherCount, boolean bonus) {
+    this.buttonCount = buttonCount;
+    this.position = position;
+    this.leatherCount = leatherCount;
+    this.bonus = bonus;
+  }
+
   /**
    * Add a patch to the quilt board.
    * @param patch To add to the quilt board
@@ -170,8 +209,8 @@ public final class Player {
     Objects.requireNonNull(patch);
     Objects.requireNonNull(pos);
     board.add(patch, pos.x(), pos.y());
-    if (board.fillBonus()) {
-      bonus = Game.instance().getBonusFull();
+    if (!bonus && board.fillBonus()) {
+      bonus = game.getBonusFull();
     }
   }
 
@@ -211,7 +250,7 @@ public final class Player {
    * @return The real number of movement made by the player.
    */
   private int move(int tileCount) {
-    var timeBoard = Game.instance().timeBoard();
+    var timeBoard = game.timeBoard();
 
     // Button incomes
     var incomes = timeBoard.containsIncome(position, position + tileCount);
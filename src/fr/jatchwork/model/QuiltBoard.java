@@ -11,28 +11,89 @@ import java.util.Objects;
 public final class QuiltBoard {
   /** Default size of a quilt board. */
   public static final int SIZE = 9;
-  private static final int BONUS_SIZE = 7;
+  /** Default size of the square to fill to get the bonus. */
+  public static final int BONUS_SIZE = 7;
+  /** Maximum size of a quilt board, one line being stored in a long. */
+  public static final int MAX_SIZE = Long.SIZE;
   
-  /** How is currently filled the board. */
-  private final boolean[][] board;
+  private final int size;
+  private final int bonusSize;
+  /** How is currently filled the board, one bit per square (bit y * size + x). */
+  private final long[] board;
   private int remainingSpace;
   private int buttonIncome;
   private final ArrayList<PatchCoord> patches = new ArrayList<>();
+  /**
+   * For each line, the bit x is set if the bonusSize squares starting at x are all filled.
+   * A bonus square is filled when bonusSize consecutive lines share a bit.
+   */
+  private final long[] runs;
+  private boolean bonus;
+  /** Xor of the Zobrist keys of the filled squares. */
+  private long hash;
+  /** Mask of the last patch tested, to avoid computing it again. */
+  private PatchMask mask;
 
   /**
-   * Create a new quilt board.
+   * Create a new quilt board, with the default bonus size.
    * @param size Number of column and line
    */
   public QuiltBoard(int size) {
-    board = new boolean[size][size];
+    this(size, BONUS_SIZE);
+  }
+
+  /**
+   * Create a new quilt board.
+   * @param size Number of column and line
+   * @param bonusSize Width and height of the square to fill to get the bonus
+   */
+  public QuiltBoard(int size, int bonusSize) {
+    if (size <= 0 || size > MAX_SIZE)
+      throw new IllegalArgumentException("size should be > 0 and <= " + MAX_SIZE + ".");
+    if (bonusSize <= 0) throw new IllegalArgumentException("bonusSize should be > 0.");
+    this.size = size;
+    this.bonusSize = bonusSize;
+    board = new long[(size * size + 63) >>> 6];
+    runs = new long[size];
     remainingSpace = size * size;
   }
 
+  /**
+   * Create a copy of a quilt board.
+   * @param board Board to copy
+   */
+  private QuiltBoard(QuiltBoard board) {
+    size = board.size;
+    bonusSize = board.bonusSize;
+    this.board = board.board.clone();
+    runs = board.runs.clone();
+    remainingSpace = board.remainingSpace;
+    buttonIncome = board.buttonIncome;
+    bonus = board.bonus;
+    hash = board.hash;
+    patches.addAll(board.patches);
+    mask = board.mask;
+  }
+
+  /**
+   * Create an independent copy of this quilt board.
+   * @return New quilt board
+   */
+  public QuiltBoard copy() {
+    return new QuiltBoard(this);
+  }
+
   /**
    * Width and height of the quilt board.
    * @return Size of the board
    */
-  public int size() { return board.length; }
+  public int size() { return size; }
+
+  /**
+   * Width and height of the square to fill to get the bonus.
+   * @return Size of the bonus square
+   */
+  public int bonusSize() { return bonusSize; }
   
   /**
    * How many empty squares remains
@@ -54,18 +115,75 @@ public final class QuiltBoard {
    */
   public void add(Patch patch, int x, int y) {
     Objects.requireNonNull(patch);
-    if (!fit(patch, x, y)) throw new RuntimeException("The patch did not fit in the quilt board.");
+    final PatchMask mask = mask(patch);
+    if (!fit(mask, x, y)) throw new RuntimeException("The patch did not fit in the quilt board.");
     patches.add(new PatchCoord(patch, new Vector(x, y)));
     buttonIncome += patch.buttonIncome();
-    for (int xp = 0; xp < patch.width(); xp++) {
-      for (int yp = 0; yp < patch.height(); yp++) {
-        if (!patch.getTile(xp, yp)) continue;
-        board[x + xp][y + yp] = true;
-        remainingSpace--;
-      }
+    hash ^= mask.fill(board, x, y);
+    remainingSpace -= mask.count();
+    if (mask.count() > 0) {
+      updateBonus(y + mask.offsetY(), y + mask.offsetY() + mask.height() - 1);
     }
   }
 
+  /**
+   * Add a patch to the quilt board, at a precomputed anchor.
+   * @param placements Placements of the patch, computed for the size of this board
+   * @param anchor Index of the anchor
+   */
+  public void add(Placements placements, int anchor) {
+    if (!fit(placements, anchor)) throw new RuntimeException("The patch did not fit in the quilt board.");
+    final Patch patch = placements.patch();
+    patches.add(new PatchCoord(patch, new Vector(placements.x(anchor), placements.y(anchor))));
+    buttonIncome += patch.buttonIncome();
+    final long[] masks = placements.masks();
+    final int words = placements.words();
+    final int offset = anchor * words;
+    int count = 0;
+    for (int i = 0; i < words; i++) {
+      board[i] |= masks[offset + i];
+      hash ^= Zobrist.squares(masks[offset + i], i << 6);
+      count += Long.bitCount(masks[offset + i]);
+    }
+    remainingSpace -= count;
+    updateBonus(placements.firstLine(anchor), placements.lastLine(anchor));
+  }
+
+  /**
+   * Remove the last patch added to the quilt board, to undo its addition.
+   * Does not allocate.
+   * @param placements Placements used to add the patch
+   * @param anchor Index of the anchor used to add the patch
+   */
+  public void removeLast(Placements placements, int anchor) {
+    Objects.requireNonNull(placements);
+    if (patches.isEmpty() || patches.get(patches.size() - 1).patch() != placements.patch()) {
+      throw new IllegalArgumentException("the patch should be the last one added.");
+    }
+    patches.remove(patches.size() - 1);
+    buttonIncome -= placements.patch().buttonIncome();
+    final long[] masks = placements.masks();
+    final int words = placements.words();
+    final int offset = anchor * words;
+    int count = 0;
+    for (int i = 0; i < words; i++) {
+      board[i] &= ~masks[offset + i];
+      hash ^= Zobrist.squares(masks[offset + i], i << 6);
+      count += Long.bitCount(masks[offset + i]);
+    }
+    remainingSpace += count;
+    if (bonusSize > size) return;
+    updateRuns(placements.firstLine(anchor), placements.lastLine(anchor));
+    if (bonus) bonus = findBonus(0, size - 1);
+  }
+
+  /**
+   * Zobrist hash of the filled squares, updated on each addition and removal.
+   * Two boards of the same size with the same filled squares have the same hash.
+   * @return Hash of the board
+   */
+  public long hash() { return hash; }
+
   /**
    * Number of button earned per button income case.
    * @return Total income
@@ -81,7 +199,7 @@ public final class QuiltBoard {
   private String line() {
     var builder = new StringBuilder();
     builder.append('|');
-    for (int i = 0; i < board.length; i++) {
+    for (int i = 0; i < size; i++) {
       builder.append('=');
     }
     builder.append("|\n");
@@ -97,18 +215,95 @@ public final class QuiltBoard {
    */
   public boolean fit(Patch patch, int x, int y) {
     Objects.requireNonNull(patch);
-    for (int xp = 0; xp < patch.width(); xp++) {
-      for (int yp = 0; yp < patch.height(); yp++) {
-        if (patch.getTile(xp, yp)
-            && (!isInside(x + xp, y + yp) || board[x + xp][y + yp])) {
-          return false;
-        }
-      }
+    return fit(mask(patch), x, y);
+  }
+
+  /**
+   * Check that a patch can be inserted at a precomputed anchor.
+   * @param placements Placements of the patch, computed for the size of this board
+   * @param anchor Index of the anchor
+   * @return True if insertion is possible, false else.
+   */
+  public boolean fit(Placements placements, int anchor) {
+    Objects.requireNonNull(placements);
+    if (placements.boardSize() != size) {
+      throw new IllegalArgumentException("placements were computed for another board size.");
+    }
+    if (anchor < 0 || anchor >= placements.count()) return false;
+    final long[] masks = placements.masks();
+    final int words = placements.words();
+    final int offset = anchor * words;
+    for (int i = 0; i < words; i++) {
+      if ((board[i] & masks[offset + i]) != 0) return false;
     }
-    // All part of the patch fit in the board
     return true;
   }
 
+  /**
+   * Check that a patch mask can be inserted at given position.
+   * @param mask What to test
+   * @param x Where horizontally
+   * @param y Where vertically
+   * @return True if insertion is possible, false else.
+   */
+  private boolean fit(PatchMask mask, int x, int y) {
+    if (mask.count() == 0) return true;
+    return mask.inside(x, y) && !mask.intersects(board, x, y);
+  }
+
+  /**
+   * Get the mask of a patch for this board.
+   * The mask of the last patch is kept, as the same patch is usually tested many times in a row.
+   * The cache is a single immutable object, so reading a board from many threads stays safe.
+   * @param patch The patch
+   * @return Its mask
+   */
+  private PatchMask mask(Patch patch) {
+    PatchMask cached = mask;
+    if (cached == null || cached.patch() != patch) {
+      cached = new PatchMask(patch, size);
+      mask = cached;
+    }
+    return cached;
+  }
+
+  /**
+   * Count the sides of a placed patch touching the border of the board or another patch.
+   * Placements with many contacts leave less holes on the board.
+   * @param placements Placements of the patch, computed for the size of this board
+   * @param anchor Index of an anchor where the patch fits
+   * @return Number of sides in contact
+   */
+  public int contact(Placements placements, int anchor) {
+    Objects.requireNonNull(placements);
+    final long[] masks = placements.masks();
+    final int words = placements.words();
+    final int offset = anchor * words;
+    int contact = 0;
+    for (int i = 0; i < words; i++) {
+      long bits = masks[offset + i];
+      while (bits != 0) {
+        final int bit = (i << 6) + Long.numberOfTrailingZeros(bits);
+        bits &= bits - 1;
+        final int x = bit % size;
+        final int y = bit / size;
+        contact += touches(x - 1, y) + touches(x + 1, y) + touches(x, y - 1) + touches(x, y + 1);
+      }
+    }
+    return contact;
+  }
+
+  /**
+   * Check if a square next to a patch is a border or a filled square.
+   * @param x Horizontal position
+   * @param y Vertical position
+   * @return 1 if the side of the patch is in contact, 0 otherwise
+   */
+  private int touches(int x, int y) {
+    if (x < 0 || y < 0 || x >= size || y >= size) return 1;
+    return isFilled(x, y) ? 1 : 0;
+  }
+
   /**
    * Get a coordinate where patch can be inserted.
    * @param patch What to place
@@ -116,9 +311,10 @@ public final class QuiltBoard {
    */
   public Vector findSpace(Patch patch) {
     Objects.requireNonNull(patch);
-    for (int x = 0; x < size(); x++) {
-      for (int y = 0; y < size(); y++) {
-        if (fit(patch, x, y)) return new Vector(x, y);
+    final PatchMask mask = mask(patch);
+    for (int x = 0; x < size; x++) {
+      for (int y = 0; y < size; y++) {
+        if (fit(mask, x, y)) return new Vector(x, y);
       }
     }
     return null;
@@ -126,30 +322,73 @@ public final class QuiltBoard {
 
   /**
    * Return true if the quilt board is eligible to 7x7 bonus.
+   * The state is updated on each addition, so this is a simple lookup.
    * @return True if eligible, false otherwise
    */
   public boolean fillBonus() {
-    for (int x = 0; x <= size() - BONUS_SIZE; x++) {
-      for (int y = 0; y <= size() - BONUS_SIZE; y++) {
-        if (fillBonus(x, y)) {
-          return true;
-        }
+    return bonus;
+  }
+
+  /**
+   * Update the bonus state after some lines have been filled.
+   * Only bonus squares crossing those lines can have been completed.
+   * @param first First modified line
+   * @param last Last modified line
+   */
+  private void updateBonus(int first, int last) {
+    if (bonusSize > size) return;
+    updateRuns(first, last);
+    if (!bonus) bonus = findBonus(first, last);
+  }
+
+  /**
+   * Compute again the horizontal runs of some lines.
+   * @param first First modified line
+   * @param last Last modified line
+   */
+  private void updateRuns(int first, int last) {
+    final long valid = -1L >>> (Long.SIZE - (size - bonusSize + 1));
+    for (int y = first; y <= last; y++) {
+      final long row = line(y);
+      long run = valid;
+      for (int k = 0; k < bonusSize && run != 0; k++) {
+        run &= row >>> k;
       }
+      runs[y] = run;
     }
-    return false;
   }
 
   /**
-   * Return true if the quilt board is eligible to 7x7 bonus at a specified position
-   * @return True if eligible, false otherwise
+   * Look for bonusSize consecutive lines sharing a run, crossing some lines.
+   * @param first First line to cross
+   * @param last Last line to cross
+   * @return True if a bonus square is filled
    */
-  private boolean fillBonus(int x, int y) {
-    for (int xx = 0; xx < BONUS_SIZE; xx++) {
-      for (int yy = 0; yy < BONUS_SIZE; yy++) {
-        if (!board[x + xx][y + yy]) return false;
+  private boolean findBonus(int first, int last) {
+    final int start = Math.max(0, first - bonusSize + 1);
+    final int end = Math.min(last, size - bonusSize);
+    for (int y = start; y <= end; y++) {
+      long run = runs[y];
+      for (int k = 1; k < bonusSize && run != 0; k++) {
+        run &= runs[y + k];
       }
+      if (run != 0) return true;
     }
-    return true;
+    return false;
+  }
+
+  /**
+   * Get the squares of a line.
+   * @param y Vertical position, inside the board
+   * @return Bits of the line, the bit x being set if the square (x, y) is filled
+   */
+  long line(int y) {
+    final int start = y * size;
+    final int word = start >>> 6;
+    final int shift = start & 63;
+    long line = board[word] >>> shift;
+    if (shift + size > Long.SIZE) line |= board[word + 1] << (Long.SIZE - shift);
+    return size == Long.SIZE ? line : line & ((1L << size) - 1);
   }
 
   @Override
@@ -158,10 +397,10 @@ public final class QuiltBoard {
     builder.append("Quilt board (remaining space : ").append(remainingSpace).append(")\n");
 
     builder.append(line());
-    for (int y = 0; y < board.length; y++) {
+    for (int y = 0; y < size; y++) {
       builder.append('|');
-      for (int x = 0; x < board[y].length; x++) {
-        builder.append(board[x][y] ? '#' : '.');
+      for (int x = 0; x < size; x++) {
+        builder.append(isFilled(x, y) ? '#' : '.');
       }
       builder.append("|\n");
     }
@@ -171,13 +410,13 @@ public final class QuiltBoard {
   }
   
   /**
-   * True if position is inside the quilt board.
+   * True if the square is occupied by a patch.
+   * @param x Horizontal position, inside the board
+   * @param y Vertical position, inside the board
    * @return boolean
    */
-  private boolean isInside(int x, int y) {
-    return x < board.length
-        && y < board[x].length
-        && x >= 0
-        && y >= 0;
+  private boolean isFilled(int x, int y) {
+    final int bit = y * size + x;
+    return (board[bit >>> 6] & (1L << bit)) != 0;
   }
 }
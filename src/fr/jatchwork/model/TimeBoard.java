@@ -4,10 +4,19 @@ import java.util.Objects;
 
 /**
  * Board representing the time, on which players move their pawns.
+ * Button incomes are stored as prefix counts and jump tables, leather patches
+ * as a bit set, so queries over a movement do not depend on its length.
  */
 public final class TimeBoard {
-  private final boolean[] incomes;
-  private final boolean[] leathers;
+  private final int size;
+  /** incomeCounts[i] is the number of button incomes before the square i. */
+  private final int[] incomeCounts;
+  /** nextIncomes[i] is the first button income at or after the square i, or -1. */
+  private final int[] nextIncomes;
+  /** One bit per square still containing a leather patch. */
+  private final long[] leathers;
+  /** Xor of the Zobrist keys of the remaining leather patches. */
+  private long hash;
 
   /**
    * Create a new TimeBoard
@@ -18,26 +27,59 @@ public final class TimeBoard {
   public TimeBoard(int size, int[] incomesPos, int[] leatherPatchPos) {
     Objects.requireNonNull(incomesPos);
     Objects.requireNonNull(leatherPatchPos);
+    if (size <= 0) throw new IllegalArgumentException("size should be > 0.");
+    this.size = size;
 
-    incomes = new boolean[size];
-    leathers = new boolean[size];
-    
     // Add button incomes on the board
+    final var incomes = new boolean[size];
     for (int pos : incomesPos) {
+      checkPosition(pos);
       incomes[pos] = true;
     }
-    
+    incomeCounts = new int[size + 1];
+    for (int i = 0; i < size; i++) {
+      incomeCounts[i + 1] = incomeCounts[i] + (incomes[i] ? 1 : 0);
+    }
+    nextIncomes = new int[size + 1];
+    nextIncomes[size] = -1;
+    for (int i = size - 1; i >= 0; i--) {
+      nextIncomes[i] = incomes[i] ? i : nextIncomes[i + 1];
+    }
+
     // Add leather patches on the board
+    leathers = new long[(size + 63) >>> 6];
     for (int pos : leatherPatchPos) {
-      leathers[pos] = true;
+      checkPosition(pos);
+      leathers[pos >>> 6] |= 1L << pos;
     }
+    hash = hashLeathers();
+  }
+
+  /**
+   * Create a copy of a time board, sharing the button incomes.
+   * @param board Board to copy
+   */
+  private TimeBoard(TimeBoard board) {
+    size = board.size;
+    incomeCounts = board.incomeCounts;
+    nextIncomes = board.nextIncomes;
+    leathers = board.leathers.clone();
+    hash = board.hash;
+  }
+
+  /**
+   * Create an independent copy of this time board.
+   * @return New time board
+   */
+  public TimeBoard copy() {
+    return new TimeBoard(this);
   }
 
   /**
    * Size of the board.
    * @return Size
    */
-  public int size() { return incomes.length; }
+  public int size() { return size; }
 
   /**
    * Count the number of button income on the board in a given movement.
@@ -46,11 +88,37 @@ public final class TimeBoard {
    * @return Number of button income found
    */
   public int containsIncome(int start, int end) {
-    int count = 0;
-    for (int i = start+1; i <= end && i < size(); i++) {
-      if (incomes[i]) count++;
+    final int from = Math.max(start + 1, 0);
+    final int to = Math.min(end, size - 1);
+    if (from > to) return 0;
+    return incomeCounts[to + 1] - incomeCounts[from];
+  }
+
+  /**
+   * Position of the first button income after a square.
+   * @param pos Current position
+   * @return Position of the next income, or -1 if there is none
+   */
+  public int nextIncome(int pos) {
+    final int from = Math.max(pos + 1, 0);
+    return from >= size ? -1 : nextIncomes[from];
+  }
+
+  /**
+   * Position of the first leather patch after a square.
+   * @param pos Current position
+   * @return Position of the next leather patch, or -1 if there is none
+   */
+  public int nextLeather(int pos) {
+    final int from = Math.max(pos + 1, 0);
+    if (from >= size) return -1;
+    int word = from >>> 6;
+    long bits = leathers[word] & (-1L << from);
+    while (bits == 0) {
+      if (++word == leathers.length) return -1;
+      bits = leathers[word];
     }
-    return count;
+    return (word << 6) + Long.numberOfTrailingZeros(bits);
   }
   
   /**
@@ -60,11 +128,14 @@ public final class TimeBoard {
    * @return Number of leathers found
    */
   public int containsLeathers(int start, int end) {
+    final int from = Math.max(start + 1, 0);
+    final int to = Math.min(end, size - 1);
+    if (from > to) return 0;
+    final int first = from >>> 6;
+    final int last = to >>> 6;
     int count = 0;
-    for (int i = start+1; i <= end && i < size(); i++) {
-      if (leathers[i]) {
-        count++;
-      }
+    for (int word = first; word <= last; word++) {
+      count += Long.bitCount(leathers[word] & rangeMask(word, first, last, from, to));
     }
     return count;
   }
@@ -76,22 +147,94 @@ public final class TimeBoard {
    * @return Number of leathers found
    */
   public int getLeathers(int start, int end) {
+    final int from = Math.max(start + 1, 0);
+    final int to = Math.min(end, size - 1);
+    if (from > to) return 0;
+    final int first = from >>> 6;
+    final int last = to >>> 6;
     int count = 0;
-    for (int i = start+1; i <= end && i < size(); i++) {
-      if (leathers[i]) {
-        count++;
-        leathers[i] = false;
-      }
+    for (int word = first; word <= last; word++) {
+      final long taken = leathers[word] & rangeMask(word, first, last, from, to);
+      count += Long.bitCount(taken);
+      leathers[word] &= ~taken;
+      hash ^= Zobrist.leathers(taken, word << 6);
     }
     return count;
   }
 
+  /**
+   * Number of words needed to save the leather patches.
+   * @return Word count
+   */
+  int leatherWords() { return leathers.length; }
+
+  /**
+   * Save the leather patches still on the board.
+   * @param dest Destination array
+   * @param offset Position of the first word in dest
+   */
+  void saveLeathers(long[] dest, int offset) {
+    System.arraycopy(leathers, 0, dest, offset, leathers.length);
+  }
+
+  /**
+   * Restore leather patches saved with saveLeathers.
+   * @param src Source array
+   * @param offset Position of the first word in src
+   */
+  void restoreLeathers(long[] src, int offset) {
+    System.arraycopy(src, offset, leathers, 0, leathers.length);
+    hash = hashLeathers();
+  }
+
+  /**
+   * Zobrist hash of the remaining leather patches, updated when they are taken.
+   * @return Hash of the board
+   */
+  public long hash() { return hash; }
+
+  /**
+   * Compute the hash of the remaining leather patches.
+   * @return Xor of the keys of the leather patches
+   */
+  private long hashLeathers() {
+    long result = 0;
+    for (int word = 0; word < leathers.length; word++) {
+      result ^= Zobrist.leathers(leathers[word], word << 6);
+    }
+    return result;
+  }
+
+  /**
+   * Bits of a word covered by the range of squares [from, to].
+   * @param word Index of the word
+   * @param first Index of the word containing from
+   * @param last Index of the word containing to
+   * @param from First square of the range
+   * @param to Last square of the range
+   * @return Mask of the squares of the word inside the range
+   */
+  private static long rangeMask(int word, int first, int last, int from, int to) {
+    long mask = -1L;
+    if (word == first) mask &= -1L << from;
+    if (word == last) mask &= -1L >>> (63 - (to & 63));
+    return mask;
+  }
+
+  /**
+   * Check that a square is on the board.
+   * @param pos Position of the square
+   */
+  private void checkPosition(int pos) {
+    if (pos < 0 || pos >= size) throw new IllegalArgumentException("position out of the board: " + pos);
+  }
+
   @Override
   public String toString() {
     var builder = new StringBuilder();
     for (int i = 0; i < size(); i++) {
-      if (incomes[i]) builder.append('o');
-      else if (leathers[i]) builder.append('#');
+      if (incomeCounts[i + 1] != incomeCounts[i]) builder.append('o');
+      else if ((leathers[i >>> 6] & (1L << i)) != 0) builder.append('#');
       else builder.append('=');
     }
     return builder.toString();
@@ -0,0 +1,189 @@
+package fr.jatchwork.model;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Stack of the data needed to undo the moves played in a game.
+ * Entries are stored in primitive arrays reused between moves, so undoing a move does not allocate.
+ * The accessors read the last entry.
+ */
+final class UndoJournal {
+  private static final int MOVE = 0;
+  private static final int PLAYER = 1;
+  private static final int BUTTONS = 2;
+  private static final int POSITION = 3;
+  private static final int LEATHERS = 4;
+  private static final int FLAGS = 5;
+  private static final int SLOT = 6;
+  private static final int ANCHOR = 7;
+  /** Offset of the saved leather patches of the time board, or -1. */
+  private static final int SAVED = 8;
+  private static final int STRIDE = 9;
+
+  private static final int PLAYER_BONUS = 1;
+  private static final int BONUS_GIVEN = 2;
+
+  private int[] entries = new int[STRIDE * 64];
+  private Placements[] placements = new Placements[64];
+  private long[] leathers = new long[16];
+  private int size = 0;
+  private int leatherSize = 0;
+
+  /**
+   * Number of moves which can be undone.
+   * @return Size of the journal
+   */
+  int size() { return size; }
+
+  /**
+   * Add an entry with the data of the player before a move.
+   * @param move Encoded move
+   * @param player Index of the playing player
+   * @param data Player before the move
+   * @param bonusGiven Is the bonus for completing a quilt board taken
+   */
+  void push(int move, int player, Player data, boolean bonusGiven) {
+    if (size == placements.length) {
+      entries = Arrays.copyOf(entries, entries.length * 2);
+      placements = Arrays.copyOf(placements, placements.length * 2);
+    }
+    final int i = size * STRIDE;
+    entries[i + MOVE] = move;
+    entries[i + PLAYER] = player;
+    entries[i + BUTTONS] = data.buttonCount();
+    entries[i + POSITION] = data.position();
+    entries[i + LEATHERS] = data.leatherCount();
+    entries[i + FLAGS] = (data.hasBonus() ? PLAYER_BONUS : 0) | (bonusGiven ? BONUS_GIVEN : 0);
+    entries[i + SLOT] = -1;
+    entries[i + ANCHOR] = -1;
+    entries[i + SAVED] = -1;
+    placements[size] = null;
+    size++;
+  }
+
+  /**
+   * Record the patch placed by the last move.
+   * @param placements Placements of the patch
+   * @param anchor Index of the anchor
+   * @param slot Slot of the patch in the circle, or -1 for a leather patch
+   */
+  void placement(Placements placements, int anchor, int slot) {
+    final int i = (size - 1) * STRIDE;
+    this.placements[size - 1] = placements;
+    entries[i + ANCHOR] = anchor;
+    entries[i + SLOT] = slot;
+  }
+
+  /**
+   * Save the leather patches of the time board before the last move.
+   * @param timeBoard Time board of the game
+   */
+  void saveLeathers(TimeBoard timeBoard) {
+    final int words = timeBoard.leatherWords();
+    if (leatherSize + words > leathers.length) {
+      leathers = Arrays.copyOf(leathers, Math.max(leathers.length * 2, leatherSize + words));
+    }
+    timeBoard.saveLeathers(leathers, leatherSize);
+    entries[(size - 1) * STRIDE + SAVED] = leatherSize;
+    leatherSize += words;
+  }
+
+  /**
+   * Forget the leather patches saved for the last move, if the move did not take any.
+   */
+  void dropLeathers() {
+    final int i = (size - 1) * STRIDE + SAVED;
+    if (entries[i] < 0) return;
+    leatherSize = entries[i];
+    entries[i] = -1;
+  }
+
+  /**
+   * Restore the leather patches of the time board, if the last move took some.
+   * @param timeBoard Time board of the game
+   */
+  void restoreLeathers(TimeBoard timeBoard) {
+    final int offset = entries[(size - 1) * STRIDE + SAVED];
+    if (offset < 0) return;
+    timeBoard.restoreLeathers(leathers, offset);
+    leatherSize = offset;
+  }
+
+  /**
+   * Remove the last entry.
+   */
+  void pop() {
+    placements[--size] = null;
+  }
+
+  /**
+   * Encoded last move.
+   * @return Move
+   */
+  int move() { return entries[(size - 1) * STRIDE + MOVE]; }
+
+  /**
+   * Encoded move of an entry.
+   * @param i Index of the entry, 0 being the oldest
+   * @return Move
+   */
+  int move(int i) {
+    Objects.checkIndex(i, size);
+    return entries[i * STRIDE + MOVE];
+  }
+
+  /**
+   * Index of the player who played the last move.
+   * @return Index of the player
+   */
+  int player() { return entries[(size - 1) * STRIDE + PLAYER]; }
+
+  /**
+   * Buttons of the player before the last move.
+   * @return Button count
+   */
+  int buttonCount() { return entries[(size - 1) * STRIDE + BUTTONS]; }
+
+  /**
+   * Position of the player before the last move.
+   * @return Position
+   */
+  int position() { return entries[(size - 1) * STRIDE + POSITION]; }
+
+  /**
+   * Leather patches of the player before the last move.
+   * @return Leather count
+   */
+  int leatherCount() { return entries[(size - 1) * STRIDE + LEATHERS]; }
+
+  /**
+   * Bonus of the player before the last move.
+   * @return True if the player had the bonus
+   */
+  boolean hasBonus() { return (entries[(size - 1) * STRIDE + FLAGS] & PLAYER_BONUS) != 0; }
+
+  /**
+   * State of the bonus for completing a quilt board before the last move.
+   * @return True if a player had taken it
+   */
+  boolean bonusFullGiven() { return (entries[(size - 1) * STRIDE + FLAGS] & BONUS_GIVEN) != 0; }
+
+  /**
+   * Placements of the patch placed by the last move.
+   * @return Placements, or null if no patch was placed
+   */
+  Placements placements() { return placements[size - 1]; }
+
+  /**
+   * Anchor of the patch placed by the last move.
+   * @return Index of the anchor
+   */
+  int anchor() { return entries[(size - 1) * STRIDE + ANCHOR]; }
+
+  /**
+   * Slot in the circle of the patch bought by the last move.
+   * @return Slot, or -1 if no patch was bought
+   */
+  int slot() { return entries[(size - 1) * STRIDE + SLOT]; }
+}
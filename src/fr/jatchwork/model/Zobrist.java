@@ -0,0 +1,142 @@
+package fr.jatchwork.model;
+
+/**
+ * Random keys used to hash the state of a game (Zobrist hashing).
+ * Each element of a state has its own 64 bits key and the hash of a state is the xor of the keys
+ * of its elements, so adding or removing an element updates the hash in constant time.
+ * Keys are derived from the element with a bit mixer, so they don't depend on any table size.
+ */
+final class Zobrist {
+  /** Element : number of buttons of a player. */
+  static final int BUTTONS = 1;
+  /** Element : position of a player on the time board. */
+  static final int POSITION = 2;
+  /** Element : number of leather patches a player must place. */
+  static final int LEATHERS = 3;
+  /** Element : a player has the 7x7 bonus. */
+  static final int BONUS = 4;
+  /** Element : the bonus is taken by a player. */
+  static final int BONUS_GIVEN = 5;
+  /** Element : a leather patch is on a square of the time board. */
+  static final int LEATHER_SQUARE = 6;
+  /** Element : a patch is still in a slot of the circle. */
+  static final int SLOT = 7;
+  /** Element : slot of the patch in front of the neutral pawn. */
+  static final int PAWN = 8;
+  /** Element : player who must play. */
+  static final int PLAYING = 9;
+  /** Element : quilt board of a player. */
+  static final int BOARD = 10;
+  /** Element : a patch at a distance from the neutral pawn, for opening hashes. */
+  static final int WINDOW = 11;
+
+  /** Keys of the squares of a quilt board, indexed by bit (y * size + x). */
+  private static final long[] SQUARES = new long[QuiltBoard.MAX_SIZE * QuiltBoard.MAX_SIZE];
+
+  static {
+    for (int i = 0; i < SQUARES.length; i++) {
+      SQUARES[i] = mix(0x9E3779B97F4A7C15L * (i + 1));
+    }
+  }
+
+  /**
+   * Key of an element.
+   * @param element Kind of element
+   * @param index Player, square or slot concerned by the element
+   * @param value Value of the element
+   * @return Key
+   */
+  static long key(int element, int index, int value) {
+    final long packed = (long) element << 56 ^ (long) index << 32 ^ (value & 0xFFFFFFFFL);
+    return mix((packed + 1) * 0x9E3779B97F4A7C15L ^ 0xD1B54A32D192ED03L);
+  }
+
+  /**
+   * Xor of the keys of some squares of a quilt board.
+   * @param bits Bits of the squares, inside a word of the board
+   * @param base Bit index of the first bit of the word
+   * @return Hash of the squares
+   */
+  static long squares(long bits, int base) {
+    long hash = 0;
+    while (bits != 0) {
+      hash ^= SQUARES[base + Long.numberOfTrailingZeros(bits)];
+      bits &= bits - 1;
+    }
+    return hash;
+  }
+
+  /**
+   * Xor of the keys of the leather patches in a word of the time board.
+   * @param bits Bits of the squares containing a leather patch
+   * @param base Position of the first bit of the word
+   * @return Hash of the leather patches
+   */
+  static long leathers(long bits, int base) {
+    long hash = 0;
+    while (bits != 0) {
+      hash ^= key(LEATHER_SQUARE, base + Long.numberOfTrailingZeros(bits), 0);
+      bits &= bits - 1;
+    }
+    return hash;
+  }
+
+  /**
+   * Hash of all the data of a player.
+   * @param i Index of the player
+   * @param buttons Number of buttons
+   * @param position Position on the time board
+   * @param leathers Number of leather patches to place
+   * @param bonus Does the player have the 7x7 bonus
+   * @param board Hash of the quilt board of the player
+   * @return Hash of the player
+   */
+  static long player(int i, int buttons, int position, int leathers, boolean bonus, long board) {
+    long hash = key(BUTTONS, i, buttons) ^ key(POSITION, i, position) ^ key(LEATHERS, i, leathers);
+    if (bonus) hash ^= key(BONUS, i, 0);
+    return hash ^ mix(board ^ key(BOARD, i, 0));
+  }
+
+  /**
+   * Key of a patch at a distance from the neutral pawn.
+   * It depends on the content of the patch only, so it is the same in every run of the program.
+   * @param distance Index of the patch from the neutral pawn
+   * @param patch The patch
+   * @return Key
+   */
+  static long window(int distance, Patch patch) {
+    long content = patch.timeCost();
+    content = content * 31 + patch.buttonCost();
+    content = content * 31 + patch.buttonIncome();
+    final PatchShape shape = patch.tiles();
+    content = content * 31 + shape.height();
+    for (int y = 0; y < shape.height(); y++) {
+      content = mix(content * 31 + shape.row(y));
+    }
+    return mix(key(WINDOW, distance, 0) ^ content);
+  }
+
+  /**
+   * Hash of the data shared by the players.
+   * @param bonusGiven Is the bonus for completing a quilt board taken
+   * @param playing Index of the player who must play, or -1 if the game is finished
+   * @return Hash of the shared data
+   */
+  static long shared(boolean bonusGiven, int playing) {
+    long hash = bonusGiven ? key(BONUS_GIVEN, 0, 0) : 0;
+    return playing < 0 ? hash : hash ^ key(PLAYING, playing, 0);
+  }
+
+  /**
+   * Scramble the bits of a value (finalizer of SplitMix64).
+   * @param z Value to mix
+   * @return Mixed value
+   */
+  static long mix(long z) {
+    z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+    z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+    return z ^ (z >>> 31);
+  }
+
+  private Zobrist() { }
+}
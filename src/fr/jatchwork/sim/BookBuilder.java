@@ -0,0 +1,107 @@
+package fr.jatchwork.sim;
+
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.Objects;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import fr.jatchwork.ai.Bot;
+import fr.jatchwork.ai.OpeningBook;
+import fr.jatchwork.model.Game;
+import fr.jatchwork.model.GameState;
+
+/**
+ * Compute the moves of an opening book, by letting a bot play the first moves of many games
+ * with shuffled circles, using every core.
+ * A state already in the book is played with its move, so the book follows its own lines.
+ * Each game gets its own seed derived from the seed of the run, and the bot is seeded from the
+ * seed of the run and the state before each move, so the move of a state does not depend on the
+ * thread finding it first.
+ */
+public final class BookBuilder {
+  /**
+   * Compute the best moves of the first states of games, with a random seed.
+   * @param policy Factory of the bot choosing the moves, one bot being created for each thread
+   * @param phase Version of the game, 2 or 3
+   * @param games Number of games to start
+   * @param plies Number of moves of each game to compute
+   * @param window Number of patches from the neutral pawn included in the hashes,
+   *               see {@link OpeningBook#window()}
+   * @param threads Number of games played at the same time
+   * @return Best move of each opening hash
+   * @throws InterruptedException If the thread is interrupted while waiting for the games
+   */
+  public static Map<Long, Integer> build(Supplier<Bot> policy, int phase, int games, int plies,
+      int window, int threads) throws InterruptedException {
+    return build(policy, phase, games, plies, window, threads, ThreadLocalRandom.current().nextLong());
+  }
+
+  /**
+   * Compute the best moves of the first states of games.
+   * @param policy Factory of the bot choosing the moves, one bot being created for each thread
+   * @param phase Version of the game, 2 or 3
+   * @param games Number of games to start
+   * @param plies Number of moves of each game to compute
+   * @param window Number of patches from the neutral pawn included in the hashes,
+   *               see {@link OpeningBook#window()}
+   * @param threads Number of games played at the same time
+   * @param seed Seed of the run
+   * @return Best move of each opening hash
+   * @throws InterruptedException If the thread is interrupted while waiting for the games
+   */
+  public static Map<Long, Integer> build(Supplier<Bot> policy, int phase, int games, int plies,
+      int window, int threads, long seed) throws InterruptedException {
+    Objects.requireNonNull(policy);
+    if (phase < 2 || phase > 3) throw new IllegalArgumentException("phase should be 2 or 3.");
+    if (games <= 0) throw new IllegalArgumentException("games should be > 0.");
+    if (plies <= 0) throw new IllegalArgumentException("plies should be > 0.");
+    if (window < 0) throw new IllegalArgumentException("window should be >= 0.");
+    if (threads <= 0) throw new IllegalArgumentException("threads should be > 0.");
+    final long[] seeds = new SplittableRandom(seed).longs(games).toArray();
+    final var moves = new ConcurrentHashMap<Long, Integer>();
+    final var next = new AtomicInteger();
+
+    final var executor = Executors.newFixedThreadPool(threads);
+    try {
+      final var workers = new ArrayList<Future<?>>(threads);
+      for (int i = 0; i < threads; i++) {
+        workers.add(executor.submit(() -> {
+          try (Bot bot = policy.get()) {
+            for (int game = next.getAndIncrement(); game < games; game = next.getAndIncrement()) {
+              GameState state = GameState.of(new Game(phase, seeds[game]));
+              for (int ply = 0; ply < plies && !state.finished(); ply++) {
+                final long hash = state.openingHash(window);
+                Integer move = moves.get(hash);
+                if (move == null) {
+                  // Another thread may have found the same state meanwhile, its move is kept
+                  bot.seed(seed ^ hash);
+                  final int chosen = bot.chooseMove(state);
+                  move = moves.putIfAbsent(hash, chosen);
+                  if (move == null) move = chosen;
+                }
+                state = state.apply(move);
+              }
+            }
+          }
+        }));
+      }
+      for (var worker : workers) {
+        worker.get();
+      }
+    } catch (ExecutionException e) {
+      throw new IllegalStateException("A game failed.", e.getCause());
+    } finally {
+      executor.shutdownNow();
+    }
+    return Map.copyOf(moves);
+  }
+
+  private BookBuilder() { }
+}
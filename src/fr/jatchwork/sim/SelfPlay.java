@@ -0,0 +1,166 @@
+package fr.jatchwork.sim;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Objects;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import fr.jatchwork.ai.AlphaBetaBot;
+import fr.jatchwork.ai.BookBot;
+import fr.jatchwork.ai.Bot;
+import fr.jatchwork.ai.Evaluation;
+import fr.jatchwork.ai.MctsBot;
+import fr.jatchwork.ai.OpeningBook;
+import fr.jatchwork.ai.PlayoutBot;
+import fr.jatchwork.io.GameRecord;
+import fr.jatchwork.model.Game;
+
+/**
+ * Play many games between two bots without any display or input, using every core.
+ * Each thread creates its own bots, so bots don't need to be shared between threads.
+ * Each game gets its own seed derived from the seed of the run, which seeds the circle of patches
+ * and the bots, so a run is repeatable whatever the number of threads, as long as the bots don't
+ * depend on time.
+ */
+public final class SelfPlay {
+  /**
+   * Create a bot factory from its description :
+   * "random", "heuristic", "mcts[:milliseconds]" or "alphabeta[:milliseconds]",
+   * followed by "@path" to play the moves of an opening book first.
+   * Searching bots use a single thread, games being already played in parallel,
+   * and alpha-beta bots use the tuned weights if there are any.
+   * @param description Description of the bot
+   * @return Factory creating a new bot for each thread
+   * @throws IOException If the opening book can't be read
+   */
+  public static Supplier<Bot> policy(String description) throws IOException {
+    Objects.requireNonNull(description);
+    final int at = description.indexOf('@');
+    if (at >= 0) {
+      // The mapped book is read only, so it is shared by every bot
+      final var book = OpeningBook.open(Path.of(description.substring(at + 1)));
+      final Supplier<Bot> bot = policy(description.substring(0, at));
+      return () -> new BookBot(book, bot.get());
+    }
+    final var parts = description.split(":", 2);
+    final long millis = parts.length > 1 ? Long.parseLong(parts[1]) : 50;
+    if (millis <= 0) throw new IllegalArgumentException("time should be > 0.");
+    final var time = Duration.ofMillis(millis);
+    return switch (parts[0]) {
+    case "random" -> () -> new PlayoutBot(MctsBot.Playout.RANDOM, new SplittableRandom());
+    case "heuristic" -> () -> new PlayoutBot(MctsBot.Playout.HEURISTIC, new SplittableRandom());
+    case "mcts" -> () -> new MctsBot(time, 0, 1, MctsBot.Playout.HEURISTIC, new SplittableRandom());
+    case "alphabeta" -> {
+      final var evaluation = Evaluation.loadDefault();
+      yield () -> new AlphaBetaBot(time, 16, evaluation);
+    }
+    default -> throw new IllegalArgumentException("Unknown bot: " + description);
+    };
+  }
+
+  private final Supplier<Bot> first;
+  private final Supplier<Bot> second;
+  private final int phase;
+  private final int threads;
+
+  /**
+   * Prepare games between two bots.
+   * @param first Factory of the bot playing the player 1
+   * @param second Factory of the bot playing the player 2
+   * @param phase Version of the game, 1 to 3
+   * @param threads Number of games played at the same time
+   */
+  public SelfPlay(Supplier<Bot> first, Supplier<Bot> second, int phase, int threads) {
+    this.first = Objects.requireNonNull(first);
+    this.second = Objects.requireNonNull(second);
+    if (phase < 1 || phase > 3) throw new IllegalArgumentException("phase should be between 1 and 3.");
+    if (threads <= 0) throw new IllegalArgumentException("threads should be > 0.");
+    this.phase = phase;
+    this.threads = threads;
+  }
+
+  /**
+   * Play games with a random seed and gather their results.
+   * @param games Number of games to play
+   * @return Results of the games
+   * @throws InterruptedException If the thread is interrupted while waiting for the games
+   */
+  public SelfPlayReport run(int games) throws InterruptedException {
+    return run(games, ThreadLocalRandom.current().nextLong());
+  }
+
+  /**
+   * Play games and gather their results.
+   * @param games Number of games to play
+   * @param seed Seed of the run
+   * @return Results of the games
+   * @throws InterruptedException If the thread is interrupted while waiting for the games
+   */
+  public SelfPlayReport run(int games, long seed) throws InterruptedException {
+    return run(games, seed, record -> { });
+  }
+
+  /**
+   * Play games, gather their results and record their moves.
+   * @param games Number of games to play
+   * @param seed Seed of the run
+   * @param recorder Action receiving the record of each finished game, called by every thread
+   * @return Results of the games
+   * @throws InterruptedException If the thread is interrupted while waiting for the games
+   */
+  public SelfPlayReport run(int games, long seed, Consumer<GameRecord> recorder) throws InterruptedException {
+    Objects.requireNonNull(recorder);
+    if (games <= 0) throw new IllegalArgumentException("games should be > 0.");
+    final long[] seeds = new SplittableRandom(seed).longs(games).toArray();
+    final var scores = new int[Game.PLAYER_COUNT][games];
+    final var lengths = new int[games];
+    final var next = new AtomicInteger();
+    final long start = System.nanoTime();
+
+    final var executor = Executors.newFixedThreadPool(threads);
+    try {
+      final var workers = new ArrayList<Future<?>>(threads);
+      for (int i = 0; i < threads; i++) {
+        workers.add(executor.submit(() -> {
+          try (Bot firstBot = first.get(); Bot secondBot = second.get()) {
+            final Bot[] bots = { firstBot, secondBot };
+            // Each game writes only its own cells of the arrays
+            for (int game = next.getAndIncrement(); game < games; game = next.getAndIncrement()) {
+              final var random = new SplittableRandom(seeds[game]);
+              final var played = new Game(phase, random.nextLong());
+              bots[0].seed(random.nextLong());
+              bots[1].seed(random.nextLong());
+              int moves = 0;
+              while (!played.finished()) {
+                final int player = played.playing() == played.player(0) ? 0 : 1;
+                played.play(bots[player].chooseMove(played));
+                moves++;
+              }
+              scores[0][game] = played.player(0).score();
+              scores[1][game] = played.player(1).score();
+              lengths[game] = moves;
+              recorder.accept(GameRecord.of(played));
+            }
+          }
+        }));
+      }
+      for (var worker : workers) {
+        worker.get();
+      }
+    } catch (ExecutionException e) {
+      throw new IllegalStateException("A game failed.", e.getCause());
+    } finally {
+      executor.shutdownNow();
+    }
+    return new SelfPlayReport(scores[0], scores[1], lengths, System.nanoTime() - start);
+  }
+}
@@ -0,0 +1,145 @@
+package fr.jatchwork.sim;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+import fr.jatchwork.model.Game;
+
+/**
+ * Results of games played between two bots.
+ * @param firstScores Final score of the player 1 for each game
+ * @param secondScores Final score of the player 2 for each game
+ * @param lengths Number of moves of each game
+ * @param nanos Time spent playing the games, in nanoseconds
+ */
+public record SelfPlayReport(int[] firstScores, int[] secondScores, int[] lengths, long nanos) {
+  /**
+   * Create the report of games.
+   * @param firstScores Final score of the player 1 for each game
+   * @param secondScores Final score of the player 2 for each game
+   * @param lengths Number of moves of each game
+   * @param nanos Time spent playing the games, in nanoseconds
+   */
+  public SelfPlayReport {
+    Objects.requireNonNull(firstScores);
+    Objects.requireNonNull(secondScores);
+    Objects.requireNonNull(lengths);
+    if (firstScores.length != secondScores.length || firstScores.length != lengths.length) {
+      throw new IllegalArgumentException("Every array should have one value per game.");
+    }
+    if (nanos < 0) throw new IllegalArgumentException("nanos should be >= 0.");
+    firstScores = firstScores.clone();
+    secondScores = secondScores.clone();
+    lengths = lengths.clone();
+  }
+
+  /**
+   * Number of games played.
+   * @return Game count
+   */
+  public int games() { return lengths.length; }
+
+  /**
+   * Speed of the games.
+   * @return Games played per second
+   */
+  public double gamesPerSecond() {
+    return nanos == 0 ? 0 : games() * 1e9 / nanos;
+  }
+
+  /**
+   * Final scores of a player.
+   * @param player Index of the player
+   * @return Score of each game
+   */
+  public int[] scores(int player) {
+    Objects.checkIndex(player, Game.PLAYER_COUNT);
+    return (player == 0 ? firstScores : secondScores).clone();
+  }
+
+  /**
+   * Part of the games won by a player with a strictly better score, ties being counted apart.
+   * @param player Index of the player
+   * @return Win rate, between 0 and 1
+   */
+  public double winRate(int player) {
+    Objects.checkIndex(player, Game.PLAYER_COUNT);
+    int wins = 0;
+    for (int i = 0; i < games(); i++) {
+      final int diff = firstScores[i] - secondScores[i];
+      if (player == 0 ? diff > 0 : diff < 0) wins++;
+    }
+    return games() == 0 ? 0 : (double) wins / games();
+  }
+
+  /**
+   * Part of the games ending with equal scores.
+   * @return Tie rate, between 0 and 1
+   */
+  public double tieRate() {
+    int ties = 0;
+    for (int i = 0; i < games(); i++) {
+      if (firstScores[i] == secondScores[i]) ties++;
+    }
+    return games() == 0 ? 0 : (double) ties / games();
+  }
+
+  /**
+   * Average number of moves of the games.
+   * @return Average length
+   */
+  public double averageLength() {
+    return Arrays.stream(lengths).average().orElse(0);
+  }
+
+  /**
+   * Average final score of a player.
+   * @param player Index of the player
+   * @return Average score
+   */
+  public double averageScore(int player) {
+    return Arrays.stream(scores(player)).average().orElse(0);
+  }
+
+  /**
+   * Standard deviation of the final scores of a player.
+   * @param player Index of the player
+   * @return Standard deviation
+   */
+  public double scoreDeviation(int player) {
+    final double average = averageScore(player);
+    return Math.sqrt(Arrays.stream(scores(player))
+        .mapToDouble(score -> (score - average) * (score - average))
+        .average().orElse(0));
+  }
+
+  /**
+   * Percentile of the final scores of a player.
+   * @param player Index of the player
+   * @param rank Part of the games, between 0 and 1
+   * @return Score at this rank, by nearest rank
+   */
+  public int scorePercentile(int player, double rank) {
+    if (rank < 0 || rank > 1) throw new IllegalArgumentException("rank should be between 0 and 1.");
+    final int[] sorted = scores(player);
+    if (sorted.length == 0) return 0;
+    Arrays.sort(sorted);
+    return sorted[(int) Math.min(sorted.length - 1, Math.ceil(rank * sorted.length) - (rank > 0 ? 1 : 0))];
+  }
+
+  @Override
+  public String toString() {
+    final var builder = new StringBuilder();
+    builder.append(String.format("%d games in %.2f s, %.1f games/s, %.1f moves per game\n",
+        games(), nanos / 1e9, gamesPerSecond(), averageLength()));
+    for (int player = 0; player < Game.PLAYER_COUNT; player++) {
+      builder.append(String.format(
+          "Player %d : %.1f%% wins, score %.1f +/- %.1f (min %d, 25%% %d, median %d, 75%% %d, max %d)\n",
+          player + 1, winRate(player) * 100, averageScore(player), scoreDeviation(player),
+          scorePercentile(player, 0), scorePercentile(player, 0.25), scorePercentile(player, 0.5),
+          scorePercentile(player, 0.75), scorePercentile(player, 1)));
+    }
+    builder.append(String.format("Ties : %.1f%%", tieRate() * 100));
+    return builder.toString();
+  }
+}
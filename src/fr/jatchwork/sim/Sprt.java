@@ -0,0 +1,108 @@
+package fr.jatchwork.sim;
+
+/**
+ * Sequential probability ratio test between two Elo differences, deciding as soon as the games
+ * played are enough to tell which one is more likely.
+ * The log-likelihood ratio uses the normal approximation of the generalized SPRT,
+ * which takes draws into account through the variance of the scores.
+ * The variance is regularized by half a win and half a loss, so one-sided results, such as a bot
+ * losing every game, still cross a bound.
+ * @param elo0 Elo difference of the null hypothesis, typically 0 to detect regressions
+ * @param elo1 Elo difference of the alternative hypothesis, the gain to detect
+ * @param alpha Probability of accepting elo1 if elo0 is true
+ * @param beta Probability of accepting elo0 if elo1 is true
+ */
+public record Sprt(double elo0, double elo1, double alpha, double beta) {
+  /**
+   * Outcome of the test.
+   */
+  public enum Decision {
+    /** Not enough games yet. */
+    CONTINUE,
+    /** The Elo difference is likely elo0 or less. */
+    ACCEPT_ELO0,
+    /** The Elo difference is likely elo1 or more. */
+    ACCEPT_ELO1,
+  }
+
+  /**
+   * Create a new test.
+   * @param elo0 Elo difference of the null hypothesis
+   * @param elo1 Elo difference of the alternative hypothesis
+   * @param alpha Probability of accepting elo1 if elo0 is true
+   * @param beta Probability of accepting elo0 if elo1 is true
+   */
+  public Sprt {
+    if (elo1 <= elo0) throw new IllegalArgumentException("elo1 should be > elo0.");
+    if (alpha <= 0 || alpha >= 0.5) throw new IllegalArgumentException("alpha should be > 0 and < 0.5.");
+    if (beta <= 0 || beta >= 0.5) throw new IllegalArgumentException("beta should be > 0 and < 0.5.");
+  }
+
+  /**
+   * Expected score of a player from its Elo difference.
+   * @param elo Elo difference with the opponent
+   * @return Score between 0 and 1, a draw counting as half a win
+   */
+  public static double score(double elo) {
+    return 1 / (1 + Math.pow(10, -elo / 400));
+  }
+
+  /**
+   * Elo difference of a player from its score.
+   * @param score Score between 0 and 1, a draw counting as half a win
+   * @return Elo difference with the opponent, infinite if the score is 0 or 1
+   */
+  public static double elo(double score) {
+    return -400 * Math.log10(1 / score - 1);
+  }
+
+  /**
+   * Log-likelihood ratio of elo1 against elo0.
+   * @param wins Number of games won
+   * @param draws Number of games drawn
+   * @param losses Number of games lost
+   * @return Ratio, 0 before any game
+   */
+  public double llr(int wins, int draws, int losses) {
+    if (wins < 0 || draws < 0 || losses < 0) throw new IllegalArgumentException("counts should be >= 0.");
+    final int games = wins + draws + losses;
+    if (games == 0) return 0;
+    final double score = (wins + draws / 2.0) / games;
+    // Without a win or a loss the variance would be 0, so half of each is added to it
+    final double variance = ((wins + 0.5) * (1 - score) * (1 - score) + draws * (0.5 - score) * (0.5 - score)
+        + (losses + 0.5) * score * score) / (games + 1);
+    final double score0 = score(elo0);
+    final double score1 = score(elo1);
+    return (score1 - score0) * (2 * score - score0 - score1) * games / (2 * variance);
+  }
+
+  /**
+   * Ratio under which elo0 is accepted.
+   * @return Lower bound of the log-likelihood ratio
+   */
+  public double lowerBound() {
+    return Math.log(beta / (1 - alpha));
+  }
+
+  /**
+   * Ratio over which elo1 is accepted.
+   * @return Upper bound of the log-likelihood ratio
+   */
+  public double upperBound() {
+    return Math.log((1 - beta) / alpha);
+  }
+
+  /**
+   * Decide from the results of games.
+   * @param wins Number of games won
+   * @param draws Number of games drawn
+   * @param losses Number of games lost
+   * @return The decision
+   */
+  public Decision decide(int wins, int draws, int losses) {
+    final double llr = llr(wins, draws, losses);
+    if (llr <= lowerBound()) return Decision.ACCEPT_ELO0;
+    if (llr >= upperBound()) return Decision.ACCEPT_ELO1;
+    return Decision.CONTINUE;
+  }
+}
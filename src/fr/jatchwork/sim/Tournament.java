@@ -0,0 +1,251 @@
+package fr.jatchwork.sim;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+import fr.jatchwork.ai.Bot;
+import fr.jatchwork.model.Game;
+import fr.jatchwork.model.GameState;
+
+/**
+ * Play matches between several bots on every core, and rate them.
+ * The games of a pairing are played by pairs on the same circle of patches, each bot playing
+ * each seat once, so neither the circle nor the first move favors a bot.
+ * Each pair of games gets its own seed derived from the seed of the tournament, so the same pairs
+ * are played on the same circles with the same bot seeds whatever the number of threads.
+ * With a {@link Sprt}, a pairing stops as soon as its test decides.
+ */
+public final class Tournament {
+  /**
+   * Bot taking part in a tournament.
+   * @param name Unique name of the bot
+   * @param policy Factory of the bot, one bot being created for each thread
+   */
+  public record Entrant(String name, Supplier<Bot> policy) {
+    /**
+     * Create a new entrant.
+     * @param name Unique name of the bot
+     * @param policy Factory of the bot
+     */
+    public Entrant {
+      Objects.requireNonNull(name);
+      Objects.requireNonNull(policy);
+    }
+  }
+
+  /**
+   * Entrants meeting each other.
+   */
+  public enum Format {
+    /** Every entrant plays against every other one. */
+    ROUND_ROBIN,
+    /** The first entrant plays against every other one. */
+    GAUNTLET,
+  }
+
+  /**
+   * Games between two entrants, shared by the threads.
+   */
+  private static final class Pairing {
+    private final int first;
+    private final int second;
+    private final long[] seeds;
+    private int scheduled = 0;
+    private int wins = 0;
+    private int draws = 0;
+    private int losses = 0;
+    private double llr = 0;
+    private Sprt.Decision decision = Sprt.Decision.CONTINUE;
+
+    private Pairing(int first, int second, long[] seeds) {
+      this.first = first;
+      this.second = second;
+      this.seeds = seeds;
+    }
+  }
+
+  /**
+   * Pair of games scheduled by a thread.
+   * @param pairing Pairing of the games
+   * @param seed Seed of the pair of games
+   */
+  private record Scheduled(Pairing pairing, long seed) { }
+
+  private final List<Entrant> entrants;
+  private final Format format;
+  private final int phase;
+  private final int threads;
+
+  /**
+   * Prepare a tournament.
+   * @param entrants Bots taking part, at least two
+   * @param format Entrants meeting each other
+   * @param phase Version of the game, 2 or 3
+   * @param threads Number of games played at the same time
+   */
+  public Tournament(List<Entrant> entrants, Format format, int phase, int threads) {
+    this.entrants = List.copyOf(entrants);
+    this.format = Objects.requireNonNull(format);
+    if (this.entrants.size() < 2) throw new IllegalArgumentException("There should be at least 2 entrants.");
+    final var names = new HashSet<String>();
+    for (var entrant : this.entrants) {
+      if (!names.add(entrant.name())) throw new IllegalArgumentException("Duplicate entrant: " + entrant.name());
+    }
+    if (phase < 2 || phase > 3) throw new IllegalArgumentException("phase should be 2 or 3.");
+    if (threads <= 0) throw new IllegalArgumentException("threads should be > 0.");
+    this.phase = phase;
+    this.threads = threads;
+  }
+
+  /**
+   * Play the matches with a random seed and gather their results.
+   * @param pairs Maximum number of pairs of games of each pairing, each pair being played on its own circle
+   * @param sprt Test stopping a pairing early, or null to play every game
+   * @return Results of the matches
+   * @throws InterruptedException If the thread is interrupted while waiting for the games
+   */
+  public TournamentReport run(int pairs, Sprt sprt) throws InterruptedException {
+    return run(pairs, sprt, ThreadLocalRandom.current().nextLong());
+  }
+
+  /**
+   * Play the matches and gather their results.
+   * @param pairs Maximum number of pairs of games of each pairing, each pair being played on its own circle
+   * @param sprt Test stopping a pairing early, or null to play every game
+   * @param seed Seed of the tournament
+   * @return Results of the matches
+   * @throws InterruptedException If the thread is interrupted while waiting for the games
+   */
+  public TournamentReport run(int pairs, Sprt sprt, long seed) throws InterruptedException {
+    if (pairs <= 0) throw new IllegalArgumentException("pairs should be > 0.");
+    final var random = new SplittableRandom(seed);
+    final var pairings = new ArrayList<Pairing>();
+    final int firsts = format == Format.GAUNTLET ? 1 : entrants.size();
+    for (int first = 0; first < firsts; first++) {
+      for (int second = first + 1; second < entrants.size(); second++) {
+        pairings.add(new Pairing(first, second, random.longs(pairs).toArray()));
+      }
+    }
+    final long start = System.nanoTime();
+
+    final var executor = Executors.newFixedThreadPool(threads);
+    try {
+      final var workers = new ArrayList<Future<?>>(threads);
+      for (int i = 0; i < threads; i++) {
+        workers.add(executor.submit(() -> {
+          final var bots = new Bot[entrants.size()];
+          try {
+            for (var scheduled = next(pairings, pairs); scheduled != null; scheduled = next(pairings, pairs)) {
+              final var pairing = scheduled.pairing();
+              final Bot first = bot(bots, pairing.first);
+              final Bot second = bot(bots, pairing.second);
+              final var games = new SplittableRandom(scheduled.seed());
+              final var circle = GameState.of(new Game(phase, games.nextLong()));
+              final long firstSeed = games.nextLong();
+              final long secondSeed = games.nextLong();
+              final int forward = play(circle, first, firstSeed, second, secondSeed);
+              final int backward = -play(circle, second, secondSeed, first, firstSeed);
+              synchronized (pairings) {
+                record(pairing, forward);
+                record(pairing, backward);
+                if (sprt != null) {
+                  pairing.llr = sprt.llr(pairing.wins, pairing.draws, pairing.losses);
+                  // Pairs already in flight when a bound was crossed must not reopen the pairing
+                  if (pairing.decision == Sprt.Decision.CONTINUE) {
+                    pairing.decision = sprt.decide(pairing.wins, pairing.draws, pairing.losses);
+                  }
+                }
+              }
+            }
+          } finally {
+            for (var bot : bots) {
+              if (bot != null) bot.close();
+            }
+          }
+        }));
+      }
+      for (var worker : workers) {
+        worker.get();
+      }
+    } catch (ExecutionException e) {
+      throw new IllegalStateException("A game failed.", e.getCause());
+    } finally {
+      executor.shutdownNow();
+    }
+
+    final var matches = new ArrayList<TournamentReport.Match>(pairings.size());
+    for (var pairing : pairings) {
+      matches.add(new TournamentReport.Match(entrants.get(pairing.first).name(), entrants.get(pairing.second).name(),
+          pairing.wins, pairing.draws, pairing.losses, pairing.llr, pairing.decision));
+    }
+    final var names = entrants.stream().map(Entrant::name).toList();
+    return new TournamentReport(names, matches, System.nanoTime() - start);
+  }
+
+  /**
+   * Choose the pairing of the next pair of games, the one with the fewest games scheduled.
+   * @param pairings Every pairing
+   * @param pairs Maximum number of pairs of games of each pairing
+   * @return The pairing with the seed of the pair, or null if every pairing is over
+   */
+  private static Scheduled next(List<Pairing> pairings, int pairs) {
+    synchronized (pairings) {
+      Pairing chosen = null;
+      for (var pairing : pairings) {
+        if (pairing.scheduled >= pairs || pairing.decision != Sprt.Decision.CONTINUE) continue;
+        if (chosen == null || pairing.scheduled < chosen.scheduled) chosen = pairing;
+      }
+      if (chosen == null) return null;
+      return new Scheduled(chosen, chosen.seeds[chosen.scheduled++]);
+    }
+  }
+
+  /**
+   * Get the bot of an entrant for the current thread, creating it the first time.
+   * @param bots Bots of the current thread, by entrant
+   * @param entrant Index of the entrant
+   * @return The bot
+   */
+  private Bot bot(Bot[] bots, int entrant) {
+    if (bots[entrant] == null) bots[entrant] = entrants.get(entrant).policy().get();
+    return bots[entrant];
+  }
+
+  /**
+   * Play a game from its initial state.
+   * @param state Initial state
+   * @param first Bot playing the player 1
+   * @param firstSeed Seed of the bot playing the player 1
+   * @param second Bot playing the player 2
+   * @param secondSeed Seed of the bot playing the player 2
+   * @return Final score of the player 1 minus the one of the player 2
+   */
+  private static int play(GameState state, Bot first, long firstSeed, Bot second, long secondSeed) {
+    first.seed(firstSeed);
+    second.seed(secondSeed);
+    while (!state.finished()) {
+      final Bot bot = state.playing() == 0 ? first : second;
+      state = state.apply(bot.chooseMove(state));
+    }
+    return state.score(0) - state.score(1);
+  }
+
+  /**
+   * Count the result of a game.
+   * @param pairing Pairing of the game
+   * @param difference Final score of the first entrant minus the one of the second entrant
+   */
+  private static void record(Pairing pairing, int difference) {
+    if (difference > 0) pairing.wins++;
+    else if (difference < 0) pairing.losses++;
+    else pairing.draws++;
+  }
+}
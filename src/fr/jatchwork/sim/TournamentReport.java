@@ -0,0 +1,171 @@
+package fr.jatchwork.sim;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Results of a tournament between bots.
+ * @param names Name of each entrant
+ * @param matches Results of each pairing of entrants
+ * @param nanos Time spent playing the games, in nanoseconds
+ */
+public record TournamentReport(List<String> names, List<Match> matches, long nanos) {
+  /** Quantile of the normal distribution for 95% confidence intervals. */
+  private static final double Z95 = 1.96;
+
+  /**
+   * Results of the games between two entrants, from the point of view of the first one.
+   * @param first Name of the first entrant
+   * @param second Name of the second entrant
+   * @param wins Number of games won by the first entrant
+   * @param draws Number of games ending with equal scores
+   * @param losses Number of games won by the second entrant
+   * @param llr Log-likelihood ratio of the SPRT, 0 without test
+   * @param decision Decision of the SPRT, {@link Sprt.Decision#CONTINUE} without test or if every game was played
+   */
+  public record Match(String first, String second, int wins, int draws, int losses,
+      double llr, Sprt.Decision decision) {
+    /**
+     * Create the results of a match.
+     * @param first Name of the first entrant
+     * @param second Name of the second entrant
+     * @param wins Number of games won by the first entrant
+     * @param draws Number of games ending with equal scores
+     * @param losses Number of games won by the second entrant
+     * @param llr Log-likelihood ratio of the SPRT
+     * @param decision Decision of the SPRT
+     */
+    public Match {
+      Objects.requireNonNull(first);
+      Objects.requireNonNull(second);
+      Objects.requireNonNull(decision);
+      if (wins < 0 || draws < 0 || losses < 0) throw new IllegalArgumentException("counts should be >= 0.");
+    }
+
+    /**
+     * Number of games played.
+     * @return Game count
+     */
+    public int games() { return wins + draws + losses; }
+
+    /**
+     * Score of the first entrant, a draw counting as half a win.
+     * @return Score between 0 and 1, 0.5 if no game was played
+     */
+    public double score() {
+      return games() == 0 ? 0.5 : (wins + draws / 2.0) / games();
+    }
+
+    /**
+     * Elo difference of the first entrant with the second one.
+     * @return Estimated difference, infinite if every game was won or lost
+     */
+    public double elo() { return Sprt.elo(score()); }
+
+    /**
+     * Lower bound of the 95% confidence interval of the Elo difference.
+     * @return Elo difference
+     */
+    public double eloLower() { return Sprt.elo(Math.max(0, score() - Z95 * scoreError())); }
+
+    /**
+     * Upper bound of the 95% confidence interval of the Elo difference.
+     * @return Elo difference
+     */
+    public double eloUpper() { return Sprt.elo(Math.min(1, score() + Z95 * scoreError())); }
+
+    /**
+     * Standard error of the score, with half a win and half a loss added to the variance as in
+     * {@link Sprt#llr(int, int, int)}, so a few games all won or all lost keep a wide interval.
+     * @return Standard deviation of the average score of the games
+     */
+    private double scoreError() {
+      if (games() == 0) return 0.5;
+      final double score = score();
+      final double variance = ((wins + 0.5) * (1 - score) * (1 - score) + draws * (0.5 - score) * (0.5 - score)
+          + (losses + 0.5) * score * score) / (games() + 1);
+      return Math.sqrt(variance / games());
+    }
+
+    @Override
+    public String toString() {
+      final var builder = new StringBuilder();
+      builder.append(String.format("%s vs %s : +%d =%d -%d, Elo %+.1f [%+.1f, %+.1f]",
+          first, second, wins, draws, losses, elo(), eloLower(), eloUpper()));
+      if (decision != Sprt.Decision.CONTINUE || llr != 0) {
+        builder.append(String.format(", LLR %.2f", llr));
+        if (decision != Sprt.Decision.CONTINUE) builder.append(" ").append(decision);
+      }
+      return builder.toString();
+    }
+  }
+
+  /**
+   * Create the report of a tournament.
+   * @param names Name of each entrant
+   * @param matches Results of each pairing of entrants
+   * @param nanos Time spent playing the games, in nanoseconds
+   */
+  public TournamentReport {
+    names = List.copyOf(names);
+    matches = List.copyOf(matches);
+    if (nanos < 0) throw new IllegalArgumentException("nanos should be >= 0.");
+  }
+
+  /**
+   * Number of games played.
+   * @return Game count
+   */
+  public int games() {
+    return matches.stream().mapToInt(Match::games).sum();
+  }
+
+  /**
+   * Speed of the games.
+   * @return Games played per second
+   */
+  public double gamesPerSecond() {
+    return nanos == 0 ? 0 : games() * 1e9 / nanos;
+  }
+
+  /**
+   * Results of an entrant against all of its opponents.
+   * @param name Name of the entrant
+   * @return Results from the point of view of the entrant, against "field"
+   */
+  public Match standing(String name) {
+    Objects.requireNonNull(name);
+    if (!names.contains(name)) throw new IllegalArgumentException("Unknown entrant: " + name);
+    int wins = 0;
+    int draws = 0;
+    int losses = 0;
+    for (var match : matches) {
+      if (match.first().equals(name)) {
+        wins += match.wins();
+        losses += match.losses();
+      } else if (match.second().equals(name)) {
+        wins += match.losses();
+        losses += match.wins();
+      } else {
+        continue;
+      }
+      draws += match.draws();
+    }
+    return new Match(name, "field", wins, draws, losses, 0, Sprt.Decision.CONTINUE);
+  }
+
+  @Override
+  public String toString() {
+    final var builder = new StringBuilder();
+    builder.append(String.format("%d games in %.2f s, %.1f games/s", games(), nanos / 1e9, gamesPerSecond()));
+    for (var match : matches) {
+      builder.append("\n").append(match);
+    }
+    if (names.size() > 2) {
+      for (var name : names) {
+        builder.append("\n").append(standing(name));
+      }
+    }
+    return builder.toString();
+  }
+}
@@ -0,0 +1,303 @@
+package fr.jatchwork.sim;
+
+import java.util.ArrayList;
+import java.util.Objects;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import fr.jatchwork.ai.Bot;
+import fr.jatchwork.ai.Evaluation;
+import fr.jatchwork.model.Game;
+import fr.jatchwork.model.GameState;
+
+/**
+ * Tune the weights of an {@link Evaluation} on the outcomes of self-play games, using every core.
+ * Each state of the games is paired with the outcome of its game for the first player, then a
+ * logistic regression predicts the outcomes from the features of the states by gradient descent.
+ * As the evaluation is only compared between states, the weights are scaled so that the score weight is 1.
+ */
+public final class WeightTuner {
+  /** Number of gradient steps used by default. */
+  public static final int EPOCHS = 500;
+  /** Step size of the gradient descent, on features scaled to a unit deviation. */
+  private static final double RATE = 1;
+
+  /**
+   * States of games with the outcomes of their games.
+   * @param features Features of each state for the first player, see {@link Evaluation#features}
+   * @param outcomes Outcome of the game of each state for the first player : 1 if won, 0 if lost, 0.5 if tied
+   */
+  public record Samples(double[][] features, double[] outcomes) {
+    /**
+     * Check the samples.
+     * @param features Features of each state for the first player
+     * @param outcomes Outcome of the game of each state for the first player
+     */
+    public Samples {
+      Objects.requireNonNull(features);
+      Objects.requireNonNull(outcomes);
+      if (features.length != outcomes.length) throw new IllegalArgumentException("features and outcomes should have the same length.");
+    }
+
+    /**
+     * Number of states.
+     * @return Count of samples
+     */
+    public int size() { return outcomes.length; }
+  }
+
+  /**
+   * Play games between two identical bots with a random seed, and gather each state before a move
+   * with the outcome of its game.
+   * @param policy Factory of the bots, one pair of bots being created for each thread
+   * @param phase Version of the game, 2 or 3
+   * @param games Number of games to play
+   * @param threads Number of games played at the same time
+   * @return The samples
+   * @throws InterruptedException If the thread is interrupted while waiting for the games
+   */
+  public static Samples collect(Supplier<Bot> policy, int phase, int games, int threads)
+      throws InterruptedException {
+    return collect(policy, phase, games, threads, ThreadLocalRandom.current().nextLong());
+  }
+
+  /**
+   * Play games between two identical bots, and gather each state before a move with the outcome of its game.
+   * Each game gets its own seed derived from the seed of the run, as in {@link SelfPlay#run(int, long)}.
+   * @param policy Factory of the bots, one pair of bots being created for each thread
+   * @param phase Version of the game, 2 or 3
+   * @param games Number of games to play
+   * @param threads Number of games played at the same time
+   * @param seed Seed of the run
+   * @return The samples
+   * @throws InterruptedException If the thread is interrupted while waiting for the games
+   */
+  public static Samples collect(Supplier<Bot> policy, int phase, int games, int threads, long seed)
+      throws InterruptedException {
+    Objects.requireNonNull(policy);
+    if (phase < 2 || phase > 3) throw new IllegalArgumentException("phase should be 2 or 3.");
+    if (games <= 0) throw new IllegalArgumentException("games should be > 0.");
+    if (threads <= 0) throw new IllegalArgumentException("threads should be > 0.");
+    final long[] seeds = new SplittableRandom(seed).longs(games).toArray();
+    final var features = new double[games][][];
+    final var outcomes = new double[games];
+    final var next = new AtomicInteger();
+
+    final var executor = Executors.newFixedThreadPool(threads);
+    try {
+      final var workers = new ArrayList<Future<?>>(threads);
+      for (int i = 0; i < threads; i++) {
+        workers.add(executor.submit(() -> {
+          try (Bot first = policy.get(); Bot second = policy.get()) {
+            final Bot[] bots = { first, second };
+            // Each game writes only its own cells of the arrays
+            for (int game = next.getAndIncrement(); game < games; game = next.getAndIncrement()) {
+              final var states = new ArrayList<double[]>();
+              final var random = new SplittableRandom(seeds[game]);
+              GameState state = GameState.of(new Game(phase, random.nextLong()));
+              bots[0].seed(random.nextLong());
+              bots[1].seed(random.nextLong());
+              while (!state.finished()) {
+                states.add(Evaluation.features(state, 0));
+                state = state.apply(bots[state.playing()].chooseMove(state));
+              }
+              features[game] = states.toArray(double[][]::new);
+              outcomes[game] = Integer.signum(state.score(0) - state.score(1)) * 0.5 + 0.5;
+            }
+          }
+        }));
+      }
+      for (var worker : workers) {
+        worker.get();
+      }
+    } catch (ExecutionException e) {
+      throw new IllegalStateException("A game failed.", e.getCause());
+    } finally {
+      executor.shutdownNow();
+    }
+
+    int size = 0;
+    for (var states : features) {
+      size += states.length;
+    }
+    final var allFeatures = new double[size][];
+    final var allOutcomes = new double[size];
+    int index = 0;
+    for (int game = 0; game < games; game++) {
+      for (var state : features[game]) {
+        allFeatures[index] = state;
+        allOutcomes[index++] = outcomes[game];
+      }
+    }
+    return new Samples(allFeatures, allOutcomes);
+  }
+
+  /**
+   * Fit the weights predicting the outcomes of samples, each gradient step being split between threads.
+   * @param samples The samples
+   * @param epochs Number of gradient steps
+   * @param threads Number of threads computing the gradients
+   * @return Evaluation with the fitted weights, the score weight being 1 if it is positive
+   * @throws InterruptedException If the thread is interrupted while waiting for the gradients
+   */
+  public static Evaluation fit(Samples samples, int epochs, int threads) throws InterruptedException {
+    Objects.requireNonNull(samples);
+    if (samples.size() == 0) throw new IllegalArgumentException("samples should not be empty.");
+    if (epochs <= 0) throw new IllegalArgumentException("epochs should be > 0.");
+    if (threads <= 0) throw new IllegalArgumentException("threads should be > 0.");
+    // Features of very different magnitudes slow down the descent, so they are scaled first
+    final var scales = new double[Evaluation.FEATURES];
+    for (var features : samples.features()) {
+      for (int f = 0; f < Evaluation.FEATURES; f++) {
+        scales[f] += features[f] * features[f];
+      }
+    }
+    for (int f = 0; f < Evaluation.FEATURES; f++) {
+      scales[f] = scales[f] == 0 ? 1 : Math.sqrt(scales[f] / samples.size());
+    }
+
+    final var weights = new double[Evaluation.FEATURES];
+    final var executor = Executors.newFixedThreadPool(threads);
+    try {
+      for (int epoch = 0; epoch < epochs; epoch++) {
+        final var gradient = gradient(executor, threads, samples, weights, scales);
+        for (int f = 0; f < Evaluation.FEATURES; f++) {
+          weights[f] -= RATE * gradient[f];
+        }
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+
+    for (int f = 0; f < Evaluation.FEATURES; f++) {
+      weights[f] /= scales[f];
+    }
+    if (weights[0] > 0) {
+      final double score = weights[0];
+      for (int f = 0; f < Evaluation.FEATURES; f++) {
+        weights[f] /= score;
+      }
+    }
+    return Evaluation.of(weights);
+  }
+
+  /**
+   * Average logistic loss of an evaluation on samples, the evaluation being scaled to its best fit.
+   * Lower is better, 0.693 being the loss of a coin flip.
+   * @param samples The samples
+   * @param evaluation The evaluation
+   * @return Average cross-entropy between the predicted and the actual outcomes
+   */
+  public static double loss(Samples samples, Evaluation evaluation) {
+    Objects.requireNonNull(samples);
+    Objects.requireNonNull(evaluation);
+    if (samples.size() == 0) throw new IllegalArgumentException("samples should not be empty.");
+    final var weights = evaluation.weights();
+    final var values = new double[samples.size()];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = dot(weights, samples.features()[i]);
+    }
+    // The evaluation is only defined up to a positive factor, so the best factor is searched
+    double best = Double.POSITIVE_INFINITY;
+    for (double factor = 1.0 / 1024; factor <= 16; factor *= Math.sqrt(2)) {
+      double total = 0;
+      for (int i = 0; i < values.length; i++) {
+        total += crossEntropy(factor * values[i], samples.outcomes()[i]);
+      }
+      best = Math.min(best, total / values.length);
+    }
+    return best;
+  }
+
+  /**
+   * Compute the gradient of the average loss on scaled features, each thread summing a slice of the samples.
+   * @param executor Executor running the slices
+   * @param threads Number of slices
+   * @param samples The samples
+   * @param weights Current weights of the scaled features
+   * @param scales Scale of each feature
+   * @return Gradient of the average loss
+   * @throws InterruptedException If the thread is interrupted while waiting for the slices
+   */
+  private static double[] gradient(ExecutorService executor, int threads, Samples samples,
+      double[] weights, double[] scales) throws InterruptedException {
+    final int size = samples.size();
+    final var slices = new ArrayList<Callable<double[]>>(threads);
+    for (int t = 0; t < threads; t++) {
+      final int start = (int) ((long) size * t / threads);
+      final int end = (int) ((long) size * (t + 1) / threads);
+      slices.add(() -> {
+        final var sum = new double[Evaluation.FEATURES];
+        final var scaled = new double[Evaluation.FEATURES];
+        for (int i = start; i < end; i++) {
+          final var features = samples.features()[i];
+          for (int f = 0; f < Evaluation.FEATURES; f++) {
+            scaled[f] = features[f] / scales[f];
+          }
+          final double error = sigmoid(dot(weights, scaled)) - samples.outcomes()[i];
+          for (int f = 0; f < Evaluation.FEATURES; f++) {
+            sum[f] += error * scaled[f];
+          }
+        }
+        return sum;
+      });
+    }
+
+    final var gradient = new double[Evaluation.FEATURES];
+    try {
+      for (var slice : executor.invokeAll(slices)) {
+        final var sum = slice.get();
+        for (int f = 0; f < Evaluation.FEATURES; f++) {
+          gradient[f] += sum[f] / size;
+        }
+      }
+    } catch (ExecutionException e) {
+      throw new IllegalStateException("A gradient failed.", e.getCause());
+    }
+    return gradient;
+  }
+
+  /**
+   * Logistic loss of a prediction.
+   * @param value Evaluation of a state, the predicted probability of winning being its sigmoid
+   * @param outcome Actual outcome, between 0 and 1
+   * @return Cross-entropy
+   */
+  private static double crossEntropy(double value, double outcome) {
+    // log(1 + exp(-x)) computed without overflow
+    final double lossWin = Math.max(-value, 0) + Math.log1p(Math.exp(-Math.abs(value)));
+    return lossWin + (1 - outcome) * value;
+  }
+
+  /**
+   * Logistic function.
+   * @param value Any value
+   * @return Value between 0 and 1
+   */
+  private static double sigmoid(double value) {
+    return 1 / (1 + Math.exp(-value));
+  }
+
+  /**
+   * Dot product of two vectors of features.
+   * @param a First vector
+   * @param b Second vector
+   * @return Sum of the products
+   */
+  private static double dot(double[] a, double[] b) {
+    double sum = 0;
+    for (int f = 0; f < Evaluation.FEATURES; f++) {
+      sum += a[f] * b[f];
+    }
+    return sum;
+  }
+
+  private WeightTuner() { }
+}
@@ -26,15 +26,16 @@ final class TimeBoardView {
   private static final Color BORDER_PATH_COLOR = Color.WHITE;
 
   /**
-   * Draw the time board in a zig-zag format.
+   * Draw the time board of a game in a zig-zag format.
    * @param graphics Window's graphics
-   * @param board What to draw
+   * @param game Game containing the board to draw
    * @param Where to draw the top left corner
    */
-  public static void drawTimeBoard(Graphics2D graphics, TimeBoard board, Vector pos) {
+  public static void drawTimeBoard(Graphics2D graphics, Game game, Vector pos) {
     Objects.requireNonNull(graphics);
-    Objects.requireNonNull(board);
+    Objects.requireNonNull(game);
     Objects.requireNonNull(pos);
+    final TimeBoard board = game.timeBoard();
 
     // Draw squares and fill color
     for (int i = 0; i < board.size(); i++) {
@@ -57,7 +58,7 @@ final class TimeBoardView {
     drawPatches(graphics, pos, board);
 
     // Draw players
-    drawPlayers(graphics, pos);
+    drawPlayers(graphics, pos, game);
   }
   
   /**
@@ -84,12 +85,13 @@ final class TimeBoardView {
    * Draw players on the time board.
    * @param graphics Window's graphics
    * @param boardPos Position of the board
+   * @param game Game containing the players
    */
-  private static void drawPlayers(Graphics2D graphics, Vector boardPos) {
+  private static void drawPlayers(Graphics2D graphics, Vector boardPos, Game game) {
     Objects.requireNonNull(graphics);
     Objects.requireNonNull(boardPos);
+    Objects.requireNonNull(game);
     final int square = ViewWindow.squareSize();
-    final Game game = Game.instance();
     final int sizePlayer = (int)(square * 0.4f);
     final int margin = (square/2 - sizePlayer) / 2;
     for (int i = 0; i < Game.PLAYER_COUNT; i++) {
@@ -1,6 +1,10 @@
 package fr.jatchwork.view;
 
+import java.util.Objects;
+
+import fr.jatchwork.ai.Bot;
 import fr.jatchwork.model.Game;
+import fr.jatchwork.model.Move;
 
 /**
  * Display game on console.
@@ -8,37 +12,55 @@ import fr.jatchwork.model.Game;
 public final class ViewConsole {
   /**
    * Display the game.
+   * @param game Game to display
    */
-  public static void displayGame() {
-    System.out.println(Game.instance());
+  public static void displayGame(Game game) {
+    Objects.requireNonNull(game);
+    System.out.println(game);
   }
 
   /**
    * Display the list of all available patches.
+   * @param game Game containing the patches
    */
-  public static void displayPatches() {
-    System.out.println(Game.instance().patchesToString());
+  public static void displayPatches(Game game) {
+    Objects.requireNonNull(game);
+    System.out.println(game.patchesToString());
   }
 
   /**
    * Display a menu with a list of actions.
+   * @param game Game being played
    */
-  public static void displayMenu() {
+  public static void displayMenu(Game game) {
+    Objects.requireNonNull(game);
     System.out.println("\n-- ACTIONS --\n");
-    System.out.println("Player " + Game.instance().playing().numero() + " turn");
+    System.out.println("Player " + game.playing().numero() + " turn");
     System.out.println("Choose an action :");
     System.out.println("- b (board) : Show current state of board game");
     System.out.println("- p (patches) : Show list of available patches");
     System.out.println("- 1, 2, 3 : Buy and place patch corresponding to number");
     System.out.println("- e (end) : End the turn of current player");
+    System.out.println("- h (hint) : Show which available patches still fit together on the board");
     System.out.println("- q (quit) : Stop the game and return to console");
   }
 
+  /**
+   * Display the move played by the computer.
+   * @param move Encoded move
+   * @param bot The bot who chose the move
+   */
+  public static void displayBotMove(int move, Bot bot) {
+    Objects.requireNonNull(bot);
+    System.out.println("\nComputer : " + Move.toString(move) + " (" + bot.report() + ")");
+  }
+
   /**
    * Display the final scores and the winner.
+   * @param game Finished game
    */
-  public static void displayScores() {
-    Game game = Game.instance();
+  public static void displayScores(Game game) {
+    Objects.requireNonNull(game);
     System.out.println("\n-- RESULTS --\n");
     System.out.println("The game is finished.\n");
     System.out.println("Player 1 : " + game.player(0).score() + " points");
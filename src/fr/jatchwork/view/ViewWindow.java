@@ -64,10 +64,11 @@ public final class ViewWindow {
   /**
    * Update the window view.
    * @param graphics Window's graphics
+   * @param game The game to display
    */
-  public static void displayAll(Graphics2D graphics) {
+  public static void displayAll(Graphics2D graphics, Game game) {
     Objects.requireNonNull(graphics);
-    Game game = Game.instance();
+    Objects.requireNonNull(game);
     graphics.clearRect(0, 0, width(), height());
 
     // Draw separators
@@ -81,7 +82,7 @@ public final class ViewWindow {
     displayPlayer(graphics, new Rect(width() * 2 / 3, 0, width() / 3, height()), game.player(1), PLAYER2_COLOR);
 
     // Draw center
-    displayCommon(graphics, new Rect(width() / 3, 0, width() / 3, height()));
+    displayCommon(graphics, new Rect(width() / 3, 0, width() / 3, height()), game);
   }
 
   /**
@@ -158,7 +159,7 @@ public final class ViewWindow {
     Objects.requireNonNull(graphics);
     Objects.requireNonNull(pos);
     Objects.requireNonNull(player);
-    final Game game = Game.instance();
+    final Game game = player.game();
     if (game.finished()) {
       if (game.winningPlayer() == player) {
         graphics.setColor(Color.GREEN);
@@ -194,17 +195,18 @@ public final class ViewWindow {
    * Draw the section of the window with the time board and the list of patches.
    * @param graphics Window's graphics
    * @param rect Where to draw
+   * @param game The game to display
    */
-  private static void displayCommon(Graphics2D graphics, Rect rect) {
+  private static void displayCommon(Graphics2D graphics, Rect rect, Game game) {
     Objects.requireNonNull(graphics);
     Objects.requireNonNull(rect);
-    final Game game = Game.instance();
+    Objects.requireNonNull(game);
     
     // Time board
     final int boardMargin = 40;
     final Vector boardSize = TimeBoardView.size(game.timeBoard());
     final Vector posBoard = HelpWindow.align(rect, HelpWindow.ALIGN_TOP, new Vector(boardMargin, boardMargin), boardSize);
-    TimeBoardView.drawTimeBoard(graphics, game.timeBoard(), posBoard);
+    TimeBoardView.drawTimeBoard(graphics, game, posBoard);
     
     // Selected patch
     int posY = posBoard.y() + boardSize.y() + boardMargin;
@@ -216,7 +218,7 @@ public final class ViewWindow {
     posY += selectedHeight;
     final int choiceHeight = squareSize * 4 + 4;
     final Vector margin = new Vector(20, 40);
-    displayPatchList(graphics, new Rect(rect.x() + margin.x(), posY + margin.y(), rect.width() - margin.x() * 2, choiceHeight));
+    displayPatchList(graphics, new Rect(rect.x() + margin.x(), posY + margin.y(), rect.width() - margin.x() * 2, choiceHeight), game);
     
     // End turn button
     drawBtnEndTurn(graphics, rect);
@@ -262,11 +264,12 @@ public final class ViewWindow {
    * Draw section for the list of patches
    * @param graphics Window's graphics
    * @param rect Where to draw and size of the section
+   * @param game The game containing the patches
    */
-  private static void displayPatchList(Graphics2D graphics, Rect rect) {
+  private static void displayPatchList(Graphics2D graphics, Rect rect, Game game) {
     Objects.requireNonNull(graphics);
     Objects.requireNonNull(rect);
-    final Game game = Game.instance();
+    Objects.requireNonNull(game);
     final int butSize = rect.width() / 3;
     final Button[] buttons = ControlWindow.patchButtons();
     final int patchMargin = 10;